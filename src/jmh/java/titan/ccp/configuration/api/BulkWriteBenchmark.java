@@ -0,0 +1,147 @@
+package titan.ccp.configuration.api;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmark of writing the changes of a large reorganization of a sensor hierarchy to the
+ * machine sensor collection, either with one round trip per moved sensor or with batched bulk
+ * writes. The benchmark requires a local MongoDB replica set, whose connection URL can be set with
+ * the system property {@value #CONNECTION_URL_PROPERTY}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkWriteBenchmark {
+
+  private static final String CONNECTION_URL_PROPERTY = "benchmark.mongodb.url";
+  private static final String DEFAULT_CONNECTION_URL = "mongodb://localhost:27017/?replicaSet=rs0";
+  private static final String DATABASE_NAME = "sensorManagementBenchmark";
+  private static final String COLLECTION_NAME = "machineSensors";
+  private static final String IDENTIFIER_FIELD = "identifier";
+  private static final String TOP_LEVEL_IDENTIFIER_FIELD = "topLevelSensor";
+  private static final String PARENT_FIELD = "parent";
+  private static final String TOP_LEVEL_IDENTIFIER = "root";
+
+  @Param({"1000", "10000"})
+  private int movedSensors;
+
+  @Param({"1000"})
+  private int batchSize;
+
+  private MongoClient mongoClient;
+
+  private MongoCollection<Document> collection;
+
+  private ClientSession session;
+
+  private List<Document> movedDocuments;
+
+  /**
+   * Counts the round trips to the database per benchmark operation.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class RoundTrips {
+    public long roundTrips; // NOPMD public field required by JMH
+  }
+
+  /**
+   * Connect to the database.
+   */
+  @Setup(Level.Trial)
+  public void connect() {
+    this.mongoClient = MongoClients.create(
+        System.getProperty(CONNECTION_URL_PROPERTY, DEFAULT_CONNECTION_URL));
+    this.collection = this.mongoClient.getDatabase(DATABASE_NAME).getCollection(COLLECTION_NAME);
+    this.session = this.mongoClient.startSession();
+  }
+
+  /**
+   * Reset the collection to the original hierarchy, in which all sensors belong to one group.
+   */
+  @Setup(Level.Invocation)
+  public void resetCollection() {
+    this.collection.deleteMany(Filters.eq(TOP_LEVEL_IDENTIFIER_FIELD, TOP_LEVEL_IDENTIFIER));
+    final List<Document> documents = new ArrayList<>(this.movedSensors);
+    this.movedDocuments = new ArrayList<>(this.movedSensors);
+    for (int i = 0; i < this.movedSensors; i++) {
+      documents.add(buildDocument("machine-" + i, "old-group"));
+      this.movedDocuments.add(buildDocument("machine-" + i, "new-group"));
+    }
+    this.collection.insertMany(documents);
+  }
+
+  /**
+   * Disconnect from the database.
+   */
+  @TearDown(Level.Trial)
+  public void disconnect() {
+    this.collection.deleteMany(Filters.eq(TOP_LEVEL_IDENTIFIER_FIELD, TOP_LEVEL_IDENTIFIER));
+    this.session.close();
+    this.mongoClient.close();
+  }
+
+  /**
+   * Write one replacement per moved sensor.
+   */
+  @Benchmark
+  public void writePerSensor(final RoundTrips counters) {
+    this.session.startTransaction();
+    for (final Document document : this.movedDocuments) {
+      this.collection.replaceOne(this.session, buildFilter(document), document);
+      counters.roundTrips++;
+    }
+    this.session.commitTransaction();
+  }
+
+  /**
+   * Write all replacements as batched bulk writes.
+   */
+  @Benchmark
+  public void writeBulk(final RoundTrips counters) {
+    this.session.startTransaction();
+    final List<WriteModel<Document>> writes = new ArrayList<>(this.movedDocuments.size());
+    for (final Document document : this.movedDocuments) {
+      writes.add(new ReplaceOneModel<>(buildFilter(document), document));
+    }
+    counters.roundTrips +=
+        BulkWriteUtils.bulkWrite(this.session, this.collection, writes, this.batchSize);
+    this.session.commitTransaction();
+  }
+
+  private static Document buildDocument(final String identifier, final String parent) {
+    return new Document()
+        .append(IDENTIFIER_FIELD, identifier)
+        .append(TOP_LEVEL_IDENTIFIER_FIELD, TOP_LEVEL_IDENTIFIER)
+        .append(PARENT_FIELD, parent);
+  }
+
+  private static Bson buildFilter(final Document document) {
+    return Filters.and(
+        Filters.eq(IDENTIFIER_FIELD, document.getString(IDENTIFIER_FIELD)),
+        Filters.eq(TOP_LEVEL_IDENTIFIER_FIELD, TOP_LEVEL_IDENTIFIER));
+  }
+
+}
@@ -0,0 +1,125 @@
+package titan.ccp.configuration.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import spark.Service;
+
+/**
+ * Load test of the request throughput of the webserver with either a pool of platform threads or
+ * virtual threads. Many concurrent clients send GET and PUT requests, whose handling blocks for a
+ * fixed time to simulate synchronous database calls. With platform threads, the throughput is
+ * bounded by the maximum number of threads, whereas with virtual threads it scales with the number
+ * of concurrent requests. Virtual threads require running the benchmark on Java 21 or newer,
+ * otherwise the platform thread pool is used in both modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(256)
+public class ThreadPoolBenchmark {
+
+  private static final String RESOURCE_PATH = "/sensor-hierarchy/";
+  private static final int RESOURCES = 100;
+  private static final byte[] BODY = "{\"identifier\":\"root\",\"name\":\"Root\",\"children\":[]}"
+      .getBytes(StandardCharsets.UTF_8);
+
+  @Param({"false", "true"})
+  private boolean virtualThreads;
+
+  @Param({"16", "200"})
+  private int maxThreads;
+
+  @Param({"10"})
+  private int blockingMs;
+
+  private Service webService;
+
+  private String baseUrl;
+
+  /**
+   * Start a webserver with blocking routes.
+   */
+  @Setup(Level.Trial)
+  public void startServer() throws IOException {
+    final int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    this.baseUrl = "http://localhost:" + port + RESOURCE_PATH;
+    this.webService = Service.ignite().port(port);
+    RestApiServer.configureThreadPool(this.webService, this.virtualThreads, this.maxThreads,
+        Math.min(8, this.maxThreads), 60_000);
+    this.webService.get(RESOURCE_PATH + ":id", (request, response) -> {
+      Thread.sleep(this.blockingMs);
+      response.type("application/json");
+      return new String(BODY, StandardCharsets.UTF_8);
+    });
+    this.webService.put(RESOURCE_PATH + ":id", (request, response) -> {
+      request.bodyAsBytes();
+      Thread.sleep(this.blockingMs);
+      response.status(204); // NOCS HTTP response code: No Content
+      return "";
+    });
+    this.webService.awaitInitialization();
+  }
+
+  /**
+   * Stop the webserver.
+   */
+  @TearDown(Level.Trial)
+  public void stopServer() {
+    this.webService.stop();
+  }
+
+  /**
+   * Get a resource.
+   */
+  @Benchmark
+  public int get() throws IOException {
+    final HttpURLConnection connection = this.openConnection();
+    try (InputStream input = connection.getInputStream()) {
+      return input.readAllBytes().length;
+    }
+  }
+
+  /**
+   * Put a resource.
+   */
+  @Benchmark
+  public int put() throws IOException {
+    final HttpURLConnection connection = this.openConnection();
+    connection.setRequestMethod("PUT");
+    connection.setDoOutput(true);
+    connection.setFixedLengthStreamingMode(BODY.length);
+    try (OutputStream output = connection.getOutputStream()) {
+      output.write(BODY);
+    }
+    final int status = connection.getResponseCode();
+    connection.getInputStream().close();
+    return status;
+  }
+
+  private HttpURLConnection openConnection() throws IOException {
+    final int resource = ThreadLocalRandom.current().nextInt(RESOURCES);
+    return (HttpURLConnection) new URL(this.baseUrl + resource).openConnection();
+  }
+
+}
@@ -0,0 +1,49 @@
+package titan.ccp.configuration.api.util;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import titan.ccp.configuration.benchmark.SensorHierarchyGenerator;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Benchmark of the comparison of sensor hierarchies with an increasing number of sensors. The
+ * modified hierarchy differs from the original one by one percent of moved, added and deleted
+ * machine sensors, respectively.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SensorHierarchyComparatorBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  private int machineSensors;
+
+  private SensorRegistry oldHierarchy;
+
+  private SensorRegistry newHierarchy;
+
+  /**
+   * Generate the hierarchies to compare.
+   */
+  @Setup
+  public void setup() {
+    final int changes = this.machineSensors / 100;
+    this.oldHierarchy = SensorHierarchyGenerator.generate(this.machineSensors);
+    this.newHierarchy = SensorHierarchyGenerator.generate(this.machineSensors, changes);
+  }
+
+  @Benchmark
+  public List<SensorChangedEvent> compareSensorHierarchies() {
+    return SensorHierarchyComparatorUtils.compareSensorHierarchies(
+        this.oldHierarchy, this.newHierarchy);
+  }
+
+}
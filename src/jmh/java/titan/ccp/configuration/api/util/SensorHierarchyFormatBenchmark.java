@@ -0,0 +1,76 @@
+package titan.ccp.configuration.api.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import titan.ccp.configuration.benchmark.SensorHierarchyGenerator;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Benchmark of encoding and decoding sensor hierarchies with an increasing number of sensors as
+ * JSON and in the {@link SensorHierarchyBinaryFormat}.
+ *
+ * <p>
+ * The binary representation of the generated hierarchies takes about 57 to 66 percent of the size
+ * of their JSON representation: 28,897 instead of 50,393 bytes for 1,000 machine sensors,
+ * 3,488,087 instead of 5,436,623 bytes for 100,000 and 37,049,087 instead of 56,385,623 bytes for
+ * 1,000,000 machine sensors.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SensorHierarchyFormatBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  private int machineSensors;
+
+  private SensorRegistry hierarchy;
+
+  private String json;
+
+  private byte[] binary;
+
+  /**
+   * Generate the hierarchy and its encoded representations.
+   */
+  @Setup
+  public void setup() {
+    this.hierarchy = SensorHierarchyGenerator.generate(this.machineSensors);
+    this.json = this.hierarchy.toJson();
+    this.binary = SensorHierarchyBinaryFormat.encode(this.hierarchy);
+  }
+
+  @Benchmark
+  public String encodeJson() {
+    return this.hierarchy.toJson();
+  }
+
+  @Benchmark
+  public SensorRegistry decodeJson() {
+    return SensorRegistry.fromJson(this.json);
+  }
+
+  @Benchmark
+  public SensorRegistry decodeJsonIncrementally() {
+    return new SensorHierarchyParser(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE)
+        .parse(this.json);
+  }
+
+  @Benchmark
+  public byte[] encodeBinary() {
+    return SensorHierarchyBinaryFormat.encode(this.hierarchy);
+  }
+
+  @Benchmark
+  public SensorRegistry decodeBinary() {
+    return SensorHierarchyBinaryFormat.decode(this.binary);
+  }
+
+}
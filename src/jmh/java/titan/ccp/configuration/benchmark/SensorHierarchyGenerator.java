@@ -0,0 +1,59 @@
+package titan.ccp.configuration.benchmark;
+
+import titan.ccp.model.sensorregistry.MutableAggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Generator for synthetic sensor hierarchies used by the benchmarks. Generated hierarchies consist
+ * of a top level sensor with sensor groups, each containing a fixed number of machine sensors.
+ */
+public final class SensorHierarchyGenerator {
+
+  public static final String TOP_LEVEL_IDENTIFIER = "root";
+
+  public static final int SENSORS_PER_GROUP = 100;
+
+  private SensorHierarchyGenerator() {}
+
+  /**
+   * Generate a hierarchy with the given number of machine sensors.
+   *
+   * @param machineSensors The number of machine sensors.
+   * @return The generated hierarchy.
+   */
+  public static SensorRegistry generate(final int machineSensors) {
+    return generate(machineSensors, 0);
+  }
+
+  /**
+   * Generate a modified version of the hierarchy created by {@link #generate(int)}. In the modified
+   * version, the first {@code changes} machine sensors are moved to the next group, the last
+   * {@code changes} machine sensors are removed and the same number of new machine sensors is added
+   * to the last group.
+   *
+   * @param machineSensors The number of machine sensors.
+   * @param changes The number of machine sensors to move, add and delete, respectively.
+   * @return The generated hierarchy.
+   */
+  public static SensorRegistry generate(final int machineSensors, final int changes) {
+    final MutableSensorRegistry registry =
+        new MutableSensorRegistry(TOP_LEVEL_IDENTIFIER, "Generated Hierarchy");
+    final int groupCount = Math.max(1, machineSensors / SENSORS_PER_GROUP);
+    final MutableAggregatedSensor[] groups = new MutableAggregatedSensor[groupCount];
+    for (int group = 0; group < groupCount; group++) {
+      groups[group] = registry.getTopLevelSensor()
+          .addChildAggregatedSensor("group-" + group, "Group " + group);
+    }
+    for (int sensor = 0; sensor < machineSensors - changes; sensor++) {
+      final int offset = sensor < changes ? 1 : 0;
+      final int group = (sensor / SENSORS_PER_GROUP + offset) % groupCount;
+      groups[group].addChildMachineSensor("machine-" + sensor, "Machine " + sensor);
+    }
+    for (int sensor = 0; sensor < changes; sensor++) {
+      groups[groupCount - 1].addChildMachineSensor("added-" + sensor, "Added " + sensor);
+    }
+    return registry;
+  }
+
+}
@@ -12,16 +12,78 @@ public final class Config { // NOPMD utility class alert
 
   public static final String MONGODB_CONNECTION_URL =
       CONFIGURATION.getString(ConfigurationKeys.MONGODB_CONNECTION_URL);
+  public static final int DB_MAX_RETRIES =
+      CONFIGURATION.getInt(ConfigurationKeys.DB_MAX_RETRIES);
+  public static final long DB_DELAY_IN_MILLIS =
+      CONFIGURATION.getLong(ConfigurationKeys.DB_DELAY_IN_MILLIS);
+  public static final String STORAGE_MODE =
+      CONFIGURATION.getString(ConfigurationKeys.STORAGE_MODE);
+  public static final int MONGODB_BULK_WRITE_BATCH_SIZE =
+      CONFIGURATION.getInt(ConfigurationKeys.MONGODB_BULK_WRITE_BATCH_SIZE);
+  public static final boolean COLLISION_INDEX =
+      CONFIGURATION.getBoolean(ConfigurationKeys.COLLISION_INDEX);
+  public static final long CACHE_MAX_BYTES =
+      CONFIGURATION.getLong(ConfigurationKeys.CACHE_MAX_BYTES);
+  public static final long CACHE_EXPIRE_AFTER_WRITE_MS =
+      CONFIGURATION.getLong(ConfigurationKeys.CACHE_EXPIRE_AFTER_WRITE_MS);
   public static final boolean DEMO = CONFIGURATION.getBoolean(ConfigurationKeys.DEMO);
   public static final boolean EVENT_PUBLISHING =
       CONFIGURATION.getBoolean(ConfigurationKeys.EVENT_PUBLISHING);
+  public static final boolean EVENT_PUBLISHING_FULL_REGISTRY =
+      CONFIGURATION.getBoolean(ConfigurationKeys.EVENT_PUBLISHING_FULL_REGISTRY);
+  public static final boolean EVENT_PUBLISHING_SENSOR_CHANGES =
+      CONFIGURATION.getBoolean(ConfigurationKeys.EVENT_PUBLISHING_SENSOR_CHANGES);
+  public static final boolean EVENT_OUTBOX =
+      CONFIGURATION.getBoolean(ConfigurationKeys.EVENT_OUTBOX);
+  public static final int EVENT_OUTBOX_BATCH_SIZE =
+      CONFIGURATION.getInt(ConfigurationKeys.EVENT_OUTBOX_BATCH_SIZE);
+  public static final long EVENT_OUTBOX_INTERVAL_MS =
+      CONFIGURATION.getLong(ConfigurationKeys.EVENT_OUTBOX_INTERVAL_MS);
+  public static final long EVENT_OUTBOX_LEASE_MS =
+      CONFIGURATION.getLong(ConfigurationKeys.EVENT_OUTBOX_LEASE_MS);
   public static final String KAFKA_TOPIC =
       CONFIGURATION.getString(ConfigurationKeys.KAFKA_TOPIC);
+  public static final String KAFKA_TOPIC_SENSOR_CHANGES =
+      CONFIGURATION.getString(ConfigurationKeys.KAFKA_TOPIC_SENSOR_CHANGES);
+  public static final String KAFKA_HIERARCHY_FORMAT =
+      CONFIGURATION.getString(ConfigurationKeys.KAFKA_HIERARCHY_FORMAT);
   public static final String KAFKA_BOOTSTRAP_SERVERS =
       CONFIGURATION.getString(ConfigurationKeys.KAFKA_BOOTSTRAP_SERVERS);
+  public static final String KAFKA_COMPRESSION_TYPE =
+      CONFIGURATION.getString(ConfigurationKeys.KAFKA_COMPRESSION_TYPE);
+  public static final int KAFKA_LINGER_MS =
+      CONFIGURATION.getInt(ConfigurationKeys.KAFKA_LINGER_MS);
   public static final int WEBSERVER_PORT =
       CONFIGURATION.getInt(ConfigurationKeys.WEBSERVER_PORT);
   public static final boolean CORS = CONFIGURATION.getBoolean(ConfigurationKeys.CORS);
+  public static final int WEBSERVER_THREADS_MIN =
+      CONFIGURATION.getInt(ConfigurationKeys.WEBSERVER_THREADS_MIN);
+  public static final int WEBSERVER_THREADS_MAX =
+      CONFIGURATION.getInt(ConfigurationKeys.WEBSERVER_THREADS_MAX);
+  public static final int WEBSERVER_THREADS_IDLE_TIMEOUT_MS =
+      CONFIGURATION.getInt(ConfigurationKeys.WEBSERVER_THREADS_IDLE_TIMEOUT_MS);
+  public static final boolean WEBSERVER_THREADS_VIRTUAL =
+      CONFIGURATION.getBoolean(ConfigurationKeys.WEBSERVER_THREADS_VIRTUAL);
+  public static final boolean METRICS_ENABLED =
+      CONFIGURATION.getBoolean(ConfigurationKeys.METRICS_ENABLED);
+  public static final long METRICS_GAUGES_INTERVAL_MS =
+      CONFIGURATION.getLong(ConfigurationKeys.METRICS_GAUGES_INTERVAL_MS);
+  public static final int API_PAGE_SIZE_MAX =
+      CONFIGURATION.getInt(ConfigurationKeys.API_PAGE_SIZE_MAX);
+  public static final int API_IMPORT_BATCH_SIZE =
+      CONFIGURATION.getInt(ConfigurationKeys.API_IMPORT_BATCH_SIZE);
+  public static final long API_REQUEST_MAX_BYTES =
+      CONFIGURATION.getLong(ConfigurationKeys.API_REQUEST_MAX_BYTES);
+  public static final int API_HIERARCHY_MAX_DEPTH =
+      CONFIGURATION.getInt(ConfigurationKeys.API_HIERARCHY_MAX_DEPTH);
+  public static final int API_HIERARCHY_MAX_SENSORS =
+      CONFIGURATION.getInt(ConfigurationKeys.API_HIERARCHY_MAX_SENSORS);
+  public static final boolean API_COMPRESSION_ENABLED =
+      CONFIGURATION.getBoolean(ConfigurationKeys.API_COMPRESSION_ENABLED);
+  public static final int API_COMPRESSION_MIN_BYTES =
+      CONFIGURATION.getInt(ConfigurationKeys.API_COMPRESSION_MIN_BYTES);
+  public static final int API_COMPRESSION_LEVEL =
+      CONFIGURATION.getInt(ConfigurationKeys.API_COMPRESSION_LEVEL);
   public static final String INITIAL_SENSOR_HIERARCHY =
       CONFIGURATION.getString("initial.sensor.registry");
 
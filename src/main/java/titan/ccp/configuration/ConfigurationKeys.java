@@ -7,21 +7,84 @@ public final class ConfigurationKeys { // NOPMD
 
   public static final String EVENT_PUBLISHING = "event.publishing";
 
+  public static final String EVENT_PUBLISHING_FULL_REGISTRY = "event.publishing.full.registry";
+
+  public static final String EVENT_PUBLISHING_SENSOR_CHANGES = "event.publishing.sensor.changes";
+
+  public static final String EVENT_OUTBOX = "event.outbox";
+
+  public static final String EVENT_OUTBOX_BATCH_SIZE = "event.outbox.batch.size";
+
+  public static final String EVENT_OUTBOX_INTERVAL_MS = "event.outbox.interval.ms";
+
+  public static final String EVENT_OUTBOX_LEASE_MS = "event.outbox.lease.ms";
+
   public static final String KAFKA_BOOTSTRAP_SERVERS = "kafka.bootstrap.servers";
 
   public static final String KAFKA_TOPIC = "kafka.topic";
 
+  public static final String KAFKA_TOPIC_SENSOR_CHANGES = "kafka.topic.sensor.changes";
+
+  public static final String KAFKA_HIERARCHY_FORMAT = "kafka.hierarchy.format";
+
+  public static final String KAFKA_COMPRESSION_TYPE = "kafka.compression.type";
+
+  public static final String KAFKA_LINGER_MS = "kafka.linger.ms";
+
   // public static final String MONGODB_HOST = "mongodb.host";
 
   // public static final String MONGODB_PORT = "mongodb.port";
 
   public static final String MONGODB_CONNECTION_URL = "mongodb.connection.url";
 
+  public static final String DB_MAX_RETRIES = "db.maxRetries";
+
+  public static final String DB_DELAY_IN_MILLIS = "db.delayInMillis";
+
+  public static final String STORAGE_MODE = "storage.mode";
+
+  public static final String MONGODB_BULK_WRITE_BATCH_SIZE = "mongodb.bulk.write.batch.size";
+
+  public static final String COLLISION_INDEX = "collision.index";
+
+  public static final String CACHE_MAX_BYTES = "cache.max.bytes";
+
+  public static final String CACHE_EXPIRE_AFTER_WRITE_MS = "cache.expire.after.write.ms";
+
   public static final String DEMO = "demo";
 
   public static final String WEBSERVER_PORT = "webserver.port";
 
   public static final String CORS = "webserver.cors";
 
+  public static final String WEBSERVER_THREADS_MIN = "webserver.threads.min";
+
+  public static final String WEBSERVER_THREADS_MAX = "webserver.threads.max";
+
+  public static final String WEBSERVER_THREADS_IDLE_TIMEOUT_MS =
+      "webserver.threads.idle.timeout.ms";
+
+  public static final String WEBSERVER_THREADS_VIRTUAL = "webserver.threads.virtual";
+
+  public static final String METRICS_ENABLED = "metrics.enabled";
+
+  public static final String METRICS_GAUGES_INTERVAL_MS = "metrics.gauges.interval.ms";
+
+  public static final String API_PAGE_SIZE_MAX = "api.page.size.max";
+
+  public static final String API_IMPORT_BATCH_SIZE = "api.import.batch.size";
+
+  public static final String API_REQUEST_MAX_BYTES = "api.request.max.bytes";
+
+  public static final String API_HIERARCHY_MAX_DEPTH = "api.hierarchy.max.depth";
+
+  public static final String API_HIERARCHY_MAX_SENSORS = "api.hierarchy.max.sensors";
+
+  public static final String API_COMPRESSION_ENABLED = "api.compression.enabled";
+
+  public static final String API_COMPRESSION_MIN_BYTES = "api.compression.min.bytes";
+
+  public static final String API_COMPRESSION_LEVEL = "api.compression.level";
+
   private ConfigurationKeys() {}
 }
@@ -1,5 +1,12 @@
 package titan.ccp.configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmThreadMetrics;
+import io.micrometer.core.instrument.binder.system.ProcessorMetrics;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import titan.ccp.configuration.api.RestApiServer;
@@ -23,15 +30,35 @@ public final class SensorManagementService {
    * Start the microservice.
    */
   public void start() {
-    this.sensorHierarchyRepository = new SensorHierarchyRepository(Config.MONGODB_CONNECTION_URL);
+    final MeterRegistry meterRegistry = this.createMeterRegistry();
+
+    this.sensorHierarchyRepository =
+        new SensorHierarchyRepository(Config.MONGODB_CONNECTION_URL, meterRegistry);
 
     this.webServer = new RestApiServer(
         Config.WEBSERVER_PORT,
         Config.CORS,
-        this.sensorHierarchyRepository);
+        this.sensorHierarchyRepository,
+        meterRegistry);
     this.webServer.start();
   }
 
+  /**
+   * Create the registry for metrics of the microservice. If metrics are enabled, they are collected
+   * in a registry that can be scraped by Prometheus. Otherwise, an empty composite registry is
+   * used, in which all meters are no-ops.
+   */
+  private MeterRegistry createMeterRegistry() {
+    if (!Config.METRICS_ENABLED) {
+      return new CompositeMeterRegistry();
+    }
+    final MeterRegistry meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    new JvmMemoryMetrics().bindTo(meterRegistry);
+    new JvmThreadMetrics().bindTo(meterRegistry);
+    new ProcessorMetrics().bindTo(meterRegistry);
+    return meterRegistry;
+  }
+
   /**
    * Stop the microservice.
    */
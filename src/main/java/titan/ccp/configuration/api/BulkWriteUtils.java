@@ -0,0 +1,46 @@
+package titan.ccp.configuration.api;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import java.util.List;
+
+/**
+ * Class for executing write operations on MongoDB collections as batched, ordered bulk writes.
+ */
+public final class BulkWriteUtils {
+
+  private static final BulkWriteOptions ORDERED = new BulkWriteOptions().ordered(true);
+
+  private BulkWriteUtils() {
+
+  }
+
+  /**
+   * Execute a list of write operations within a session. The operations are split into ordered bulk
+   * writes of at most {@code batchSize} operations, so that each batch requires one round trip to
+   * the database.
+   *
+   * @param session The session to execute the writes in.
+   * @param collection The collection to write to.
+   * @param writes The write operations in the order they should be applied.
+   * @param batchSize The maximum number of operations per bulk write.
+   * @return The number of bulk writes, i.e., round trips, that were executed.
+   */
+  public static <T> int bulkWrite(final ClientSession session,
+      final MongoCollection<T> collection, final List<? extends WriteModel<T>> writes,
+      final int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be positive, but is " + batchSize + '.');
+    }
+    int batches = 0; // NOPMD redefineable variable
+    for (int start = 0; start < writes.size(); start += batchSize) {
+      final int end = Math.min(start + batchSize, writes.size());
+      collection.bulkWrite(session, writes.subList(start, end), ORDERED);
+      batches++;
+    }
+    return batches;
+  }
+
+}
@@ -0,0 +1,305 @@
+package titan.ccp.configuration.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Content encoding of HTTP request and response bodies with gzip or deflate. Response bodies are
+ * compressed if the client accepts one of these encodings and the body is at least of a minimum
+ * size. Request bodies are decompressed according to their Content-Encoding header.
+ */
+public final class HttpCompression {
+
+  public static final String GZIP = "gzip";
+  public static final String DEFLATE = "deflate";
+
+  private static final String IDENTITY = "identity";
+  private static final String X_GZIP = "x-gzip";
+  private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+  private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  private static final String VARY_HEADER = "Vary";
+  private static final int BUFFER_SIZE = 8192;
+
+  private final boolean enabled;
+  private final int minBytes;
+  private final int level;
+
+  /**
+   * Create a new content encoding.
+   *
+   * @param enabled Whether response bodies are compressed at all. Compressed request bodies are
+   *        accepted regardless.
+   * @param minBytes The minimum size of a response body in bytes to be compressed.
+   * @param level The compression level from 0 (no compression) to 9 (best compression).
+   */
+  public HttpCompression(final boolean enabled, final int minBytes, final int level) {
+    this.enabled = enabled;
+    this.minBytes = minBytes;
+    this.level = level;
+  }
+
+  /**
+   * Open the output stream of a response, which compresses the body if the client accepts a
+   * supported encoding and the body is large enough. In this case, the Content-Encoding header is
+   * set. Otherwise, the Content-Length header is set if the length of the body is known. The
+   * returned stream has to be closed to complete the compression.
+   *
+   * @param request The request, whose Accept-Encoding header is negotiated.
+   * @param response The response to write to.
+   * @param length The length of the uncompressed body in bytes or a negative value if it is
+   *        unknown. Bodies of unknown length are always compressed if the client accepts it.
+   * @return The stream to write the uncompressed body to.
+   * @throws IOException If opening the stream fails.
+   */
+  public OutputStream openResponseStream(final HttpServletRequest request,
+      final HttpServletResponse response, final long length) throws IOException {
+    final Optional<String> encoding = this.selectEncoding(request, length);
+    this.addVaryHeader(response);
+    if (encoding.isEmpty()) {
+      if (length >= 0) {
+        response.setContentLengthLong(length);
+      }
+      return response.getOutputStream();
+    }
+    response.setHeader(CONTENT_ENCODING_HEADER, encoding.get());
+    return this.encode(response.getOutputStream(), encoding.get());
+  }
+
+  /**
+   * Add Accept-Encoding to the Vary header of a response if response bodies are compressed, unless
+   * it is already added. Responses without a body that stand for a compressible one, such as 304
+   * (Not Modified) responses, have to carry it as well, so that caches do not mix up encodings.
+   *
+   * @param response The response.
+   */
+  public void addVaryHeader(final HttpServletResponse response) {
+    if (this.enabled && !response.getHeaders(VARY_HEADER).contains(ACCEPT_ENCODING_HEADER)) {
+      response.addHeader(VARY_HEADER, ACCEPT_ENCODING_HEADER);
+    }
+  }
+
+  /**
+   * Select the encoding a response body is compressed with by
+   * {@link #openResponseStream(HttpServletRequest, HttpServletResponse, long)}.
+   *
+   * @param request The request, whose Accept-Encoding header is negotiated.
+   * @param length The length of the uncompressed body in bytes or a negative value if it is
+   *        unknown.
+   * @return The encoding or an empty Optional if the body is not compressed.
+   */
+  public Optional<String> selectEncoding(final HttpServletRequest request, final long length) {
+    if (!this.enabled || (length >= 0 && length < this.minBytes)) {
+      return Optional.empty();
+    }
+    return negotiate(request.getHeader(ACCEPT_ENCODING_HEADER));
+  }
+
+  /**
+   * Derive the entity tag of a representation compressed with an encoding. As required by RFC 7232
+   * for strong entity tags, it differs from the entity tag of the uncompressed representation. As
+   * Jetty's GzipHandler does, the encoding is appended to the opaque tag.
+   *
+   * @param entityTag The entity tag of the uncompressed representation, including its quotes.
+   * @param encoding The encoding or an empty Optional if the representation is not compressed.
+   * @return The entity tag of the compressed representation.
+   */
+  public static String encodeEntityTag(final String entityTag, final Optional<String> encoding) {
+    return encoding
+        .map(e -> entityTag.substring(0, entityTag.length() - 1) + '-' + e + '"')
+        .orElse(entityTag);
+  }
+
+  /**
+   * Remove the encoding appended by {@link #encodeEntityTag(String, Optional)} from an entity tag,
+   * so that the entity tags of all encodings of a representation can be compared with each other.
+   *
+   * @param entityTag The entity tag, including its quotes.
+   * @return The entity tag of the uncompressed representation.
+   */
+  public static String decodeEntityTag(final String entityTag) {
+    for (final String encoding : List.of(GZIP, DEFLATE)) {
+      final String suffix = '-' + encoding + '"';
+      if (entityTag.endsWith(suffix)) {
+        return entityTag.substring(0, entityTag.length() - suffix.length()) + '"';
+      }
+    }
+    return entityTag;
+  }
+
+  /**
+   * Open the input stream of a request, which decompresses the body according to its
+   * Content-Encoding header.
+   *
+   * @param request The request.
+   * @return The stream to read the uncompressed body from.
+   * @throws UnsupportedContentEncodingException If the encoding of the body is not supported.
+   * @throws IOException If opening the stream fails.
+   */
+  public InputStream openRequestStream(final HttpServletRequest request) throws IOException {
+    return decode(request.getInputStream(), request.getHeader(CONTENT_ENCODING_HEADER));
+  }
+
+  /**
+   * Wrap a stream, so that written data is compressed with an encoding.
+   *
+   * @param output The stream to write the compressed data to.
+   * @param encoding Either {@link #GZIP} or {@link #DEFLATE}.
+   * @return The stream to write the uncompressed data to.
+   * @throws IOException If writing the header of the encoding fails.
+   */
+  public OutputStream encode(final OutputStream output, final String encoding)
+      throws IOException {
+    if (GZIP.equals(encoding)) {
+      return new LeveledGzipOutputStream(output, this.level);
+    } else if (DEFLATE.equals(encoding)) {
+      return new LeveledDeflaterOutputStream(output, this.level);
+    } else {
+      throw new UnsupportedContentEncodingException(encoding);
+    }
+  }
+
+  /**
+   * Wrap a stream, so that read data is decompressed according to an encoding.
+   *
+   * @param input The stream of compressed data.
+   * @param encoding The value of a Content-Encoding header or null if it is absent.
+   * @return The stream of uncompressed data.
+   * @throws UnsupportedContentEncodingException If the encoding is not supported.
+   * @throws IOException If reading the header of the encoding fails.
+   */
+  public static InputStream decode(final InputStream input, final String encoding)
+      throws IOException {
+    final String normalizedEncoding =
+        encoding == null ? IDENTITY : encoding.trim().toLowerCase(Locale.ROOT);
+    switch (normalizedEncoding) {
+      case "":
+      case IDENTITY:
+        return input;
+      case GZIP:
+      case X_GZIP:
+        return new GZIPInputStream(input, BUFFER_SIZE);
+      case DEFLATE:
+        return new InflaterInputStream(input);
+      default:
+        throw new UnsupportedContentEncodingException(encoding);
+    }
+  }
+
+  /**
+   * Select the encoding for a response from the value of an Accept-Encoding header. Among gzip and
+   * deflate, the one with the highest quality value is selected, preferring gzip if both have the
+   * same one. Encodings with a quality value of 0 are not acceptable.
+   *
+   * @param acceptEncoding The value of the Accept-Encoding header or null if it is absent.
+   * @return The selected encoding or an empty Optional if the response should not be compressed.
+   */
+  public static Optional<String> negotiate(final String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return Optional.empty();
+    }
+    double gzipQuality = -1;
+    double deflateQuality = -1;
+    double wildcardQuality = -1;
+    for (final String candidate : acceptEncoding.split(",")) {
+      final String[] parts = candidate.split(";");
+      final String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+      final double quality = parseQuality(parts);
+      switch (coding) {
+        case GZIP:
+        case X_GZIP:
+          gzipQuality = Math.max(gzipQuality, quality);
+          break;
+        case DEFLATE:
+          deflateQuality = Math.max(deflateQuality, quality);
+          break;
+        case "*":
+          wildcardQuality = quality;
+          break;
+        default:
+          break;
+      }
+    }
+    final double effectiveGzipQuality = gzipQuality < 0 ? wildcardQuality : gzipQuality;
+    final double effectiveDeflateQuality = deflateQuality < 0 ? wildcardQuality : deflateQuality;
+    if (effectiveGzipQuality > 0 && effectiveGzipQuality >= effectiveDeflateQuality) {
+      return Optional.of(GZIP);
+    } else if (effectiveDeflateQuality > 0) {
+      return Optional.of(DEFLATE);
+    } else {
+      return Optional.empty();
+    }
+  }
+
+  private static double parseQuality(final String... parameters) {
+    for (int i = 1; i < parameters.length; i++) {
+      final String parameter = parameters[i].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2));
+        } catch (final NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+
+  /**
+   * {@link GZIPOutputStream} with a configurable compression level.
+   */
+  private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+
+    private LeveledGzipOutputStream(final OutputStream output, final int level)
+        throws IOException {
+      super(output, BUFFER_SIZE);
+      this.def.setLevel(level);
+    }
+
+  }
+
+  /**
+   * {@link DeflaterOutputStream} with a configurable compression level, which releases its
+   * deflater when closed.
+   */
+  private static final class LeveledDeflaterOutputStream extends DeflaterOutputStream {
+
+    private LeveledDeflaterOutputStream(final OutputStream output, final int level) {
+      super(output, new Deflater(level), BUFFER_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        this.def.end();
+      }
+    }
+
+  }
+
+  /**
+   * Thrown if a request body has an unsupported content encoding.
+   */
+  public static class UnsupportedContentEncodingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedContentEncodingException(final String encoding) {
+      super("Unsupported content encoding: " + encoding);
+    }
+
+  }
+
+}
@@ -0,0 +1,142 @@
+package titan.ccp.configuration.api;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class for reconciling the indexes of MongoDB collections with the indexes required by the
+ * queries of this service. Missing indexes are created and obsolete text indexes are dropped
+ * afterwards, so that queries are served by an index at any time. Other existing indexes are left
+ * untouched.
+ */
+public final class IndexReconciler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IndexReconciler.class);
+
+  private static final String NAME_FIELD = "name";
+  private static final String KEY_FIELD = "key";
+  private static final String UNIQUE_FIELD = "unique";
+  private static final String TEXT_INDEX_KEY = "_fts";
+
+  private IndexReconciler() {
+
+  }
+
+  /**
+   * Reconcile the indexes of a collection. Required indexes are created if no index with the same
+   * keys exists. If such an index exists, but differs in being unique, it is recreated. Text
+   * indexes are dropped only if all required indexes exist.
+   *
+   * @param collection The collection.
+   * @param indexes The indexes required for the collection.
+   * @return True if all required indexes exist afterwards.
+   */
+  public static boolean reconcile(final MongoCollection<Document> collection,
+      final List<Index> indexes) {
+    final List<Document> existingIndexes = collection.listIndexes().into(new ArrayList<>());
+    boolean complete = true; // NOPMD redefineable variable
+    for (final Index index : indexes) {
+      final Optional<Document> existingIndex = existingIndexes.stream()
+          .filter(existing -> index.hasKeys(existing.get(KEY_FIELD, Document.class)))
+          .findFirst();
+      final boolean unique = existingIndex
+          .map(existing -> Boolean.TRUE.equals(existing.getBoolean(UNIQUE_FIELD)))
+          .orElse(false);
+      if (existingIndex.isPresent() && unique == index.isUnique()) {
+        continue;
+      }
+      try {
+        if (existingIndex.isPresent()) {
+          LOGGER.warn("Recreating index '{}' as it is {}unique.",
+              existingIndex.get().getString(NAME_FIELD), unique ? "" : "not ");
+          collection.dropIndex(existingIndex.get().getString(NAME_FIELD));
+        }
+        final String name =
+            collection.createIndex(index.getKeys(), new IndexOptions().unique(index.isUnique()));
+        LOGGER.info("Created index '{}'.", name);
+      } catch (final MongoException e) {
+        LOGGER.error("Creating index for keys {} failed.", index.getKeys().toJson(), e);
+        complete = false;
+      }
+    }
+
+    if (complete) {
+      for (final Document existingIndex : existingIndexes) {
+        if (existingIndex.get(KEY_FIELD, Document.class).containsKey(TEXT_INDEX_KEY)) {
+          collection.dropIndex(existingIndex.getString(NAME_FIELD));
+          LOGGER.info("Dropped obsolete text index '{}'.", existingIndex.getString(NAME_FIELD));
+        }
+      }
+    } else {
+      LOGGER.warn("Keeping obsolete indexes as not all required indexes could be created.");
+    }
+    return complete;
+  }
+
+  /**
+   * Definition of an index with ascending keys.
+   */
+  public static final class Index {
+
+    private final Document keys;
+    private final boolean unique;
+
+    private Index(final Document keys, final boolean unique) {
+      this.keys = keys;
+      this.unique = unique;
+    }
+
+    /**
+     * Create a definition of an index.
+     *
+     * @param unique Whether the index is unique.
+     * @param fields The fields of the index in the order they are indexed.
+     * @return The index definition.
+     */
+    public static Index ascending(final boolean unique, final String... fields) {
+      final Document keys = new Document();
+      for (final String field : fields) {
+        keys.append(field, 1);
+      }
+      return new Index(keys, unique);
+    }
+
+    public Document getKeys() {
+      return this.keys;
+    }
+
+    public boolean isUnique() {
+      return this.unique;
+    }
+
+    /**
+     * Check whether the keys of an existing index equal the keys of this index, including their
+     * order.
+     */
+    private boolean hasKeys(final Document otherKeys) {
+      if (otherKeys == null || otherKeys.size() != this.keys.size()) {
+        return false;
+      }
+      final Iterator<Map.Entry<String, Object>> others = otherKeys.entrySet().iterator();
+      for (final Map.Entry<String, Object> key : this.keys.entrySet()) {
+        final Map.Entry<String, Object> other = others.next();
+        if (!key.getKey().equals(other.getKey()) || !(other.getValue() instanceof Number)
+            || ((Number) other.getValue()).intValue() != (Integer) key.getValue()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+  }
+
+}
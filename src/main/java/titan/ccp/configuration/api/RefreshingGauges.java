@@ -0,0 +1,113 @@
+package titan.ccp.configuration.api;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gauges whose values are expensive to obtain, e.g., as they require a database round trip. Values
+ * are refreshed periodically in the background and gauges only read the last refreshed values, so
+ * that scraping the metrics neither queries the database nor blocks on it.
+ */
+final class RefreshingGauges {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RefreshingGauges.class);
+
+  private final MeterRegistry meterRegistry;
+
+  private final long intervalMs;
+
+  private final List<Refreshable> refreshables = new ArrayList<>();
+
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      runnable -> {
+        final Thread thread = new Thread(runnable, "gauge-refresh");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * Create new gauges.
+   *
+   * @param meterRegistry The registry to register the gauges in.
+   * @param intervalMs The delay between two refreshes of the values in milliseconds.
+   */
+  RefreshingGauges(final MeterRegistry meterRegistry, final long intervalMs) {
+    this.meterRegistry = meterRegistry;
+    this.intervalMs = intervalMs;
+  }
+
+  /**
+   * Register a gauge, whose value is obtained on each refresh. Until the first refresh, the gauge
+   * reports 0.
+   *
+   * @param name The name of the gauge.
+   * @param description The description of the gauge.
+   * @param value The supplier obtaining the value.
+   * @param tags The tags of the gauge as key value pairs.
+   */
+  void register(final String name, final String description, final LongSupplier value,
+      final String... tags) {
+    final AtomicLong cached = new AtomicLong();
+    Gauge.builder(name, cached, AtomicLong::get)
+        .tags(tags)
+        .description(description)
+        .register(this.meterRegistry);
+    this.refreshables.add(new Refreshable(name, value, cached));
+  }
+
+  /**
+   * Start refreshing the values of all registered gauges.
+   */
+  void start() {
+    this.executor.scheduleWithFixedDelay(
+        this::refresh, 0, this.intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop refreshing the values.
+   */
+  void stop() {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Refresh the values of all registered gauges. Gauges whose value cannot be obtained keep their
+   * previous value.
+   */
+  void refresh() {
+    for (final Refreshable refreshable : this.refreshables) {
+      try {
+        refreshable.cached.set(refreshable.value.getAsLong());
+      } catch (final RuntimeException e) { // NOPMD refreshing must not die
+        LOGGER.warn("Refreshing the value of gauge '{}' failed.", refreshable.name, e);
+      }
+    }
+  }
+
+  /**
+   * The supplier of a gauge's value together with its last refreshed value.
+   */
+  private static final class Refreshable {
+
+    private final String name;
+    private final LongSupplier value;
+    private final AtomicLong cached;
+
+    private Refreshable(final String name, final LongSupplier value, final AtomicLong cached) {
+      this.name = name;
+      this.value = value;
+      this.cached = cached;
+    }
+
+  }
+
+}
@@ -1,18 +1,58 @@
 package titan.ccp.configuration.api;
 
+import com.google.common.cache.CacheStats;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import org.bson.json.JsonParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Route;
 import spark.Service;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 import titan.ccp.configuration.Config;
+import titan.ccp.configuration.api.HttpCompression.UnsupportedContentEncodingException;
+import titan.ccp.configuration.api.SensorHierarchyPatch.InvalidPatchException;
+import titan.ccp.configuration.api.SensorHierarchyRepository.SensorHierarchyConflictException;
 import titan.ccp.configuration.api.SensorHierarchyRepository.SensorHierarchyNotFoundException;
+import titan.ccp.configuration.api.util.LimitedLineReader;
+import titan.ccp.configuration.api.util.MetricsUtils;
+import titan.ccp.configuration.api.util.SensorHierarchyBinaryFormat;
+import titan.ccp.configuration.api.util.SensorHierarchyParser;
+import titan.ccp.configuration.api.util.SensorHierarchyParser.InvalidSensorHierarchyException;
+import titan.ccp.configuration.api.util.SensorHierarchyParser.SensorHierarchyTooLargeException;
+import titan.ccp.configuration.api.util.SensorHierarchyValidationUtils;
+import titan.ccp.configuration.api.util.SensorSubtreeUtils;
+import titan.ccp.configuration.api.util.jsondeserialization.CacheStatisticsType;
 import titan.ccp.configuration.api.util.jsondeserialization.CollisionsType;
-import titan.ccp.configuration.api.util.jsondeserialization.TopLevelSensorType;
+import titan.ccp.configuration.api.util.jsondeserialization.DeletedHierarchiesType;
+import titan.ccp.configuration.api.util.jsondeserialization.ImportResultType;
+import titan.ccp.configuration.api.util.jsondeserialization.OutboxStatisticsType;
+import titan.ccp.configuration.api.util.jsondeserialization.PatchOperationType;
+import titan.ccp.configuration.changes.EventOutbox;
+import titan.ccp.model.sensorregistry.Sensor;
 import titan.ccp.model.sensorregistry.SensorRegistry;
 
 /**
@@ -25,36 +65,115 @@ public final class RestApiServer {
   private static final String ACCESS_FORBIDDEN_MESSAGE = "Access forbidden";
   private static final String INTERNAL_SERVER_ERROR_MESSAGE = "Internal Server Error";
   private static final String NOT_FOUND_ERROR_MESSAGE = "Resource not found";
+  private static final String CONFLICT_ERROR_MESSAGE = "Resource was modified concurrently";
+  private static final String INVALID_HIERARCHY_MESSAGE = "Invalid sensor hierarchy";
 
   private static final String GET_SENSOR_HIERARCHY_PATH =
       "/sensor-hierarchy/:id"; // NOCS string occurs multiple times
   private static final String POST_SENSOR_HIERARCHY_PATH = "/sensor-hierarchy";
   private static final String PUT_SENSOR_HIERARCHY_PATH =
       "/sensor-hierarchy/:id"; // NOCS string occurs multiple times
+  private static final String PATCH_SENSOR_HIERARCHY_PATH =
+      "/sensor-hierarchy/:id"; // NOCS string occurs multiple times
   private static final String DELETE_SENSOR_HIERARCHY_PATH =
       "/sensor-hierarchy/:id"; // NOCS string occurs multiple times
+  private static final String GET_SENSOR_SUBTREE_PATH = "/sensor-hierarchy/:id/sensors/:sensorId";
+  private static final String EXPORT_SENSOR_HIERARCHIES_PATH = "/sensor-hierarchy/export";
+  private static final String IMPORT_SENSOR_HIERARCHIES_PATH = "/sensor-hierarchy/import";
+  private static final String DELETE_SENSOR_HIERARCHIES_PATH = "/sensor-hierarchy/delete";
   private static final String GET_SENSOR_HIERARCHIES_PATH =
       "/sensor-hierarchy/";
+  private static final String GET_CACHE_STATISTICS_PATH = "/cache-statistics";
+  private static final String GET_OUTBOX_STATISTICS_PATH = "/outbox-statistics";
+  private static final String GET_METRICS_PATH = "/metrics";
+
+  private static final String ETAG_HEADER = "ETag";
+  private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+  private static final String ACCEPT_HEADER = "Accept";
+  private static final String VARY_HEADER = "Vary";
+  private static final String JSON_CONTENT_TYPE = "application/json";
+  private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+  private static final String CONTINUATION_TOKEN_HEADER = "Continuation-Token";
+  private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final String REQUEST_TIMER = "http.server.requests";
+  private static final String ROUTE_ATTRIBUTE = "metrics.route";
+  private static final String START_TIME_ATTRIBUTE = "metrics.start";
+  private static final String UNMATCHED_ROUTE = "NOT_FOUND";
+
+  private static final String LIMIT_PARAM = "limit";
+  private static final String DEPTH_PARAM = "depth";
+  private static final String CONTINUATION_TOKEN_PARAM = "continuationToken";
+
+  private static final String VIRTUAL_THREADS_SERVER_IDENTIFIER = "jetty-virtual-threads";
 
   private static final Gson GSON = new GsonBuilder().create();
 
   private final SensorHierarchyRepository sensorHierarchyRepository;
 
+  private final HttpCompression compression = new HttpCompression(
+      Config.API_COMPRESSION_ENABLED,
+      Config.API_COMPRESSION_MIN_BYTES,
+      Config.API_COMPRESSION_LEVEL);
+
+  private final SensorHierarchyParser sensorHierarchyParser = new SensorHierarchyParser(
+      Config.API_REQUEST_MAX_BYTES,
+      Config.API_HIERARCHY_MAX_DEPTH,
+      Config.API_HIERARCHY_MAX_SENSORS);
+
   private final Service webService;
 
+  private final MeterRegistry meterRegistry;
+
   private final boolean enableCors;
 
   /**
-   * Creates a new webserver.
+   * Creates a new webserver. If the meter registry can be scraped by Prometheus, its metrics are
+   * exposed on {@value #GET_METRICS_PATH}.
    */
   public RestApiServer(final int port, final boolean enableCors,
-      final SensorHierarchyRepository sensorHierarchyRepository) {
+      final SensorHierarchyRepository sensorHierarchyRepository,
+      final MeterRegistry meterRegistry) {
     LOGGER.info("Instantiating API server");
 
     this.sensorHierarchyRepository = sensorHierarchyRepository;
+    this.meterRegistry = meterRegistry;
 
     this.webService = Service.ignite().port(port);
     this.enableCors = enableCors;
+    configureThreadPool(this.webService,
+        Config.WEBSERVER_THREADS_VIRTUAL,
+        Config.WEBSERVER_THREADS_MAX,
+        Config.WEBSERVER_THREADS_MIN,
+        Config.WEBSERVER_THREADS_IDLE_TIMEOUT_MS);
+  }
+
+  /**
+   * Configure the threads handling the requests of a service. Requests are either handled by a
+   * bounded pool of platform threads or, if enabled and supported by the JVM, each on its own
+   * virtual thread.
+   *
+   * @param service The service, which must not have been started yet.
+   * @param virtualThreads Whether to handle requests on virtual threads. If the JVM does not
+   *        support virtual threads, the pool of platform threads is used instead.
+   * @param maxThreads The maximum number of platform threads.
+   * @param minThreads The minimum number of platform threads.
+   * @param idleTimeoutMs The time in milliseconds after which idle platform threads are stopped.
+   */
+  static void configureThreadPool(final Service service, final boolean virtualThreads,
+      final int maxThreads, final int minThreads, final int idleTimeoutMs) {
+    if (virtualThreads) {
+      final Optional<VirtualThreadPool> threadPool = VirtualThreadPool.create();
+      if (threadPool.isPresent()) {
+        LOGGER.info("Handling requests on virtual threads");
+        EmbeddedServers.add(VIRTUAL_THREADS_SERVER_IDENTIFIER,
+            new EmbeddedJettyFactory().withThreadPool(threadPool.get()));
+        service.embeddedServerIdentifier(VIRTUAL_THREADS_SERVER_IDENTIFIER);
+        return;
+      }
+      LOGGER.warn("Falling back to a pool of platform threads for handling requests");
+    }
+    service.threadPool(maxThreads, minThreads, idleTimeoutMs);
   }
 
   /**
@@ -67,55 +186,349 @@ public final class RestApiServer {
       this.enableCorsHeaders();
     }
 
+    this.recordRequestMetrics();
+
     this.initializeRoutes();
 
     this.handleErrors();
   }
 
+  /**
+   * Parse the limit of a page of a listing. Missing limits default to the maximum page size and
+   * larger limits are capped at it.
+   *
+   * @param limit The requested limit or null, if none is requested.
+   * @return The limit to use.
+   * @throws NumberFormatException If the limit is not a positive number.
+   */
+  private static int parseLimit(final String limit) {
+    if (limit == null) {
+      return Config.API_PAGE_SIZE_MAX;
+    }
+    final int parsedLimit = Integer.parseInt(limit);
+    if (parsedLimit <= 0) {
+      throw new NumberFormatException("Limit must be positive: " + limit);
+    }
+    return Math.min(parsedLimit, Config.API_PAGE_SIZE_MAX);
+  }
+
+  /**
+   * Parse the requested depth of a sensor's subtree. Missing depths request the entire subtree.
+   *
+   * @param depth The requested depth or null, if none is requested.
+   * @return The depth to use.
+   * @throws NumberFormatException If the depth is not a non-negative number.
+   */
+  private static int parseDepth(final String depth) {
+    if (depth == null) {
+      return SensorSubtreeUtils.UNLIMITED_DEPTH;
+    }
+    final int parsedDepth = Integer.parseInt(depth);
+    if (parsedDepth < 0) {
+      throw new NumberFormatException("Depth must not be negative: " + depth);
+    }
+    return parsedDepth;
+  }
+
+  /**
+   * Parse a sensor hierarchy incrementally from the body of a request, which is either JSON or, if
+   * indicated by the content type, in the {@link SensorHierarchyBinaryFormat}. Requests announcing
+   * a body larger than the maximum size are rejected before reading the body. Compressed bodies are
+   * decompressed according to their content encoding, with the maximum size applying to the
+   * decompressed body.
+   *
+   * @param request The request.
+   * @return The sensor hierarchy.
+   * @throws SensorHierarchyTooLargeException If the body is larger than the maximum size.
+   * @throws InvalidSensorHierarchyException If the body is no valid sensor hierarchy.
+   * @throws IOException If reading the body fails.
+   */
+  private SensorRegistry parseSensorHierarchy(final Request request) throws IOException {
+    this.checkContentLength(request);
+    final InputStream input = this.compression.openRequestStream(request.raw());
+    if (isMediaType(request.contentType(), SensorHierarchyBinaryFormat.CONTENT_TYPE)) {
+      return this.sensorHierarchyParser.parseBinary(input);
+    }
+    return this.sensorHierarchyParser.parse(input);
+  }
+
+  /**
+   * Parse a JSON array of sensor hierarchies incrementally from the body of a request.
+   *
+   * @param request The request.
+   * @return The sensor hierarchies in the order of the body.
+   * @throws SensorHierarchyTooLargeException If the body is larger than the maximum size.
+   * @throws InvalidSensorHierarchyException If the body is no array of valid sensor hierarchies.
+   * @throws IOException If reading the body fails.
+   */
+  private List<SensorRegistry> parseSensorHierarchies(final Request request) throws IOException {
+    this.checkContentLength(request);
+    return this.sensorHierarchyParser.parseArray(this.compression.openRequestStream(request.raw()));
+  }
+
+  /**
+   * Parse a JSON document other than a sensor hierarchy incrementally from the body of a request.
+   * The same maximum size and content encodings apply as for sensor hierarchies.
+   *
+   * @param request The request.
+   * @param type The type of the document.
+   * @return The parsed document or null if the body is empty.
+   * @throws SensorHierarchyTooLargeException If the body is larger than the maximum size.
+   * @throws JsonParseException If the body is no valid JSON document of the type.
+   * @throws IOException If reading the body fails.
+   */
+  private <T> T parseJsonBody(final Request request, final Class<T> type) throws IOException {
+    this.checkContentLength(request);
+    try (Reader reader =
+        this.sensorHierarchyParser.newReader(this.compression.openRequestStream(request.raw()))) {
+      return RestApiServer.GSON.fromJson(reader, type);
+    }
+  }
+
+  /**
+   * Build the response body reporting colliding identifiers of a submitted sensor hierarchy
+   * together with the paths of the sensors using them within the hierarchy.
+   *
+   * @param hierarchy The submitted sensor hierarchy.
+   * @param collisions The colliding identifiers.
+   * @return The response body.
+   */
+  private static CollisionsType toCollisions(final SensorRegistry hierarchy,
+      final List<String> collisions) {
+    return new CollisionsType(collisions,
+        SensorHierarchyValidationUtils.findPaths(hierarchy, collisions));
+  }
+
+  private void checkContentLength(final Request request) {
+    if (request.contentLength() > this.sensorHierarchyParser.getMaxBytes()) {
+      throw new SensorHierarchyTooLargeException(this.sensorHierarchyParser.getMaxBytes());
+    }
+  }
+
+  /**
+   * Create multiple sensor hierarchies in a single transaction.
+   *
+   * @param registries The sensor hierarchies to create.
+   * @return The results for the sensor hierarchies in the order they were passed.
+   */
+  private List<ImportResultType> importSensorHierarchies(final List<SensorRegistry> registries) {
+    if (registries.isEmpty()) {
+      return List.of();
+    }
+    final List<Optional<List<String>>> results =
+        this.sensorHierarchyRepository.createSensorHierarchies(registries);
+    final List<ImportResultType> importResults = new ArrayList<>(results.size());
+    for (int i = 0; i < results.size(); i++) {
+      importResults.add(new ImportResultType( // NOPMD
+          registries.get(i).getTopLevelSensor().getIdentifier(),
+          results.get(i).isEmpty(),
+          results.get(i).orElse(null)));
+    }
+    return importResults;
+  }
+
+  /**
+   * Create sensor hierarchies read as newline delimited JSON from a stream and write the results as
+   * JSON array to another stream, while reading. Hierarchies are created in batches of
+   * {@link Config#API_IMPORT_BATCH_SIZE}, each in a transaction of its own, so that only one batch
+   * is held in memory. Lines are read with a {@link LimitedLineReader}, so that a line exceeding
+   * the maximum size is rejected without buffering it. Invalid lines are reported in the results
+   * together with their line number, starting at 1, and do not abort the import.
+   *
+   * @param input The stream to read the hierarchies from.
+   * @param output The stream to write the results to.
+   * @throws IOException If reading or writing the streams fails.
+   */
+  private void importSensorHierarchies(final InputStream input, final OutputStream output)
+      throws IOException {
+    final LimitedLineReader reader =
+        new LimitedLineReader(input, this.sensorHierarchyParser.getMaxBytes());
+    final JsonWriter writer = RestApiServer.GSON.newJsonWriter(
+        new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)));
+    writer.beginArray();
+    final List<SensorRegistry> batch = new ArrayList<>(Config.API_IMPORT_BATCH_SIZE);
+    int lineNumber = 0; // NOPMD redefineable variable
+    while (true) {
+      lineNumber++;
+      try {
+        final String line = reader.readLine();
+        if (line == null) {
+          break;
+        }
+        if (line.isBlank()) {
+          continue;
+        }
+        batch.add(this.sensorHierarchyParser.parse(line));
+      } catch (final InvalidSensorHierarchyException | SensorHierarchyTooLargeException e) {
+        writeImportResults(this.importSensorHierarchies(batch), writer);
+        batch.clear();
+        writeImportResults(
+            List.of(new ImportResultType(INVALID_HIERARCHY_MESSAGE, lineNumber)), writer);
+        continue;
+      }
+      if (batch.size() >= Config.API_IMPORT_BATCH_SIZE) {
+        writeImportResults(this.importSensorHierarchies(batch), writer);
+        batch.clear();
+      }
+    }
+    writeImportResults(this.importSensorHierarchies(batch), writer);
+    writer.endArray();
+    writer.flush();
+  }
+
+  private static void writeImportResults(final List<ImportResultType> results,
+      final JsonWriter writer) throws IOException {
+    for (final ImportResultType result : results) {
+      RestApiServer.GSON.toJson(result, ImportResultType.class, writer);
+    }
+    writer.flush();
+  }
+
+  /**
+   * Wrap a route returning its body as string, so that the body is compressed if the client accepts
+   * it and the body is large enough. Compressed bodies are written directly to the response, which
+   * is committed afterwards, so that Spark does not write the body again.
+   *
+   * @param route The route.
+   * @return The wrapped route.
+   */
+  private Route compressible(final Route route) {
+    return (request, response) -> {
+      final Object body = route.handle(request, response);
+      if (!(body instanceof String) || ((String) body).isEmpty()) {
+        return body;
+      }
+      final byte[] bytes = ((String) body).getBytes(StandardCharsets.UTF_8);
+      if (response.type() == null) {
+        response.type(JSON_CONTENT_TYPE);
+      }
+      try (OutputStream output =
+          this.compression.openResponseStream(request.raw(), response.raw(), bytes.length)) {
+        output.write(bytes);
+      }
+      response.raw().flushBuffer();
+      return "";
+    };
+  }
+
   /**
    * Initialize routes.
    */
   private void initializeRoutes() {
 
+    // Export all sensor hierarchies (must precede the path of a single sensor hierarchy)
+    this.webService.get(EXPORT_SENSOR_HIERARCHIES_PATH, (request, response) -> {
+      tagRoute(request, EXPORT_SENSOR_HIERARCHIES_PATH);
+      response.type(NDJSON_CONTENT_TYPE);
+      try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+          this.compression.openResponseStream(request.raw(), response.raw(), -1),
+          StandardCharsets.UTF_8))) {
+        this.sensorHierarchyRepository.exportSensorHierarchies(writer);
+      }
+      return "";
+    });
+
     // Get sensor hierarchy
     this.webService.get(GET_SENSOR_HIERARCHY_PATH, (request, response) -> {
+      tagRoute(request, GET_SENSOR_HIERARCHY_PATH);
       final String identifier = request.params("id");
       if (identifier == null) {
         response.status(400); // NOCS HTTP status code: Bad Request
         return "";
       }
-      final SensorRegistry registry = this.sensorHierarchyRepository.getSensorHierarchy(identifier);
-      if (registry == null) {
+      final Optional<SerializedSensorHierarchy> hierarchy =
+          this.sensorHierarchyRepository.getSerializedSensorHierarchy(identifier);
+      if (hierarchy.isEmpty()) {
         response.status(400); // NOCS HTTP status code: Bad Request
         return "";
       }
-      return registry.toJson();
+      final boolean binary = acceptsMediaType(
+          request.headers(ACCEPT_HEADER), SensorHierarchyBinaryFormat.CONTENT_TYPE);
+      final long length = binary
+          ? hierarchy.get().getBinaryLength()
+          : hierarchy.get().getJsonLength();
+      // Compressed representations have entity tags of their own
+      final String entityTag = HttpCompression.encodeEntityTag(
+          binary ? hierarchy.get().getBinaryEntityTag() : hierarchy.get().getEntityTag(),
+          this.compression.selectEncoding(request.raw(), length));
+      response.header(ETAG_HEADER, entityTag);
+      response.header(VARY_HEADER, ACCEPT_HEADER);
+      this.compression.addVaryHeader(response.raw());
+      if (matchesEntityTag(request.headers(IF_NONE_MATCH_HEADER), entityTag)) {
+        response.status(304); // NOCS HTTP status code: Not Modified
+        return "";
+      }
+      // Write the cached representation directly instead of copying it through the response body
+      response.type(binary ? SensorHierarchyBinaryFormat.CONTENT_TYPE : JSON_CONTENT_TYPE);
+      try (OutputStream output =
+          this.compression.openResponseStream(request.raw(), response.raw(), length)) {
+        if (binary) {
+          hierarchy.get().writeBinary(output);
+        } else {
+          hierarchy.get().writeJson(output);
+        }
+      }
+      return "";
     });
 
+    // Get the subtree of a sensor within a sensor hierarchy
+    this.webService.get(GET_SENSOR_SUBTREE_PATH, this.compressible((request, response) -> {
+      tagRoute(request, GET_SENSOR_SUBTREE_PATH);
+      final int depth;
+      try {
+        depth = parseDepth(request.queryParams(DEPTH_PARAM));
+      } catch (final NumberFormatException e) {
+        response.status(400); // NOCS HTTP status code: Bad Request
+        return "";
+      }
+      final Optional<Sensor> sensor = this.sensorHierarchyRepository
+          .getSerializedSensorHierarchy(request.params("id"))
+          .flatMap(hierarchy -> hierarchy.getSensor(request.params("sensorId")));
+      if (sensor.isEmpty()) {
+        response.status(404); // NOCS HTTP status code: Not Found
+        return NOT_FOUND_ERROR_MESSAGE;
+      }
+      response.type(JSON_CONTENT_TYPE);
+      return RestApiServer.GSON.toJson(SensorSubtreeUtils.toSubtree(sensor.get(), depth));
+    }));
+
     // Get all sensor hierarchies
-    this.webService.get(GET_SENSOR_HIERARCHIES_PATH, (request, response) -> {
-      return this.sensorHierarchyRepository
-          .getAllSensorHierarchies()
-          .stream()
-          .map(registry -> new TopLevelSensorType(
-              registry.getTopLevelSensor().getIdentifier(),
-              registry.getTopLevelSensor().getName()))
-          .collect(Collectors.toList());
-    }, RestApiServer.GSON::toJson);
+    this.webService.get(GET_SENSOR_HIERARCHIES_PATH, this.compressible((request, response) -> {
+      tagRoute(request, GET_SENSOR_HIERARCHIES_PATH);
+      final int limit;
+      try {
+        limit = parseLimit(request.queryParams(LIMIT_PARAM));
+      } catch (final NumberFormatException e) {
+        response.status(400); // NOCS HTTP status code: Bad Request
+        return "";
+      }
+      final SensorHierarchyPage page;
+      try {
+        page = this.sensorHierarchyRepository.getSensorHierarchyPage(
+            request.queryParams(CONTINUATION_TOKEN_PARAM), limit);
+      } catch (final IllegalArgumentException e) {
+        response.status(400); // NOCS HTTP status code: Bad Request
+        return "";
+      }
+      page.getContinuationToken()
+          .ifPresent(token -> response.header(CONTINUATION_TOKEN_HEADER, token));
+      response.type(JSON_CONTENT_TYPE);
+      return RestApiServer.GSON.toJson(page.getTopLevelSensors());
+    }));
 
     // Update sensor hierarchy
     this.webService.put(PUT_SENSOR_HIERARCHY_PATH, (request, response) -> {
+      tagRoute(request, PUT_SENSOR_HIERARCHY_PATH);
       if (Config.DEMO) {
         response.status(403); // NOCS HTTP response code
         return ACCESS_FORBIDDEN_MESSAGE;
       }
 
       final String topLevelSensorIdentifier = request.params("id");
-      final SensorRegistry sensorRegistry = SensorRegistry.fromJson(request.body());
+      final SensorRegistry sensorRegistry = this.parseSensorHierarchy(request);
       if (topLevelSensorIdentifier != null
           && topLevelSensorIdentifier.equals(sensorRegistry.getTopLevelSensor().getIdentifier())) {
 
-        // TODO validate uniqueness of aggregated sensors within the hierarchy
         final Optional<List<String>> collisions =
             this.sensorHierarchyRepository.updateSensorHierarchy(sensorRegistry);
 
@@ -124,7 +537,7 @@ public final class RestApiServer {
           return "";
         } else {
           response.status(409); // NOCS HTTP response code: Conflict
-          return RestApiServer.GSON.toJson(new CollisionsType(collisions.get()));
+          return RestApiServer.GSON.toJson(toCollisions(sensorRegistry, collisions.get()));
         }
       } else {
         response.status(400); // NOCS HTTP response code: Bad Request
@@ -133,35 +546,247 @@ public final class RestApiServer {
       return "";
     });
 
-    // Create sensor hierarchy
-    this.webService.post(POST_SENSOR_HIERARCHY_PATH, (request, response) -> {
+    // Modify sensor hierarchy incrementally
+    this.webService.patch(PATCH_SENSOR_HIERARCHY_PATH, (request, response) -> {
+      tagRoute(request, PATCH_SENSOR_HIERARCHY_PATH);
       if (Config.DEMO) {
         response.status(403); // NOCS HTTP response code
         return ACCESS_FORBIDDEN_MESSAGE;
       }
 
+      final PatchOperationType[] operations;
       try {
-        final SensorRegistry registry = SensorRegistry.fromJson(request.body());
-        final Optional<List<String>> collisions =
-            this.sensorHierarchyRepository.createSensorHierarchy(registry);
-        if (collisions.isEmpty()) {
-          response.status(204); // NOCS HTTP response code: Created
-          return "OK";
-        } else {
-          response.status(409); // NOCS HTTP response code: Conflict
-          return RestApiServer.GSON.toJson(new CollisionsType(collisions.get()));
-        }
+        operations = this.parseJsonBody(request, PatchOperationType[].class);
       } catch (final JsonParseException e) {
         response.status(400); // NOCS HTTP response code: Bad Request
         return "";
       }
+      if (operations == null) {
+        response.status(400); // NOCS HTTP response code: Bad Request
+        return "";
+      }
+
+      final Optional<Map<String, List<String>>> collisions;
+      try {
+        collisions = this.sensorHierarchyRepository.patchSensorHierarchy(
+            request.params("id"), Arrays.asList(operations));
+      } catch (final InvalidPatchException e) {
+        response.status(400); // NOCS HTTP response code: Bad Request
+        return e.getMessage();
+      }
+
+      if (collisions.isEmpty()) {
+        response.status(200); // NOCS HTTP response code: OK
+        return "";
+      } else {
+        response.status(409); // NOCS HTTP response code: Conflict
+        return RestApiServer.GSON.toJson(
+            new CollisionsType(new ArrayList<>(collisions.get().keySet()), collisions.get()));
+      }
+    });
+
+    // Create sensor hierarchy
+    this.webService.post(POST_SENSOR_HIERARCHY_PATH, (request, response) -> {
+      tagRoute(request, POST_SENSOR_HIERARCHY_PATH);
+      if (Config.DEMO) {
+        response.status(403); // NOCS HTTP response code
+        return ACCESS_FORBIDDEN_MESSAGE;
+      }
+
+      final SensorRegistry registry = this.parseSensorHierarchy(request);
+      final Optional<List<String>> collisions =
+          this.sensorHierarchyRepository.createSensorHierarchy(registry);
+      if (collisions.isEmpty()) {
+        response.status(204); // NOCS HTTP response code: Created
+        return "OK";
+      } else {
+        response.status(409); // NOCS HTTP response code: Conflict
+        return RestApiServer.GSON.toJson(toCollisions(registry, collisions.get()));
+      }
     });
 
+    // Create multiple sensor hierarchies
+    this.webService.post(IMPORT_SENSOR_HIERARCHIES_PATH, this.compressible((request, response) -> {
+      tagRoute(request, IMPORT_SENSOR_HIERARCHIES_PATH);
+      if (Config.DEMO) {
+        response.status(403); // NOCS HTTP response code
+        return ACCESS_FORBIDDEN_MESSAGE;
+      }
+
+      if (isMediaType(request.contentType(), NDJSON_CONTENT_TYPE)) {
+        response.type(JSON_CONTENT_TYPE);
+        try (OutputStream output =
+            this.compression.openResponseStream(request.raw(), response.raw(), -1)) {
+          this.importSensorHierarchies(this.compression.openRequestStream(request.raw()), output);
+        }
+        return "";
+      }
+
+      final List<SensorRegistry> registries = this.parseSensorHierarchies(request);
+      response.type(JSON_CONTENT_TYPE);
+      return RestApiServer.GSON.toJson(this.importSensorHierarchies(registries));
+    }));
+
     this.webService.delete(DELETE_SENSOR_HIERARCHY_PATH, (request, response) -> {
+      tagRoute(request, DELETE_SENSOR_HIERARCHY_PATH);
       final String identifier = request.params("id");
       this.sensorHierarchyRepository.deleteSensorHierarchy(identifier);
       return "";
     });
+
+    // Delete multiple sensor hierarchies
+    this.webService.post(DELETE_SENSOR_HIERARCHIES_PATH, (request, response) -> {
+      tagRoute(request, DELETE_SENSOR_HIERARCHIES_PATH);
+      if (Config.DEMO) {
+        response.status(403); // NOCS HTTP response code
+        return ACCESS_FORBIDDEN_MESSAGE;
+      }
+
+      final String[] identifiers;
+      try {
+        identifiers = this.parseJsonBody(request, String[].class);
+      } catch (final JsonParseException e) {
+        response.status(400); // NOCS HTTP response code: Bad Request
+        return "";
+      }
+      if (identifiers == null || Arrays.stream(identifiers).anyMatch(Objects::isNull)) {
+        response.status(400); // NOCS HTTP response code: Bad Request
+        return "";
+      }
+
+      final List<String> deleted =
+          this.sensorHierarchyRepository.deleteSensorHierarchies(Arrays.asList(identifiers));
+      final Set<String> deletedSet = new HashSet<>(deleted);
+      final List<String> notFound = Arrays.stream(identifiers)
+          .filter(identifier -> !deletedSet.contains(identifier))
+          .distinct()
+          .collect(Collectors.toList());
+      response.type(JSON_CONTENT_TYPE);
+      return RestApiServer.GSON.toJson(new DeletedHierarchiesType(deleted, notFound));
+    });
+
+    // Get statistics of the sensor hierarchy cache
+    this.webService.get(GET_CACHE_STATISTICS_PATH, (request, response) -> {
+      tagRoute(request, GET_CACHE_STATISTICS_PATH);
+      final CacheStats stats = this.sensorHierarchyRepository.getCacheStats();
+      return new CacheStatisticsType(
+          this.sensorHierarchyRepository.getCacheSize(),
+          stats.hitCount(),
+          stats.missCount(),
+          stats.evictionCount());
+    }, RestApiServer.GSON::toJson);
+
+    // Get statistics of the event outbox
+    this.webService.get(GET_OUTBOX_STATISTICS_PATH, (request, response) -> {
+      tagRoute(request, GET_OUTBOX_STATISTICS_PATH);
+      final EventOutbox outbox = this.sensorHierarchyRepository.getEventOutbox();
+      return new OutboxStatisticsType(
+          outbox.getPendingEvents(),
+          outbox.getPublishedEvents(),
+          outbox.getLagMs());
+    }, RestApiServer.GSON::toJson);
+
+    // Get metrics in the Prometheus text format
+    if (this.meterRegistry instanceof PrometheusMeterRegistry) {
+      final PrometheusMeterRegistry prometheusRegistry =
+          (PrometheusMeterRegistry) this.meterRegistry;
+      this.webService.get(GET_METRICS_PATH, this.compressible((request, response) -> {
+        tagRoute(request, GET_METRICS_PATH);
+        response.type(PROMETHEUS_CONTENT_TYPE);
+        return prometheusRegistry.scrape();
+      }));
+    }
+  }
+
+  /**
+   * Remember the route handling a request, so that its metrics are recorded by the route's path
+   * pattern instead of the requested path, which would result in one time series per resource.
+   *
+   * @param request The request.
+   * @param path The path pattern of the route.
+   */
+  private static void tagRoute(final Request request, final String path) {
+    request.attribute(ROUTE_ATTRIBUTE, path);
+  }
+
+  /**
+   * Record the rate and latency of requests per route, method and response status. Requests are
+   * timed from the first before filter to the last after filter, so that the time of exception
+   * handlers is included.
+   */
+  private void recordRequestMetrics() {
+    this.webService.before((request, response) -> {
+      request.attribute(START_TIME_ATTRIBUTE, System.nanoTime());
+    });
+
+    this.webService.afterAfter((request, response) -> {
+      final Long startTime = request.attribute(START_TIME_ATTRIBUTE);
+      if (startTime == null) {
+        return;
+      }
+      final String route = request.attribute(ROUTE_ATTRIBUTE);
+      // Spark sets the status of requests not matching any route only after all filters
+      final int status = route == null
+          ? 404 // NOCS HTTP response code: Not Found
+          : response.status();
+      MetricsUtils.latencyTimer(this.meterRegistry, REQUEST_TIMER,
+          "method", request.requestMethod(),
+          "uri", route == null ? UNMATCHED_ROUTE : route,
+          "status", Integer.toString(status))
+          .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    });
+  }
+
+  /**
+   * Check whether the value of an Accept header explicitly lists a media type. Quality values are
+   * ignored, so that clients have to list the media type only if they support it.
+   *
+   * @param accept The value of the Accept header or null if it is absent.
+   * @param mediaType The media type.
+   * @return True if the header is present and lists the media type.
+   */
+  private static boolean acceptsMediaType(final String accept, final String mediaType) {
+    if (accept == null) {
+      return false;
+    }
+    for (final String candidate : accept.split(",")) {
+      if (isMediaType(candidate, mediaType)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check whether a content type, possibly with parameters, is of a media type.
+   */
+  private static boolean isMediaType(final String contentType, final String mediaType) {
+    return contentType != null
+        && mediaType.equalsIgnoreCase(contentType.split(";", 2)[0].trim());
+  }
+
+  /**
+   * Check whether the value of an If-None-Match header matches an entity tag. Following RFC 7232,
+   * the weak comparison function is used, i.e., weak indicators of the listed tags are ignored.
+   * Entity tags of compressed and uncompressed representations of the resource match each other.
+   *
+   * @param ifNoneMatch The value of the If-None-Match header or null if it is absent.
+   * @param entityTag The current entity tag of the resource.
+   * @return True if the header is present and lists the entity tag or the wildcard.
+   */
+  static boolean matchesEntityTag(final String ifNoneMatch, final String entityTag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    final String decodedEntityTag = HttpCompression.decodeEntityTag(entityTag);
+    for (final String candidate : ifNoneMatch.split(",")) {
+      final String tag = candidate.trim();
+      if ("*".equals(tag) || decodedEntityTag.equals(
+          HttpCompression.decodeEntityTag(tag.startsWith("W/") ? tag.substring(2) : tag))) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private void handleErrors() {
@@ -171,6 +796,24 @@ public final class RestApiServer {
       response.body(NOT_FOUND_ERROR_MESSAGE);
       LOGGER.error("", e);
     });
+    this.webService.exception(SensorHierarchyConflictException.class, (e, request, response) -> {
+      response.status(409); // NOCS HTTP response code: Conflict
+      response.body(CONFLICT_ERROR_MESSAGE);
+      LOGGER.warn("Sensor hierarchy was modified concurrently.");
+    });
+    this.webService.exception(SensorHierarchyTooLargeException.class, (e, request, response) -> {
+      response.status(413); // NOCS HTTP response code: Payload Too Large
+      response.body(e.getMessage());
+    });
+    this.webService.exception(UnsupportedContentEncodingException.class,
+        (e, request, response) -> {
+          response.status(415); // NOCS HTTP response code: Unsupported Media Type
+          response.body(e.getMessage());
+        });
+    this.webService.exception(InvalidSensorHierarchyException.class, (e, request, response) -> {
+      response.status(400); // NOCS HTTP response code: Bad Request
+      response.body(e.getMessage());
+    });
     this.webService.exception(Exception.class, (e, request, response) -> {
       response.status(500); // NOCS HTTP response code: Internal Server Error
       response.body(INTERNAL_SERVER_ERROR_MESSAGE);
@@ -184,7 +827,7 @@ public final class RestApiServer {
   private void enableCorsHeaders() {
 
     this.webService.options("/*", (request, response) -> {
-
+      tagRoute(request, "/*");
       final String accessControlRequestHeaders = request.headers("Access-Control-Request-Headers");
       if (accessControlRequestHeaders != null) {
         response.header("Access-Control-Allow-Headers", accessControlRequestHeaders);
@@ -202,10 +845,19 @@ public final class RestApiServer {
     });
 
     this.webService.after((request, response) -> {
-      response.type("application/json");
+      if (response.type() == null) {
+        response.type(JSON_CONTENT_TYPE);
+      }
     });
   }
 
+  /**
+   * Wait until the webserver accepts requests.
+   */
+  void awaitInitialization() {
+    this.webService.awaitInitialization();
+  }
+
   /**
    * Stop the webserver.
    */
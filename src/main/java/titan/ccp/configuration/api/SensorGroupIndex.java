@@ -0,0 +1,83 @@
+package titan.ccp.configuration.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of all sensor groups (aggregated sensors) of all hierarchies, mapping the
+ * identifier of each sensor group to the identifier of the top level sensor of its hierarchy. The
+ * index allows to detect collisions of sensor group identifiers by hash lookups instead of querying
+ * the database for each sensor group.
+ *
+ * <p>
+ * The index mirrors the sensor groups written by this instance. Hence, it may miss sensor groups
+ * written by other instances or contain sensor groups removed by them. Candidates found by the
+ * index should be confirmed by the database. Missed collisions are rejected by the unique index of
+ * the database with a duplicate key error. The repository then loads the sensor groups concerned
+ * into the index and checks them again, so that they are reported as collisions.
+ * </p>
+ */
+public final class SensorGroupIndex {
+
+  private final Map<String, String> topLevelIdentifiers = new ConcurrentHashMap<>();
+
+  /**
+   * Add a sensor group to the index or move it to another hierarchy.
+   *
+   * @param identifier The identifier of the sensor group.
+   * @param topLevelIdentifier The identifier of the top level sensor of the group's hierarchy.
+   */
+  public void put(final String identifier, final String topLevelIdentifier) {
+    this.topLevelIdentifiers.put(identifier, topLevelIdentifier);
+  }
+
+  /**
+   * Remove a sensor group from the index, if it belongs to the given hierarchy.
+   *
+   * @param identifier The identifier of the sensor group.
+   * @param topLevelIdentifier The identifier of the top level sensor of the group's hierarchy.
+   */
+  public void remove(final String identifier, final String topLevelIdentifier) {
+    this.topLevelIdentifiers.remove(identifier, topLevelIdentifier);
+  }
+
+  /**
+   * Remove all sensor groups of a hierarchy from the index.
+   *
+   * @param topLevelIdentifier The identifier of the top level sensor of the hierarchy.
+   */
+  public void removeHierarchy(final String topLevelIdentifier) {
+    this.topLevelIdentifiers.values().removeIf(topLevelIdentifier::equals);
+  }
+
+  /**
+   * Find the sensor groups colliding with sensor groups of other hierarchies.
+   *
+   * @param identifiers The identifiers of the sensor groups to check.
+   * @param topLevelIdentifier The identifier of the top level sensor of the hierarchy the sensor
+   *        groups belong to or null, if sensor groups of all hierarchies should be considered.
+   * @return The identifiers of the colliding sensor groups.
+   */
+  public List<String> findCollisions(final Collection<String> identifiers,
+      final String topLevelIdentifier) {
+    final List<String> collisions = new ArrayList<>();
+    for (final String identifier : identifiers) {
+      final String owner = this.topLevelIdentifiers.get(identifier);
+      if (owner != null && !owner.equals(topLevelIdentifier)) {
+        collisions.add(identifier);
+      }
+    }
+    return collisions;
+  }
+
+  /**
+   * Get the number of sensor groups in this index.
+   */
+  public int size() {
+    return this.topLevelIdentifiers.size();
+  }
+
+}
@@ -0,0 +1,195 @@
+package titan.ccp.configuration.api;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import titan.ccp.configuration.api.util.SensorHierarchyHashes;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Bounded read-through cache of parsed and serialized sensor hierarchies, keyed by the identifier
+ * of their top level sensor. The size of the cache is measured in bytes, estimated for each
+ * hierarchy from the length of its JSON serialization and its number of sensors (see
+ * {@link #ESTIMATED_SENSOR_BYTES}).
+ *
+ * <p>
+ * As hierarchies may also be modified by other instances of the service, cached hierarchies expire
+ * after a configurable time, which bounds how long a stale version is served. Hierarchies that do
+ * not exist are not cached, so that they become visible as soon as another instance creates them
+ * and requests for unknown identifiers do not evict existing hierarchies.
+ * </p>
+ *
+ * <p>
+ * Written hierarchies only replace cached ones with a lower or equal version, so that a writer
+ * that finishes late does not overwrite a newer version. Removing a deleted hierarchy leaves a
+ * marker that drops writes of the hierarchy for the expiry time, so that a late write cannot
+ * resurrect it. Loading the hierarchy from the database is not affected by the marker.
+ * </p>
+ */
+public final class SensorHierarchyCache {
+
+  /**
+   * Estimated number of bytes a hierarchy occupies per sensor in addition to its JSON
+   * serialization. It covers the immutable sensor object with its identifier and name, the entry in
+   * the index of sensors and the binary representation, which is encoded lazily and hence cannot
+   * be weighed when the hierarchy is added.
+   */
+  public static final int ESTIMATED_SENSOR_BYTES = 256;
+
+  private final Cache<String, SerializedSensorHierarchy> cache;
+  private final Cache<String, Boolean> deleted;
+  private final Function<String, Optional<SerializedSensorHierarchy>> loader;
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxBytes The maximum estimated number of bytes (summed over all cached hierarchies) this
+   *        cache holds before it starts evicting hierarchies.
+   * @param expireAfterWriteMs The time in milliseconds after which a hierarchy is removed from this
+   *        cache once it has been loaded or written.
+   * @param loader Function loading a hierarchy on a cache miss. It returns an empty Optional if the
+   *        hierarchy does not exist.
+   */
+  public SensorHierarchyCache(final long maxBytes, final long expireAfterWriteMs,
+      final Function<String, Optional<SerializedSensorHierarchy>> loader) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxBytes)
+        .<String, SerializedSensorHierarchy>weigher(
+            (identifier, hierarchy) -> estimateBytes(hierarchy))
+        .expireAfterWrite(expireAfterWriteMs, TimeUnit.MILLISECONDS)
+        .recordStats()
+        .build();
+    this.deleted = CacheBuilder.newBuilder()
+        .expireAfterWrite(expireAfterWriteMs, TimeUnit.MILLISECONDS)
+        .build();
+    this.loader = loader;
+  }
+
+  /**
+   * Get a sensor hierarchy, loading it if it is not cached yet.
+   *
+   * @param identifier The identifier of the hierarchy's top level sensor.
+   * @return The sensor hierarchy or an empty Optional if it does not exist.
+   */
+  public Optional<SerializedSensorHierarchy> get(final String identifier) {
+    try {
+      return Optional.of(this.cache.get(identifier, () -> this.loader.apply(identifier)
+          .orElseThrow(SensorHierarchyAbsentException::new)));
+    } catch (final ExecutionException e) {
+      // Only thrown for the checked SensorHierarchyAbsentException, which is not cached
+      return Optional.empty();
+    } catch (final UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause(); // NOPMD rethrow the loader's exception
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Replace the cached version of a sensor hierarchy.
+   *
+   * @param hierarchy The new version of the hierarchy.
+   * @param version The version number of the stored hierarchy.
+   */
+  public void put(final SensorRegistry hierarchy, final long version) {
+    this.put(hierarchy, SensorHierarchyHashes.of(hierarchy), version);
+  }
+
+  /**
+   * Replace the cached version of a sensor hierarchy whose structural hashes are already known.
+   *
+   * @param hierarchy The new version of the hierarchy.
+   * @param hashes The structural hashes of the new version of the hierarchy.
+   * @param version The version number of the stored hierarchy.
+   */
+  public void put(final SensorRegistry hierarchy, final SensorHierarchyHashes hashes,
+      final long version) {
+    this.put(SerializedSensorHierarchy.of(hierarchy, hashes, version));
+  }
+
+  /**
+   * Replace the cached version of a sensor hierarchy by an already serialized version. The cached
+   * version is kept if it is newer or if the hierarchy has been removed recently.
+   *
+   * @param hierarchy The new version of the hierarchy.
+   */
+  public void put(final SerializedSensorHierarchy hierarchy) {
+    // Compute is atomic per identifier, so that it cannot interleave with a removal
+    this.cache.asMap().compute(
+        hierarchy.getRegistry().getTopLevelSensor().getIdentifier(),
+        (identifier, cached) -> {
+          if (this.deleted.getIfPresent(identifier) != null) {
+            return cached;
+          }
+          return cached == null || cached.getVersion() <= hierarchy.getVersion()
+              ? hierarchy
+              : cached;
+        });
+  }
+
+  /**
+   * Remove a possibly stale version of a sensor hierarchy from the cache, so that it is loaded
+   * again on the next request.
+   *
+   * @param identifier The identifier of the hierarchy's top level sensor.
+   */
+  public void invalidate(final String identifier) {
+    this.cache.invalidate(identifier);
+  }
+
+  /**
+   * Remove a deleted sensor hierarchy from the cache. Writes of the hierarchy are dropped for the
+   * expiry time of this cache.
+   *
+   * @param identifier The identifier of the hierarchy's top level sensor.
+   */
+  public void remove(final String identifier) {
+    this.cache.asMap().compute(identifier, (key, cached) -> {
+      this.deleted.put(key, Boolean.TRUE);
+      return null;
+    });
+  }
+
+  /**
+   * Get the statistics of this cache, containing, e.g., the number of hits, misses and evictions.
+   */
+  public CacheStats getStats() {
+    return this.cache.stats();
+  }
+
+  /**
+   * Get the number of hierarchies currently held by this cache.
+   */
+  public long size() {
+    return this.cache.size();
+  }
+
+  /**
+   * Estimate the number of bytes a hierarchy occupies in this cache.
+   */
+  static int estimateBytes(final SerializedSensorHierarchy hierarchy) {
+    final long bytes = hierarchy.getJsonLength()
+        + (long) hierarchy.getSensorCount() * ESTIMATED_SENSOR_BYTES;
+    return (int) Math.min(bytes, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Exception signaling the loader found no hierarchy. It is checked, so that it can be told apart
+   * from exceptions of the loader, and has no stack trace, as it is not an error.
+   */
+  @SuppressWarnings("serial")
+  private static class SensorHierarchyAbsentException extends Exception {
+
+    SensorHierarchyAbsentException() {
+      super(null, null, false, false);
+    }
+
+  }
+
+}
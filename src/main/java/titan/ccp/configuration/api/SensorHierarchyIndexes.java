@@ -0,0 +1,48 @@
+package titan.ccp.configuration.api;
+
+import java.util.List;
+import titan.ccp.configuration.api.IndexReconciler.Index;
+
+/**
+ * Indexes required by the queries of the {@link SensorHierarchyRepository}. All queries match
+ * identifiers by equality, so that ascending indexes are used.
+ */
+public final class SensorHierarchyIndexes {
+
+  private static final String IDENTIFIER_FIELD = "identifier";
+  private static final String TOP_LEVEL_IDENTIFIER_FIELD = "topLevelSensor";
+
+  private SensorHierarchyIndexes() {
+
+  }
+
+  /**
+   * Indexes of the collection of sensor hierarchies, which are looked up by the identifier of
+   * their top level sensor.
+   */
+  public static List<Index> forSensorHierarchies() {
+    return List.of(Index.ascending(true, IDENTIFIER_FIELD));
+  }
+
+  /**
+   * Indexes of the collection of sensor groups, whose identifiers are unique across all
+   * hierarchies. They are looked up by their identifier and by their hierarchy.
+   */
+  public static List<Index> forSensorGroups() {
+    return List.of(
+        Index.ascending(true, IDENTIFIER_FIELD),
+        Index.ascending(false, TOP_LEVEL_IDENTIFIER_FIELD));
+  }
+
+  /**
+   * Indexes of the collection of machine sensors, which may be contained in multiple hierarchies.
+   * They are looked up by their identifier, optionally together with their hierarchy, and by their
+   * hierarchy.
+   */
+  public static List<Index> forMachineSensors() {
+    return List.of(
+        Index.ascending(false, IDENTIFIER_FIELD, TOP_LEVEL_IDENTIFIER_FIELD),
+        Index.ascending(false, TOP_LEVEL_IDENTIFIER_FIELD));
+  }
+
+}
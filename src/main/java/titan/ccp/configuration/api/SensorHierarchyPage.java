@@ -0,0 +1,40 @@
+package titan.ccp.configuration.api;
+
+import java.util.List;
+import java.util.Optional;
+import titan.ccp.configuration.api.util.jsondeserialization.TopLevelSensorType;
+
+/**
+ * A page of the listing of all sensor hierarchies, identified by their top level sensors, together
+ * with a continuation token for requesting the next page.
+ */
+public final class SensorHierarchyPage {
+
+  private final List<TopLevelSensorType> topLevelSensors;
+  private final String continuationToken;
+
+  /**
+   * Create a new page.
+   *
+   * @param topLevelSensors The top level sensors of the hierarchies on this page.
+   * @param continuationToken The token for requesting the next page or null, if this is the last
+   *        page.
+   */
+  public SensorHierarchyPage(final List<TopLevelSensorType> topLevelSensors,
+      final String continuationToken) {
+    this.topLevelSensors = topLevelSensors;
+    this.continuationToken = continuationToken;
+  }
+
+  public List<TopLevelSensorType> getTopLevelSensors() {
+    return this.topLevelSensors;
+  }
+
+  /**
+   * Get the token for requesting the next page or an empty Optional, if this is the last page.
+   */
+  public Optional<String> getContinuationToken() {
+    return Optional.ofNullable(this.continuationToken);
+  }
+
+}
@@ -0,0 +1,321 @@
+package titan.ccp.configuration.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import titan.ccp.configuration.api.util.EventType;
+import titan.ccp.configuration.api.util.SensorChangedEvent;
+import titan.ccp.configuration.api.util.SensorHierarchyValidationUtils;
+import titan.ccp.configuration.api.util.jsondeserialization.PatchOperationType;
+import titan.ccp.model.sensorregistry.AggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableAggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+import titan.ccp.model.sensorregistry.Sensor;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Incremental modification of a sensor hierarchy by a sequence of operations, which add, move,
+ * remove or rename individual sensors. In contrast to replacing the entire hierarchy, the changes
+ * of the sensors are derived from the sensors touched by the operations, so that the hierarchies
+ * do not have to be compared and only identifiers of added sensors have to be checked for
+ * collisions.
+ */
+public final class SensorHierarchyPatch {
+
+  private static final String ADD_OPERATION = "add";
+  private static final String MOVE_OPERATION = "move";
+  private static final String REMOVE_OPERATION = "remove";
+  private static final String RENAME_OPERATION = "rename";
+
+  private final SerializedSensorHierarchy existing;
+  private final Map<String, Node> nodes = new HashMap<>();
+  private final Node topLevelNode;
+  private final Set<String> touchedIdentifiers = new LinkedHashSet<>();
+  private final Map<String, List<String>> collisions = new LinkedHashMap<>();
+
+  /**
+   * Create a new patch of a sensor hierarchy.
+   *
+   * @param existing The current version of the sensor hierarchy.
+   */
+  public SensorHierarchyPatch(final SerializedSensorHierarchy existing) {
+    this.existing = existing;
+    this.topLevelNode = this.copy(existing.getRegistry().getTopLevelSensor(), null);
+  }
+
+  /**
+   * Apply a sequence of operations to the hierarchy. Adding a sensor whose identifier already
+   * exists in the hierarchy is not applied, but recorded as collision.
+   *
+   * @param operations The operations in the order they should be applied.
+   * @throws InvalidPatchException If an operation is invalid, e.g., because it refers to a sensor
+   *         that does not exist.
+   */
+  public void apply(final List<PatchOperationType> operations) {
+    for (final PatchOperationType operation : operations) {
+      if (operation == null || operation.getOp() == null) {
+        throw new InvalidPatchException("Missing operation.");
+      }
+      switch (operation.getOp()) {
+        case ADD_OPERATION:
+          this.add(operation);
+          break;
+        case MOVE_OPERATION:
+          this.move(operation);
+          break;
+        case REMOVE_OPERATION:
+          this.remove(operation);
+          break;
+        case RENAME_OPERATION:
+          this.rename(operation);
+          break;
+        default:
+          throw new InvalidPatchException("Unknown operation: " + operation.getOp());
+      }
+    }
+  }
+
+  /**
+   * Get the identifiers of sensors that could not be added, since sensors with the same identifier
+   * already exist in the hierarchy.
+   */
+  public List<String> getCollisions() {
+    return new ArrayList<>(this.collisions.keySet());
+  }
+
+  /**
+   * Get the paths of the sensors involved in collisions, i.e., the path of the existing sensor
+   * followed by the paths at which sensors with the same identifier should have been added.
+   *
+   * @return A map from each colliding identifier to the paths of the sensors using it, in the order
+   *         the collisions occurred.
+   */
+  public Map<String, List<String>> getCollisionPaths() {
+    return this.collisions;
+  }
+
+  /**
+   * Check whether the applied operations modified the hierarchy.
+   */
+  public boolean isModified() {
+    return !this.touchedIdentifiers.isEmpty();
+  }
+
+  /**
+   * Build the patched sensor hierarchy.
+   */
+  public SensorRegistry toHierarchy() {
+    final MutableSensorRegistry hierarchy =
+        new MutableSensorRegistry(this.topLevelNode.identifier, this.topLevelNode.name);
+    this.addChildren(hierarchy.getTopLevelSensor(), this.topLevelNode);
+    return hierarchy;
+  }
+
+  /**
+   * Get the changes of the sensors caused by the applied operations. Deleted sensors are listed
+   * first, followed by added, moved and renamed sensors, so that the changes can be written in this
+   * order.
+   *
+   * @param patched The patched sensor hierarchy, built by {@link #toHierarchy()}.
+   * @return The changes of the sensors, referring to sensors of the existing hierarchy for deleted
+   *         sensors and to sensors of the patched hierarchy otherwise.
+   */
+  public List<SensorChangedEvent> getChanges(final SerializedSensorHierarchy patched) {
+    final List<SensorChangedEvent> deleted = new ArrayList<>();
+    final List<SensorChangedEvent> added = new ArrayList<>();
+    final List<SensorChangedEvent> moved = new ArrayList<>();
+    final List<SensorChangedEvent> renamed = new ArrayList<>();
+    for (final String identifier : this.touchedIdentifiers) {
+      final Optional<Sensor> oldSensor = this.existing.getSensor(identifier);
+      final Optional<Sensor> newSensor = patched.getSensor(identifier);
+      final boolean typeChanged = oldSensor.isPresent() && newSensor.isPresent()
+          && isAggregated(oldSensor.get()) != isAggregated(newSensor.get());
+      if (oldSensor.isPresent() && (newSensor.isEmpty() || typeChanged)) {
+        deleted.add(new SensorChangedEvent(oldSensor.get(), EventType.SENSOR_DELETED)); // NOPMD
+      }
+      if (newSensor.isPresent() && (oldSensor.isEmpty() || typeChanged)) {
+        added.add(new SensorChangedEvent(newSensor.get(), EventType.SENSOR_ADDED)); // NOPMD
+      } else if (newSensor.isPresent()) {
+        if (!Objects.equals(getParentIdentifier(oldSensor.get()),
+            getParentIdentifier(newSensor.get()))) {
+          moved.add(new SensorChangedEvent(newSensor.get(), EventType.SENSOR_MOVED)); // NOPMD
+        }
+        if (!Objects.equals(oldSensor.get().getName(), newSensor.get().getName())) {
+          renamed.add(new SensorChangedEvent(newSensor.get(), EventType.SENSOR_RENAMED)); // NOPMD
+        }
+      }
+    }
+    final List<SensorChangedEvent> changes =
+        new ArrayList<>(deleted.size() + added.size() + moved.size() + renamed.size());
+    changes.addAll(deleted);
+    changes.addAll(added);
+    changes.addAll(moved);
+    changes.addAll(renamed);
+    return changes;
+  }
+
+  private void add(final PatchOperationType operation) {
+    final String identifier = requireField(operation.getIdentifier(), "identifier");
+    final String name = requireField(operation.getName(), "name");
+    final Node parent = this.getAggregatedNode(requireField(operation.getParent(), "parent"));
+    if (this.nodes.containsKey(identifier)) {
+      this.collisions
+          .computeIfAbsent(identifier, collided -> new ArrayList<>(
+              List.of(this.nodes.get(collided).getPath())))
+          .add(parent.getPath() + SensorHierarchyValidationUtils.PATH_SEPARATOR + identifier);
+      return;
+    }
+    final Node node = new Node(identifier, name, operation.isAggregated(), parent);
+    parent.children.add(node);
+    this.nodes.put(identifier, node);
+    this.touchedIdentifiers.add(identifier);
+  }
+
+  private void move(final PatchOperationType operation) {
+    final Node node =
+        this.getNonTopLevelNode(requireField(operation.getIdentifier(), "identifier"));
+    final Node parent = this.getAggregatedNode(requireField(operation.getParent(), "parent"));
+    for (Node ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+      if (ancestor == node) { // NOPMD compare references
+        throw new InvalidPatchException(
+            "Sensor '" + node.identifier + "' cannot be moved into its own subtree.");
+      }
+    }
+    node.parent.children.remove(node);
+    parent.children.add(node);
+    node.parent = parent;
+    this.touchedIdentifiers.add(node.identifier);
+  }
+
+  private void remove(final PatchOperationType operation) {
+    final Node node =
+        this.getNonTopLevelNode(requireField(operation.getIdentifier(), "identifier"));
+    node.parent.children.remove(node);
+    this.removeSubtree(node);
+  }
+
+  private void rename(final PatchOperationType operation) {
+    final Node node = this.getNode(requireField(operation.getIdentifier(), "identifier"));
+    node.name = requireField(operation.getName(), "name");
+    this.touchedIdentifiers.add(node.identifier);
+  }
+
+  private void removeSubtree(final Node node) {
+    this.nodes.remove(node.identifier);
+    this.touchedIdentifiers.add(node.identifier);
+    for (final Node child : node.children) {
+      this.removeSubtree(child);
+    }
+  }
+
+  private Node copy(final Sensor sensor, final Node parent) {
+    final Node node = new Node(sensor.getIdentifier(), sensor.getName(), isAggregated(sensor),
+        parent);
+    this.nodes.putIfAbsent(node.identifier, node);
+    if (sensor instanceof AggregatedSensor) {
+      for (final Sensor child : ((AggregatedSensor) sensor).getChildren()) {
+        node.children.add(this.copy(child, node));
+      }
+    }
+    return node;
+  }
+
+  private void addChildren(final MutableAggregatedSensor sensor, final Node node) {
+    for (final Node child : node.children) {
+      if (child.aggregated) {
+        this.addChildren(sensor.addChildAggregatedSensor(child.identifier, child.name), child);
+      } else {
+        sensor.addChildMachineSensor(child.identifier, child.name);
+      }
+    }
+  }
+
+  private Node getNode(final String identifier) {
+    final Node node = this.nodes.get(identifier);
+    if (node == null) {
+      throw new InvalidPatchException("Sensor '" + identifier + "' does not exist.");
+    }
+    return node;
+  }
+
+  private Node getNonTopLevelNode(final String identifier) {
+    final Node node = this.getNode(identifier);
+    if (node.parent == null) {
+      throw new InvalidPatchException("The top level sensor cannot be moved or removed.");
+    }
+    return node;
+  }
+
+  private Node getAggregatedNode(final String identifier) {
+    final Node node = this.getNode(identifier);
+    if (!node.aggregated) {
+      throw new InvalidPatchException("Sensor '" + identifier + "' is no aggregated sensor.");
+    }
+    return node;
+  }
+
+  private static String requireField(final String value, final String field) {
+    if (value == null) {
+      throw new InvalidPatchException("Missing field '" + field + "'.");
+    }
+    return value;
+  }
+
+  private static boolean isAggregated(final Sensor sensor) {
+    return sensor instanceof AggregatedSensor;
+  }
+
+  private static String getParentIdentifier(final Sensor sensor) {
+    return sensor.getParent().map(Sensor::getIdentifier).orElse(null);
+  }
+
+  /**
+   * Mutable sensor of the hierarchy while it is patched.
+   */
+  private static final class Node {
+    private final String identifier;
+    private String name;
+    private final boolean aggregated;
+    private Node parent;
+    private final List<Node> children = new ArrayList<>();
+
+    private Node(final String identifier, final String name, final boolean aggregated,
+        final Node parent) {
+      this.identifier = identifier;
+      this.name = name;
+      this.aggregated = aggregated;
+      this.parent = parent;
+    }
+
+    private String getPath() {
+      final Deque<String> identifiers = new ArrayDeque<>();
+      for (Node node = this; node != null; node = node.parent) {
+        identifiers.addFirst(node.identifier);
+      }
+      return String.join(SensorHierarchyValidationUtils.PATH_SEPARATOR, identifiers);
+    }
+  }
+
+  /**
+   * Thrown if an operation of a patch is invalid, e.g., because it is unknown, lacks a required
+   * field or refers to a sensor that does not exist.
+   */
+  public static class InvalidPatchException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidPatchException(final String message) {
+      super(message);
+    }
+
+  }
+
+}
@@ -1,35 +1,74 @@
 package titan.ccp.configuration.api; // NOPMD see !8
 
+import com.google.common.cache.CacheStats;
 import com.google.common.io.Resources;
+import com.mongodb.ConnectionString;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
 import com.mongodb.client.ClientSession;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.DeleteOneModel;
 import com.mongodb.client.model.Filters;
-import com.mongodb.client.model.IndexOptions;
-import com.mongodb.client.model.Indexes;
-import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsCommandListener;
 import java.io.IOException;
+import java.io.Writer;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.bson.Document;
 import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import titan.ccp.configuration.Config;
+import titan.ccp.configuration.api.storage.DocumentSensorHierarchyStorage;
+import titan.ccp.configuration.api.storage.NormalizedSensorHierarchyStorage;
+import titan.ccp.configuration.api.storage.SensorHierarchyStorage;
 import titan.ccp.configuration.api.util.EventType;
+import titan.ccp.configuration.api.util.MetricsUtils;
 import titan.ccp.configuration.api.util.SensorChangedEvent;
 import titan.ccp.configuration.api.util.SensorHierarchyComparatorUtils;
-import titan.ccp.configuration.events.Event;
-import titan.ccp.configuration.events.EventPublisher;
-import titan.ccp.configuration.events.KafkaPublisher;
-import titan.ccp.configuration.events.NoopPublisher;
+import titan.ccp.configuration.api.util.SensorHierarchyHashes;
+import titan.ccp.configuration.api.util.SensorHierarchyValidationUtils;
+import titan.ccp.configuration.api.util.jsondeserialization.PatchOperationType;
+import titan.ccp.configuration.api.util.jsondeserialization.TopLevelSensorType;
+import titan.ccp.configuration.changes.ConfigurationEvent;
+import titan.ccp.configuration.changes.ConfigurationEventType;
+import titan.ccp.configuration.changes.EventDispatcher;
+import titan.ccp.configuration.changes.EventOutbox;
+import titan.ccp.configuration.changes.KafkaRegistryEventPublisher;
+import titan.ccp.configuration.changes.KafkaSensorChangesPublisher;
+import titan.ccp.configuration.changes.NoopRegistryEventPublisher;
+import titan.ccp.configuration.changes.NoopSensorChangesPublisher;
+import titan.ccp.configuration.changes.RegistryEventPublisher;
+import titan.ccp.configuration.changes.SensorChange;
+import titan.ccp.configuration.changes.SensorChanges;
+import titan.ccp.configuration.changes.SensorChangesPublisher;
 import titan.ccp.model.sensorregistry.AggregatedSensor;
 import titan.ccp.model.sensorregistry.MachineSensor;
 import titan.ccp.model.sensorregistry.MutableSensorRegistry;
@@ -47,14 +86,36 @@ public final class SensorHierarchyRepository { // NOPMD see !8
   private static final String COLLLECTION_NAME = "sensorHierarchies";
   private static final String COLLECTION_SENSORS = "sensorGroups";
   private static final String COLLECTION_MACHINE_SENSORS = "machineSensors";
+  private static final String COLLECTION_EVENT_OUTBOX = "eventOutbox";
+  private static final String COLLECTION_EVENT_OUTBOX_LEASES = "eventOutboxLeases";
+  private static final String COLLECTION_EVENT_OUTBOX_SEQUENCES = "eventOutboxSequences";
+  private static final String COLLECTION_HIERARCHY_NODES = "sensorHierarchyNodes";
+  private static final String DOCUMENT_STORAGE_MODE = "document";
+  private static final String NORMALIZED_STORAGE_MODE = "normalized";
+  private static final String JSON_HIERARCHY_FORMAT = "json";
+  private static final String BINARY_HIERARCHY_FORMAT = "binary";
+  private static final String ID_FIELD = "_id";
   private static final String IDENTIFIER_FIELD = "identifier";
+  private static final String NAME_FIELD = "name";
   private static final String PARENT_FIELD = "parent";
   private static final String TOP_LEVEL_IDENTIFIER_FIELD = "topLevelSensor";
   private static final String DEFAULT_HIERARCHY_IDENTIFIER = "root";
-
-  private final EventPublisher eventPublisher;
+  private static final long INITIAL_VERSION = 1;
+  private static final int NAMESPACE_EXISTS_ERROR = 48;
+  private static final String OPERATION_TIMER = "repository.operations";
+  private static final String SENSORS_GAUGE = "sensors";
+  private static final String SENSORS_GAUGE_DESCRIPTION = "Number of sensors of all hierarchies";
+  private static final String SENSOR_TYPE_TAG = "type";
+
+  private final EventDispatcher eventDispatcher;
+  private final EventOutbox eventOutbox;
   private final MongoClient mongoClient;
-  private final ClientSession session;
+  private final MongoDatabase database;
+  private final MeterRegistry meterRegistry;
+  private final SensorHierarchyCache cache;
+  private final SensorHierarchyStorage storage;
+  private final SensorGroupIndex sensorGroupIndex = new SensorGroupIndex();
+  private final RefreshingGauges refreshingGauges;
 
   /**
    * Schema consists of the properties of the sensor hierarchy as json where the index is
@@ -77,79 +138,285 @@ public final class SensorHierarchyRepository { // NOPMD see !8
   /**
    * Create the repository.
    *
+   * @param mongoDbConnectionUrl The URL of the MongoDB to connect to.
+   * @param meterRegistry The registry to record metrics of database operations and events in.
    * @throws ConfigurationRepositoryException When there occurs an error within the repository.
    */
-  public SensorHierarchyRepository(final String mongoDbConnectionUrl) {
+  public SensorHierarchyRepository(final String mongoDbConnectionUrl,
+      final MeterRegistry meterRegistry) {
+    this(mongoDbConnectionUrl, DATABASE_NAME, meterRegistry);
+  }
 
-    this.mongoClient = MongoClients.create(mongoDbConnectionUrl);
+  /**
+   * Create the repository storing its collections in a specific database, e.g., for tests.
+   *
+   * @param mongoDbConnectionUrl The URL of the MongoDB to connect to.
+   * @param databaseName The name of the database containing the collections.
+   * @param meterRegistry The registry to record metrics of database operations and events in.
+   * @throws ConfigurationRepositoryException When there occurs an error within the repository.
+   */
+  public SensorHierarchyRepository(final String mongoDbConnectionUrl, final String databaseName,
+      final MeterRegistry meterRegistry) {
 
-    this.machineSensors = this.mongoClient
-        .getDatabase(DATABASE_NAME)
-        .getCollection(COLLECTION_MACHINE_SENSORS);
-    this.sensorGroups = this.mongoClient
-        .getDatabase(DATABASE_NAME)
-        .getCollection(COLLECTION_SENSORS);
-    this.sensorHierarchies = this.mongoClient
-        .getDatabase(DATABASE_NAME)
-        .getCollection(COLLLECTION_NAME);
+    this.meterRegistry = meterRegistry;
+    this.refreshingGauges = new RefreshingGauges(meterRegistry, Config.METRICS_GAUGES_INTERVAL_MS);
+    this.mongoClient = MongoClients.create(MongoClientSettings.builder()
+        .applyConnectionString(new ConnectionString(mongoDbConnectionUrl))
+        .addCommandListener(new MongoMetricsCommandListener(meterRegistry))
+        .build());
+    this.database = this.mongoClient.getDatabase(databaseName);
 
-    this.session = this.mongoClient.startSession();
+    this.machineSensors = this.database.getCollection(COLLECTION_MACHINE_SENSORS);
+    this.sensorGroups = this.database.getCollection(COLLECTION_SENSORS);
+    this.sensorHierarchies = this.database.getCollection(COLLLECTION_NAME);
+
+    this.storage = this.createStorage(this.database.getCollection(COLLECTION_HIERARCHY_NODES));
+
+    this.cache = new SensorHierarchyCache(
+        Config.CACHE_MAX_BYTES, Config.CACHE_EXPIRE_AFTER_WRITE_MS, this::loadSensorHierarchy);
 
     this.initDatabase();
 
+    this.migrateSensorHierarchies();
+
+    this.deleteOrphanedSensors();
+
+    if (Config.COLLISION_INDEX) {
+      this.warmSensorGroupIndex();
+    }
+
+    final Properties producerProperties = this.buildProducerProperties();
+
+    final RegistryEventPublisher registryEventPublisher;
     if (Config.EVENT_PUBLISHING) {
-      this.eventPublisher = new KafkaPublisher(Config.KAFKA_BOOTSTRAP_SERVERS, Config.KAFKA_TOPIC);
+      registryEventPublisher = new KafkaRegistryEventPublisher(
+          Config.KAFKA_BOOTSTRAP_SERVERS, Config.KAFKA_TOPIC, producerProperties,
+          isBinaryHierarchyFormat());
+    } else {
+      registryEventPublisher = new NoopRegistryEventPublisher();
+    }
+
+    final SensorChangesPublisher sensorChangesPublisher;
+    if (Config.EVENT_PUBLISHING && Config.EVENT_PUBLISHING_SENSOR_CHANGES) {
+      sensorChangesPublisher = new KafkaSensorChangesPublisher(
+          Config.KAFKA_BOOTSTRAP_SERVERS, Config.KAFKA_TOPIC_SENSOR_CHANGES, producerProperties);
     } else {
-      this.eventPublisher = new NoopPublisher();
+      sensorChangesPublisher = new NoopSensorChangesPublisher();
     }
 
+    this.eventDispatcher =
+        new EventDispatcher(registryEventPublisher, sensorChangesPublisher, meterRegistry);
+    this.eventOutbox = new EventOutbox(
+        this.database.getCollection(COLLECTION_EVENT_OUTBOX),
+        this.database.getCollection(COLLECTION_EVENT_OUTBOX_LEASES),
+        this.database.getCollection(COLLECTION_EVENT_OUTBOX_SEQUENCES),
+        this.eventDispatcher,
+        Config.EVENT_OUTBOX_BATCH_SIZE,
+        Config.EVENT_OUTBOX_INTERVAL_MS,
+        Config.EVENT_OUTBOX_LEASE_MS);
+
     this.setDefaultSensorHierarchy();
+
+    this.registerGauges();
+    this.refreshingGauges.start();
+
+    if (Config.EVENT_OUTBOX) {
+      this.eventOutbox.start();
+    }
+  }
+
+  /**
+   * Register gauges for the number of sensor hierarchies and sensors as well as for the cache and
+   * the event outbox. The numbers of hierarchies, sensors and pending events are estimated from the
+   * collections' metadata. As this still requires a database round trip, they are refreshed in the
+   * background, so that scraping them only reads the last refreshed numbers.
+   */
+  private void registerGauges() {
+    this.refreshingGauges.register("sensor.hierarchies", "Number of sensor hierarchies",
+        this.sensorHierarchies::estimatedDocumentCount);
+    this.refreshingGauges.register(SENSORS_GAUGE, SENSORS_GAUGE_DESCRIPTION,
+        this.sensorGroups::estimatedDocumentCount, SENSOR_TYPE_TAG, "aggregated");
+    this.refreshingGauges.register(SENSORS_GAUGE, SENSORS_GAUGE_DESCRIPTION,
+        this.machineSensors::estimatedDocumentCount, SENSOR_TYPE_TAG, "machine");
+    this.refreshingGauges.register("events.outbox.pending",
+        "Number of events in the outbox waiting to be published",
+        this.eventOutbox::getPendingEvents);
+    Gauge.builder("cache.sensor.hierarchies", this.cache, SensorHierarchyCache::size)
+        .description("Number of cached sensor hierarchies")
+        .register(this.meterRegistry);
   }
 
   /**
-   * Initialize the database.
+   * Create the storage for sensor hierarchies according to the configured storage mode.
+   *
+   * @param nodes The collection containing the sensors of hierarchies in the normalized format.
+   */
+  private SensorHierarchyStorage createStorage(final MongoCollection<Document> nodes) {
+    switch (Config.STORAGE_MODE) {
+      case DOCUMENT_STORAGE_MODE:
+        return new DocumentSensorHierarchyStorage(
+            this.sensorHierarchies, nodes, Config.MONGODB_BULK_WRITE_BATCH_SIZE);
+      case NORMALIZED_STORAGE_MODE:
+        return new NormalizedSensorHierarchyStorage(
+            this.sensorHierarchies, nodes, Config.MONGODB_BULK_WRITE_BATCH_SIZE);
+      default:
+        throw new IllegalArgumentException(
+            "Unknown storage mode '" + Config.STORAGE_MODE + "'.");
+    }
+  }
+
+  /**
+   * Migrate all sensor hierarchies stored in another format than the one of the configured storage
+   * mode. Each hierarchy is migrated in a transaction of its own.
+   */
+  private void migrateSensorHierarchies() {
+    final List<String> identifiers = this.storage.getIdentifiersToMigrate();
+    if (identifiers.isEmpty()) {
+      return;
+    }
+    LOGGER.info("Migrating {} sensor hierarchies to storage mode '{}'.",
+        identifiers.size(), Config.STORAGE_MODE);
+    for (final String identifier : identifiers) {
+      this.runInTransaction(session -> this.storage.migrate(session, identifier));
+    }
+    LOGGER.info("Migrated {} sensor hierarchies.", identifiers.size());
+  }
+
+  /**
+   * Delete all sensors of the collections {@link #sensorGroups} and {@link #machineSensors} whose
+   * hierarchy does not exist, as left behind by deletions of earlier versions of the service, which
+   * did not delete the sensors of a hierarchy. The sensors are checked and deleted in one
+   * transaction, so that sensors of a hierarchy that is created concurrently are never considered
+   * orphaned.
+   */
+  private void deleteOrphanedSensors() {
+    final long deleted = this.runInTransaction(session -> {
+      final Set<String> orphaned = new HashSet<>();
+      this.sensorGroups.distinct(session, TOP_LEVEL_IDENTIFIER_FIELD, String.class)
+          .into(orphaned);
+      this.machineSensors.distinct(session, TOP_LEVEL_IDENTIFIER_FIELD, String.class)
+          .into(orphaned);
+      if (orphaned.isEmpty()) {
+        return 0L;
+      }
+      for (final Document document : this.sensorHierarchies
+          .find(session, buildIdentifiersFilter(List.copyOf(orphaned)))
+          .projection(Projections.include(IDENTIFIER_FIELD))) {
+        orphaned.remove(document.getString(IDENTIFIER_FIELD));
+      }
+      if (orphaned.isEmpty()) {
+        return 0L;
+      }
+      final Bson filter = buildHierarchySensorsFilter(orphaned);
+      return this.sensorGroups.deleteMany(session, filter).getDeletedCount()
+          + this.machineSensors.deleteMany(session, filter).getDeletedCount();
+    });
+    if (deleted > 0) {
+      LOGGER.info("Deleted {} sensors of sensor hierarchies that do not exist.", deleted);
+    }
+  }
+
+  /**
+   * Check whether hierarchies are published to Kafka in the binary format according to the
+   * configured format. Events containing entire hierarchies are already encoded in this format
+   * when they are created. Batches of sensor changes are always published as JSON, as the binary
+   * format only encodes entire hierarchies.
+   */
+  private static boolean isBinaryHierarchyFormat() {
+    switch (Config.KAFKA_HIERARCHY_FORMAT) {
+      case JSON_HIERARCHY_FORMAT:
+        return false;
+      case BINARY_HIERARCHY_FORMAT:
+        return true;
+      default:
+        throw new IllegalArgumentException(
+            "Unknown hierarchy format '" + Config.KAFKA_HIERARCHY_FORMAT + "'.");
+    }
+  }
+
+  /**
+   * Build the properties of the Kafka producers. Producers are idempotent and compress batches of
+   * records, so that events can be published with high throughput without being duplicated on
+   * retries.
+   */
+  private Properties buildProducerProperties() {
+    final Properties properties = new Properties();
+    properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+    properties.put(ProducerConfig.ACKS_CONFIG, "all");
+    properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, Config.KAFKA_COMPRESSION_TYPE);
+    properties.put(ProducerConfig.LINGER_MS_CONFIG, Config.KAFKA_LINGER_MS);
+    return properties;
+  }
+
+  /**
+   * Initialize the database by reconciling the indexes of all collections. Collections written
+   * within transactions are created beforehand, as MongoDB prior to version 4.4 cannot create
+   * collections within transactions.
    */
   private void initDatabase() {
-    final IndexOptions indexOptions = new IndexOptions();
-    indexOptions.unique(true);
-    this.machineSensors.createIndex(
-        Indexes.compoundIndex(
-            Indexes.text(IDENTIFIER_FIELD),
-            Indexes.text(TOP_LEVEL_IDENTIFIER_FIELD)));
-    this.sensorGroups.createIndex(
-        Indexes.text(SensorHierarchyRepository.IDENTIFIER_FIELD),
-        indexOptions);
-    this.sensorHierarchies.createIndex(
-        Indexes.text(SensorHierarchyRepository.IDENTIFIER_FIELD),
-        indexOptions);
+    IndexReconciler.reconcile(this.sensorHierarchies,
+        SensorHierarchyIndexes.forSensorHierarchies());
+    IndexReconciler.reconcile(this.sensorGroups, SensorHierarchyIndexes.forSensorGroups());
+    IndexReconciler.reconcile(this.machineSensors, SensorHierarchyIndexes.forMachineSensors());
+    this.storage.createIndexes();
+    IndexReconciler.reconcile(
+        this.database.getCollection(COLLECTION_EVENT_OUTBOX), EventOutbox.getIndexes());
+    this.createCollection(COLLECTION_EVENT_OUTBOX_SEQUENCES);
+  }
+
+  /**
+   * Create a collection if it does not exist yet.
+   *
+   * @param name The name of the collection.
+   */
+  private void createCollection(final String name) {
+    if (this.database.listCollectionNames().into(new HashSet<>()).contains(name)) {
+      return;
+    }
+    try {
+      this.database.createCollection(name);
+      LOGGER.info("Created collection '{}'.", name);
+    } catch (final MongoCommandException e) {
+      // Another instance might have created the collection in the meantime
+      if (e.getErrorCode() != NAMESPACE_EXISTS_ERROR) {
+        throw e;
+      }
+    }
   }
 
 
   /**
-   * Set the default sensor hierarchy.
+   * Set the default sensor hierarchy and publish its status. The changes of the individual sensors
+   * of a newly created hierarchy are published by its creation, whereas the status announces the
+   * entire hierarchy on each start. Like all other events, the status is published via the outbox
+   * if it is enabled, so that it is ordered with the changes of the hierarchy.
    */
   private void setDefaultSensorHierarchy() {
-    final SensorRegistry existingHierarchy =
-        this.getSensorHierarchy(DEFAULT_HIERARCHY_IDENTIFIER);
-    if (existingHierarchy == null) {
+    SensorRegistry hierarchy = this.getSensorHierarchy(DEFAULT_HIERARCHY_IDENTIFIER);
+    if (hierarchy == null) {
       LOGGER.info("Initial sensor hierarchy does not exist. Creating Hierarchy...");
-      final SensorRegistry sensorHierarchy = this.getDefaultSensorHierarchy();
+      hierarchy = this.getDefaultSensorHierarchy();
 
-      final Optional<List<String>> collisions = this.createSensorHierarchy(sensorHierarchy);
+      final Optional<List<String>> collisions = this.createSensorHierarchy(hierarchy);
       if (collisions.isEmpty()) {
         LOGGER.info("Initial hierarchy created.");
       } else {
         LOGGER.info("Initial hierarchy already exists.");
       }
-
-      // TODO emit more precise events
-      this.eventPublisher.publish(Event.SENSOR_REGISTRY_STATUS, sensorHierarchy.toJson());
     } else {
       LOGGER.info("Default sensor hierarchy already exists.");
-      // TODO emit more precise events
-      this.eventPublisher.publish(Event.SENSOR_REGISTRY_STATUS, existingHierarchy.toJson());
     }
 
+    final List<ConfigurationEvent> events = List.of(ConfigurationEvent.ofRegistry(
+        ConfigurationEventType.SENSOR_REGISTRY_STATUS, hierarchy, isBinaryHierarchyFormat()));
+    if (Config.EVENT_OUTBOX) {
+      this.runInTransaction(session -> {
+        this.storeEvents(session, events);
+        return events;
+      });
+    }
+    this.emitEvents(events);
+
     LOGGER.info("Initial hierarchy published.");
   }
 
@@ -205,37 +472,175 @@ public final class SensorHierarchyRepository { // NOPMD see !8
    * Stop the repository.
    */
   public void stop() {
-    this.session.close();
+    this.refreshingGauges.stop();
+    this.eventOutbox.stop();
+    this.eventDispatcher.close();
     this.mongoClient.close();
   }
 
 
   /**
-   * Get a sensor hierarchy for an identifier.
+   * Get a sensor hierarchy for an identifier. Hierarchies are served from the
+   * {@link SensorHierarchyCache} and only loaded from the database on a cache miss.
    *
    * @param identifier The identifier of the registry
    * @return Returns the sensor registry or null, if the registry is not found.
    */
   public SensorRegistry getSensorHierarchy(final String identifier) {
-    final Document result = this.sensorHierarchies
-        .find(Filters.eq(SensorHierarchyRepository.IDENTIFIER_FIELD, identifier))
-        .first();
+    return this.cache.get(identifier).map(SerializedSensorHierarchy::getRegistry).orElse(null);
+  }
 
-    return result == null
-        ? null
-        : SensorRegistry.fromJson(result.toJson());
+  /**
+   * Get the current version of a sensor hierarchy together with its JSON serialization.
+   *
+   * @param identifier The identifier of the registry
+   * @return Returns the serialized sensor registry or an empty Optional, if the registry is not
+   *         found.
+   */
+  public Optional<SerializedSensorHierarchy> getSerializedSensorHierarchy(
+      final String identifier) {
+    return this.cache.get(identifier);
   }
 
   /**
-   * Get all sensor hierarchy that exist currently.
+   * Get the statistics of the sensor hierarchy cache.
    *
-   * @return A list of sensor hierarchies.
+   * @return The statistics of the cache, containing its hits, misses and evictions.
    */
-  public List<SensorRegistry> getAllSensorHierarchies() {
-    return this.sensorHierarchies
-        .find()
-        .map(result -> SensorRegistry.fromJson(result.toJson()))
-        .into(new ArrayList<>());
+  public CacheStats getCacheStats() {
+    return this.cache.getStats();
+  }
+
+  /**
+   * Get the number of sensor hierarchies currently held by the sensor hierarchy cache.
+   *
+   * @return The number of cached sensor hierarchies.
+   */
+  public long getCacheSize() {
+    return this.cache.size();
+  }
+
+  /**
+   * Get the event outbox, which provides statistics about the events waiting to be published.
+   *
+   * @return The event outbox.
+   */
+  public EventOutbox getEventOutbox() {
+    return this.eventOutbox;
+  }
+
+  /**
+   * Load a sensor hierarchy for an identifier from the database.
+   *
+   * @param identifier The identifier of the registry
+   * @return Returns the sensor registry with its version or an empty Optional, if the registry is
+   *         not found.
+   */
+  private Optional<SerializedSensorHierarchy> loadSensorHierarchy(final String identifier) {
+    return this.operationTimer("loadSensorHierarchy")
+        .record(() -> this.storage.load(identifier));
+  }
+
+  /**
+   * Get the timer recording the latency of an operation of the repository.
+   *
+   * @param operation The name of the operation.
+   * @return The timer.
+   */
+  private Timer operationTimer(final String operation) {
+    return MetricsUtils.latencyTimer(this.meterRegistry, OPERATION_TIMER, "operation", operation);
+  }
+
+  /**
+   * Execute an operation within a transaction of its own session, retrying it on transient errors.
+   *
+   * @param operation The operation.
+   * @return The result of the operation.
+   */
+  private <T> T runInTransaction(final Function<ClientSession, T> operation) {
+    return TransactionUtils.runInTransaction(
+        this.mongoClient, Config.DB_MAX_RETRIES, Config.DB_DELAY_IN_MILLIS, this.meterRegistry,
+        operation);
+  }
+
+  /**
+   * Execute an operation creating sensor groups within a transaction. The {@link SensorGroupIndex}
+   * only contains the sensor groups written by this instance, so that a collision with a sensor
+   * group written by another instance may only be detected by the unique index of the database.
+   * In this case, the index is refreshed from the database for the sensor groups to be created and
+   * the operation is executed once more, so that it reports the collisions itself.
+   *
+   * @param sensorGroups The identifiers of the sensor groups the operation creates.
+   * @param operation The operation, which checks the sensor groups for collisions.
+   * @return The result of the operation.
+   */
+  private <T> T runInTransactionDetectingCollisions(final Collection<String> sensorGroups,
+      final Function<ClientSession, T> operation) {
+    try {
+      return this.runInTransaction(operation);
+    } catch (final MongoException e) {
+      if (!isDuplicateKeyError(e)) {
+        throw e;
+      }
+      LOGGER.info("Sensor groups collided with sensor groups unknown to this instance.");
+      this.refreshSensorGroupIndex(sensorGroups);
+      return this.runInTransaction(operation);
+    }
+  }
+
+  private static boolean isDuplicateKeyError(final MongoException exception) {
+    if (exception instanceof MongoBulkWriteException) {
+      return ((MongoBulkWriteException) exception).getWriteErrors().stream()
+          .anyMatch(error -> error.getCategory() == ErrorCategory.DUPLICATE_KEY);
+    }
+    return ErrorCategory.fromErrorCode(exception.getCode()) == ErrorCategory.DUPLICATE_KEY;
+  }
+
+  /**
+   * Export all sensor hierarchies as newline delimited JSON. Hierarchies are streamed from the
+   * database bypassing the cache, so that the memory required is independent of the number of
+   * hierarchies.
+   *
+   * @param writer The writer to write the hierarchies to.
+   * @throws IOException If writing fails.
+   */
+  public void exportSensorHierarchies(final Writer writer) throws IOException {
+    this.storage.export(writer);
+  }
+
+  /**
+   * Get a page of the top level sensors of all sensor hierarchies. Only the identifier and name of
+   * the top level sensors are read from the database. Hierarchies are listed in the order of their
+   * creation, so that the continuation token remains valid if hierarchies are created or deleted in
+   * the meantime.
+   *
+   * @param continuationToken The continuation token of the previous page or null to get the first
+   *        page.
+   * @param limit The maximum number of hierarchies on the page.
+   * @return The requested page.
+   * @throws IllegalArgumentException If the continuation token is invalid.
+   */
+  public SensorHierarchyPage getSensorHierarchyPage(final String continuationToken,
+      final int limit) {
+    // Query one more document to find out whether there is a next page
+    final List<Document> documents = this.sensorHierarchies
+        .find(buildPageFilter(continuationToken))
+        .projection(Projections.include(IDENTIFIER_FIELD, NAME_FIELD))
+        .sort(buildPageSort())
+        .limit(limit + 1)
+        .into(new ArrayList<>(limit + 1));
+
+    final boolean hasNextPage = documents.size() > limit;
+    final List<Document> page = hasNextPage ? documents.subList(0, limit) : documents;
+    final List<TopLevelSensorType> topLevelSensors = page.stream()
+        .map(document -> new TopLevelSensorType(
+            document.getString(IDENTIFIER_FIELD),
+            document.getString(NAME_FIELD)))
+        .collect(Collectors.toList());
+    final String nextContinuationToken = hasNextPage
+        ? page.get(page.size() - 1).getObjectId(ID_FIELD).toHexString()
+        : null;
+    return new SensorHierarchyPage(topLevelSensors, nextContinuationToken);
   }
 
   /**
@@ -246,51 +651,254 @@ public final class SensorHierarchyRepository { // NOPMD see !8
    *         representing the collided sensor identifiers.
    */
   public Optional<List<String>> createSensorHierarchy(final SensorRegistry hierarchy) {
-    this.session.startTransaction();
-
-    final List<String> globalSensorGroupsCollisions =
-        this.getSensorGroupIdentifiersAccordingToFilter(
-            Filters.or(this.buildIdFiltersForSensors(hierarchy)));
-    if (!globalSensorGroupsCollisions.isEmpty()) {
-      this.session.abortTransaction();
-      return Optional.of(globalSensorGroupsCollisions);
-    }
-
     final List<String> hierarchyCollisions = this.getCollisionsWithinHierarchy(hierarchy);
     if (!hierarchyCollisions.isEmpty()) {
-      this.session.abortTransaction();
       return Optional.of(hierarchyCollisions);
     }
 
-    this.updateSensorCollectionsOnCreate(hierarchy);
-
-    this.sensorHierarchies.insertOne(Document.parse(hierarchy.toJson()));
-
-    this.session.commitTransaction();
-
     final List<SensorChangedEvent> comparisonResult = hierarchy.flatten()
         .stream()
         .map(sensor -> new SensorChangedEvent(sensor, EventType.SENSOR_ADDED))
         .collect(Collectors.toList());
 
-    this.emitSensorChangedEvents(hierarchy, comparisonResult);
+    final List<String> sensorGroupIdentifiers = getSensorGroupIdentifiers(hierarchy.flatten());
+    final List<ConfigurationEvent> events = new ArrayList<>();
+    final Function<ClientSession, Optional<List<String>>> operation = session -> {
+      final List<String> globalSensorGroupsCollisions =
+          this.findGlobalCollisions(session, sensorGroupIdentifiers, null);
+      if (!globalSensorGroupsCollisions.isEmpty()) {
+        session.abortTransaction();
+        return Optional.of(globalSensorGroupsCollisions);
+      }
+
+      this.operationTimer("updateSensorCollectionsOnCreate").record(
+          () -> this.updateSensorCollectionsOnCreate(session, List.of(hierarchy)));
+
+      this.storage.insert(session, hierarchy, INITIAL_VERSION);
+
+      events.clear();
+      events.addAll(buildSensorChangedEvents(hierarchy, comparisonResult));
+      this.storeEvents(session, events);
+
+      return Optional.empty();
+    };
+    final Optional<List<String>> globalCollisions =
+        this.runInTransactionDetectingCollisions(sensorGroupIdentifiers, operation);
+    if (globalCollisions.isPresent()) {
+      return globalCollisions;
+    }
+
+    this.cache.put(hierarchy, INITIAL_VERSION);
+    this.updateSensorGroupIndex(hierarchy.getTopLevelSensor().getIdentifier(), comparisonResult);
+
+    this.emitEvents(events);
 
     return Optional.empty();
   }
 
   /**
-   * Update the collections {@link #sensorGroups} and {@link #machineSensors} when a sensor
-   * hierarchy is created.
+   * Find sensor groups colliding with sensor groups of other hierarchies. If enabled, candidates
+   * are looked up in the {@link SensorGroupIndex} first, so that only those have to be confirmed by
+   * the database. Otherwise, all sensor groups are checked by the database with a single query.
    *
-   * @param comparisonResult The comparison result of the old and new hierarchy.
-   * @param existingHierarchy The old sensor hierarchy.
+   * @param session The session to read in.
+   * @param identifiers The identifiers of the sensor groups to check.
+   * @param topLevelIdentifier The identifier of the top level sensor of the hierarchy the sensor
+   *        groups belong to or null, if sensor groups of all hierarchies should be considered.
+   * @return The identifiers of the colliding sensor groups.
+   */
+  private List<String> findGlobalCollisions(final ClientSession session,
+      final Collection<String> identifiers, final String topLevelIdentifier) {
+    return this.operationTimer("findGlobalCollisions").record(
+        () -> this.findGlobalCollisionsUntimed(session, identifiers, topLevelIdentifier));
+  }
+
+  private List<String> findGlobalCollisionsUntimed(final ClientSession session,
+      final Collection<String> identifiers, final String topLevelIdentifier) {
+    final Collection<String> candidates = Config.COLLISION_INDEX
+        ? this.sensorGroupIndex.findCollisions(identifiers, topLevelIdentifier)
+        : identifiers;
+    if (candidates.isEmpty()) {
+      return List.of();
+    }
+    return this.getSensorGroupIdentifiersAccordingToFilter(session,
+        buildCollisionFilter(candidates, topLevelIdentifier));
+  }
+
+  /**
+   * Get the identifiers of all sensor groups, i.e., aggregated sensors, among some sensors.
+   */
+  private static List<String> getSensorGroupIdentifiers(final Collection<Sensor> sensors) {
+    return sensors.stream()
+        .filter(sensor -> sensor instanceof AggregatedSensor)
+        .map(Sensor::getIdentifier)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Apply committed changes of the sensors of a hierarchy to the {@link SensorGroupIndex}.
+   *
+   * @param topLevelIdentifier The identifier of the top level sensor of the hierarchy.
+   * @param changes The changes of the sensors.
+   */
+  private void updateSensorGroupIndex(final String topLevelIdentifier,
+      final List<SensorChangedEvent> changes) {
+    for (final SensorChangedEvent change : changes) {
+      if (change.getSensor() instanceof AggregatedSensor) {
+        if (change.getEventType() == EventType.SENSOR_ADDED) {
+          this.sensorGroupIndex.put(change.getSensor().getIdentifier(), topLevelIdentifier);
+        } else if (change.getEventType() == EventType.SENSOR_DELETED) {
+          this.sensorGroupIndex.remove(change.getSensor().getIdentifier(), topLevelIdentifier);
+        }
+      }
+    }
+  }
+
+  /**
+   * Load all sensor groups from the database into the {@link SensorGroupIndex}.
+   */
+  private void warmSensorGroupIndex() {
+    for (final Document document : this.sensorGroups
+        .find()
+        .projection(Projections.include(IDENTIFIER_FIELD, TOP_LEVEL_IDENTIFIER_FIELD))) {
+      this.sensorGroupIndex.put(
+          document.getString(IDENTIFIER_FIELD),
+          document.getString(TOP_LEVEL_IDENTIFIER_FIELD));
+    }
+    LOGGER.info("Loaded {} sensor groups into the index.", this.sensorGroupIndex.size());
+  }
+
+  /**
+   * Load some sensor groups from the database into the {@link SensorGroupIndex}, if it is enabled.
+   *
+   * @param identifiers The identifiers of the sensor groups.
+   */
+  private void refreshSensorGroupIndex(final Collection<String> identifiers) {
+    if (!Config.COLLISION_INDEX || identifiers.isEmpty()) {
+      return;
+    }
+    for (final Document document : this.sensorGroups
+        .find(buildIdentifiersFilter(identifiers))
+        .projection(Projections.include(IDENTIFIER_FIELD, TOP_LEVEL_IDENTIFIER_FIELD))) {
+      this.sensorGroupIndex.put(
+          document.getString(IDENTIFIER_FIELD),
+          document.getString(TOP_LEVEL_IDENTIFIER_FIELD));
+    }
+  }
+
+  /**
+   * Create multiple sensor hierarchies within one transaction. The hierarchies are validated in
+   * parallel. Hierarchies colliding with themselves, with previously submitted hierarchies or with
+   * existing hierarchies are not created, while all others are. The events of all created
+   * hierarchies are stored at once.
+   *
+   * @param hierarchies The sensor hierarchies that should be created.
+   * @return The result for each hierarchy in the order of submission: An empty Optional if the
+   *         hierarchy was created, else an Optional of a list of strings, representing the collided
+   *         sensor identifiers.
+   */
+  public List<Optional<List<String>>> createSensorHierarchies(
+      final List<SensorRegistry> hierarchies) {
+    final List<Optional<List<String>>> results = hierarchies.parallelStream()
+        .map(this::getCollisionsWithinHierarchy)
+        .map(collisions -> collisions.isEmpty()
+            ? Optional.<List<String>>empty()
+            : Optional.of(collisions))
+        .collect(Collectors.toCollection(ArrayList::new));
+
+    final List<List<String>> sensorGroupIdentifiers = hierarchies.parallelStream()
+        .map(hierarchy -> getSensorGroupIdentifiers(hierarchy.flatten()))
+        .collect(Collectors.toList());
+    final Set<String> submittedSensorGroups =
+        resolveSubmittedCollisions(results, sensorGroupIdentifiers);
+
+    final List<ConfigurationEvent> events = new ArrayList<>();
+    final List<SensorRegistry> created = new ArrayList<>();
+    final Function<ClientSession, List<Optional<List<String>>>> operation = session -> {
+      final List<Optional<List<String>>> attemptResults = resolveGlobalCollisions(results,
+          sensorGroupIdentifiers,
+          new HashSet<>(this.findGlobalCollisions(session, submittedSensorGroups, null)));
+      // A retried attempt must not keep the results of a previous one
+      created.clear();
+      events.clear();
+      for (int i = 0; i < hierarchies.size(); i++) {
+        if (attemptResults.get(i).isEmpty()) {
+          created.add(hierarchies.get(i));
+        }
+      }
+      if (created.isEmpty()) {
+        session.abortTransaction();
+        return attemptResults;
+      }
+
+      this.storage.insert(session, created, INITIAL_VERSION);
+      this.operationTimer("updateSensorCollectionsOnCreate").record(
+          () -> this.updateSensorCollectionsOnCreate(session, created));
+
+      events.addAll(buildCreatedEvents(created));
+      this.storeEvents(session, events);
+
+      return attemptResults;
+    };
+    final List<Optional<List<String>>> finalResults =
+        this.runInTransactionDetectingCollisions(submittedSensorGroups, operation);
+
+    for (final SensorRegistry hierarchy : created) {
+      this.cache.put(hierarchy, INITIAL_VERSION);
+      for (final String identifier : getSensorGroupIdentifiers(hierarchy.flatten())) {
+        this.sensorGroupIndex.put(identifier, hierarchy.getTopLevelSensor().getIdentifier());
+      }
+    }
+
+    this.emitEvents(events);
+
+    LOGGER.info("Created {} of {} sensor hierarchies.", created.size(), hierarchies.size());
+
+    return finalResults;
+  }
+
+  /**
+   * Build the events concerning the creation of multiple hierarchies.
+   *
+   * @param hierarchies The created hierarchies.
+   * @return The events to publish.
    */
-  private void updateSensorCollectionsOnCreate(final SensorRegistry hierarchy) {
-    this.sensorGroups
-        .insertMany(this.buildSensorGroupDocuments(hierarchy));
-    final List<Document> machineSensors = this.buildMachineSensorDocuments(hierarchy);
+  private static List<ConfigurationEvent> buildCreatedEvents(
+      final List<SensorRegistry> hierarchies) {
+    final List<ConfigurationEvent> events = new ArrayList<>(2 * hierarchies.size());
+    for (final SensorRegistry hierarchy : hierarchies) {
+      if (Config.EVENT_PUBLISHING_FULL_REGISTRY) {
+        events.add(ConfigurationEvent.ofRegistry(
+            ConfigurationEventType.SENSOR_REGISTRY_CHANGED, hierarchy,
+            isBinaryHierarchyFormat()));
+      }
+      events.add(buildSensorChangesEvent(
+          hierarchy.getTopLevelSensor().getIdentifier(),
+          hierarchy.flatten().stream()
+              .map(sensor -> new SensorChangedEvent(sensor, EventType.SENSOR_ADDED))
+              .collect(Collectors.toList())));
+    }
+    return events;
+  }
+
+  /**
+   * Update the collections {@link #sensorGroups} and {@link #machineSensors} when sensor
+   * hierarchies are created.
+   *
+   * @param session The session to write in.
+   * @param hierarchies The created sensor hierarchies.
+   */
+  private void updateSensorCollectionsOnCreate(final ClientSession session,
+      final List<SensorRegistry> hierarchies) {
+    final List<Document> sensorGroups = new ArrayList<>();
+    final List<Document> machineSensors = new ArrayList<>();
+    for (final SensorRegistry hierarchy : hierarchies) {
+      sensorGroups.addAll(this.buildSensorGroupDocuments(hierarchy));
+      machineSensors.addAll(this.buildMachineSensorDocuments(hierarchy));
+    }
+    this.sensorGroups.insertMany(session, sensorGroups);
     if (!machineSensors.isEmpty()) {
-      this.machineSensors.insertMany(machineSensors);
+      this.machineSensors.insertMany(session, machineSensors);
     }
   }
 
@@ -299,32 +907,73 @@ public final class SensorHierarchyRepository { // NOPMD see !8
    * be equal, if their identifiers are equal. The operation filters all sensor groups in the
    * database with respect to the given filter.
    *
+   * @param session The session to read in.
    * @param filter The filter used to filter the sensor-groups.
    * @return A List of sensor identifiers for all sensor groups that match the filter.
    */
-  private List<String> getSensorGroupIdentifiersAccordingToFilter(final Bson filter) {
-    return this.sensorGroups.find(filter)
+  private List<String> getSensorGroupIdentifiersAccordingToFilter(final ClientSession session,
+      final Bson filter) {
+    return this.sensorGroups.find(session, filter)
         .into(new LinkedList<Document>())
         .stream()
         .map(document -> document.getString(SensorHierarchyRepository.IDENTIFIER_FIELD))
         .collect(Collectors.toList());
   }
 
-  // Only needed if precise events are emitted
   /**
-   * Get all machine sensors that already exist in the database. Two machine sensors are considered
-   * to be equal, if their identifiers are equal. The operation filters all machine sensors in the
-   * database with respect to the given filter.
+   * Reject hierarchies using sensor groups of hierarchies submitted before them, so that sensor
+   * groups are unique among the submitted hierarchies and the first occurrence wins.
    *
-   * @param filter The filter used to filter the machine sensors.
-   * @return A List of sensor identifiers for all machine-sensors that match the filter.
+   * @param results The results of the submitted hierarchies so far, which are updated with the
+   *        collisions found. Hierarchies that are already rejected are skipped.
+   * @param sensorGroupIdentifiers The identifiers of the sensor groups of each hierarchy.
+   * @return The identifiers of the sensor groups of all hierarchies that are not rejected.
    */
-  private List<String> getMachineSensorsIdentifiersAccordingToFilter(final Bson filter) {
-    return this.machineSensors.find(filter)
-        .into(new LinkedList<Document>())
-        .stream()
-        .map(document -> document.getString(SensorHierarchyRepository.IDENTIFIER_FIELD))
-        .collect(Collectors.toList());
+  static Set<String> resolveSubmittedCollisions(final List<Optional<List<String>>> results,
+      final List<List<String>> sensorGroupIdentifiers) {
+    final Set<String> submittedSensorGroups = new HashSet<>();
+    for (int i = 0; i < results.size(); i++) {
+      if (results.get(i).isPresent()) {
+        continue;
+      }
+      final List<String> collisions = sensorGroupIdentifiers.get(i).stream()
+          .filter(submittedSensorGroups::contains)
+          .collect(Collectors.toList());
+      if (collisions.isEmpty()) {
+        submittedSensorGroups.addAll(sensorGroupIdentifiers.get(i));
+      } else {
+        results.set(i, Optional.of(collisions));
+      }
+    }
+    return submittedSensorGroups;
+  }
+
+  /**
+   * Reject hierarchies using sensor groups of existing hierarchies within an attempt to create
+   * them. The results are copied, as a retried attempt may find other collisions.
+   *
+   * @param results The results of the submitted hierarchies before the attempt, which are not
+   *        modified.
+   * @param sensorGroupIdentifiers The identifiers of the sensor groups of each hierarchy.
+   * @param globalCollisions The identifiers of the sensor groups used by existing hierarchies.
+   * @return The results of the submitted hierarchies within the attempt.
+   */
+  static List<Optional<List<String>>> resolveGlobalCollisions(
+      final List<Optional<List<String>>> results, final List<List<String>> sensorGroupIdentifiers,
+      final Set<String> globalCollisions) {
+    final List<Optional<List<String>>> attemptResults = new ArrayList<>(results);
+    for (int i = 0; i < attemptResults.size(); i++) {
+      if (attemptResults.get(i).isPresent()) {
+        continue;
+      }
+      final List<String> collisions = sensorGroupIdentifiers.get(i).stream()
+          .filter(globalCollisions::contains)
+          .collect(Collectors.toList());
+      if (!collisions.isEmpty()) {
+        attemptResults.set(i, Optional.of(collisions));
+      }
+    }
+    return attemptResults;
   }
 
   /**
@@ -334,133 +983,251 @@ public final class SensorHierarchyRepository { // NOPMD see !8
    * @return An empty Optional if the operation succeeded, else an Optional of a list of strings,
    *         representing the collided sensor identifiers.
    * @throws SensorHierarchyNotFoundException If the sensor hierarchy does not exist yet.
+   * @throws SensorHierarchyConflictException If the sensor hierarchy was modified concurrently.
    */
   public Optional<List<String>> updateSensorHierarchy(final SensorRegistry hierarchy)
       throws SensorHierarchyNotFoundException {
-    this.session.startTransaction();
-
-    final SensorRegistry existingHierarchy =
-        this.getSensorHierarchy(hierarchy.getTopLevelSensor().getIdentifier());
-
-    if (existingHierarchy == null) {
-      throw new SensorHierarchyNotFoundException();
-    }
-
-    final List<String> globalCollisions =
-        this.getSensorGroupIdentifiersAccordingToFilter(
-            Filters.or(this.buildPairsOfSensorsAndHierarchyExcludingThisHierarchy(hierarchy)));
-
-    if (!globalCollisions.isEmpty()) {
-      this.session.abortTransaction();
-      return Optional.of(globalCollisions);
+    final String identifier = hierarchy.getTopLevelSensor().getIdentifier();
+    SerializedSensorHierarchy existing = this.cache
+        .get(identifier)
+        .orElseThrow(SensorHierarchyNotFoundException::new);
+
+    // Skip all writes if the hierarchy is structurally identical to the stored one. As the cached
+    // version might be stale, it is only compared if it is still the stored version.
+    final SensorHierarchyHashes hashes = SensorHierarchyHashes.of(hierarchy);
+    if (existing.getHashes().isHierarchyEqual(hashes)) {
+      if (this.storage.isStored(identifier, existing.getVersion())) {
+        return Optional.empty();
+      }
+      this.cache.invalidate(identifier);
+      existing = this.cache
+          .get(identifier)
+          .orElseThrow(SensorHierarchyNotFoundException::new);
+      if (existing.getHashes().isHierarchyEqual(hashes)) {
+        return Optional.empty();
+      }
     }
+    final SensorRegistry existingHierarchy = existing.getRegistry();
 
     final List<String> hierarchyCollisions = this.getCollisionsWithinHierarchy(hierarchy);
     if (!hierarchyCollisions.isEmpty()) {
-      this.session.abortTransaction();
       return Optional.of(hierarchyCollisions);
     }
 
     final List<SensorChangedEvent> comparisonResult =
-        SensorHierarchyComparatorUtils.compareSensorHierarchies(existingHierarchy, hierarchy);
+        SensorHierarchyComparatorUtils.compareSensorHierarchies(
+            existingHierarchy, existing.getHashes(), hierarchy, hashes);
 
-    this.updateSensorCollectionsOnUpdate(comparisonResult, existingHierarchy);
+    return this.replaceSensorHierarchy(existing,
+        SerializedSensorHierarchy.of(hierarchy, hashes, existing.getVersion() + 1),
+        comparisonResult);
+  }
 
-    this.sensorHierarchies.replaceOne(Filters.eq(SensorHierarchyRepository.IDENTIFIER_FIELD,
-        hierarchy.getTopLevelSensor().getIdentifier()), Document.parse(hierarchy.toJson()));
+  /**
+   * Modify a sensor hierarchy incrementally by a sequence of operations, which add, move, remove or
+   * rename individual sensors. Only added sensors are checked for collisions and only the touched
+   * sensors are written to the collections {@link #sensorGroups} and {@link #machineSensors}.
+   *
+   * @param identifier The identifier of the sensor hierarchy that should be modified.
+   * @param operations The operations in the order they should be applied.
+   * @return An empty Optional if the operation succeeded, else an Optional of a map from the
+   *         collided sensor identifiers to the paths of the sensors using them. For collisions
+   *         within the hierarchy, these are the path of the existing sensor and the paths the
+   *         sensors should have been added at. For collisions with other hierarchies, these are
+   *         only the paths within the patched hierarchy.
+   * @throws SensorHierarchyNotFoundException If the sensor hierarchy does not exist yet.
+   * @throws SensorHierarchyConflictException If the sensor hierarchy was modified concurrently.
+   * @throws SensorHierarchyPatch.InvalidPatchException If an operation is invalid.
+   */
+  public Optional<Map<String, List<String>>> patchSensorHierarchy(final String identifier,
+      final List<PatchOperationType> operations) throws SensorHierarchyNotFoundException {
+    final SerializedSensorHierarchy existing = this.cache
+        .get(identifier)
+        .orElseThrow(SensorHierarchyNotFoundException::new);
+
+    final SensorHierarchyPatch patch = new SensorHierarchyPatch(existing);
+    patch.apply(operations);
+    if (!patch.getCollisions().isEmpty()) {
+      return Optional.of(patch.getCollisionPaths());
+    }
+    if (!patch.isModified()) {
+      return Optional.empty();
+    }
+
+    final SerializedSensorHierarchy patched =
+        SerializedSensorHierarchy.of(patch.toHierarchy(), existing.getVersion() + 1);
+    final List<SensorChangedEvent> changes = patch.getChanges(patched);
+
+    return this.replaceSensorHierarchy(existing, patched, changes)
+        .map(collisions -> SensorHierarchyValidationUtils.findPaths(
+            patched.getRegistry(), collisions));
+  }
+
+  /**
+   * Replace a stored sensor hierarchy by a new version within a transaction. The replacement only
+   * succeeds if the stored version is still the one the new version is based on.
+   *
+   * @param existing The version of the sensor hierarchy the new version is based on.
+   * @param replacement The new version of the sensor hierarchy.
+   * @param changes The changes of the sensors from the existing to the new version. Only added
+   *        sensor groups are checked for collisions with other hierarchies.
+   * @return An empty Optional if the operation succeeded, else an Optional of a list of strings,
+   *         representing the collided sensor identifiers.
+   * @throws SensorHierarchyConflictException If the sensor hierarchy was modified concurrently.
+   */
+  private Optional<List<String>> replaceSensorHierarchy(final SerializedSensorHierarchy existing,
+      final SerializedSensorHierarchy replacement, final List<SensorChangedEvent> changes) {
+    final SensorRegistry existingHierarchy = existing.getRegistry();
+    final SensorRegistry hierarchy = replacement.getRegistry();
+    final String identifier = hierarchy.getTopLevelSensor().getIdentifier();
+    final List<String> addedSensorGroups = getSensorGroupIdentifiers(changes.stream()
+        .filter(change -> change.getEventType() == EventType.SENSOR_ADDED)
+        .map(SensorChangedEvent::getSensor)
+        .collect(Collectors.toList()));
+    final List<ConfigurationEvent> events = new ArrayList<>();
+    final Function<ClientSession, Optional<List<String>>> operation = session -> {
+      final List<String> globalSensorGroupsCollisions =
+          this.findGlobalCollisions(session, addedSensorGroups, identifier);
+      if (!globalSensorGroupsCollisions.isEmpty()) {
+        session.abortTransaction();
+        return Optional.of(globalSensorGroupsCollisions);
+      }
+
+      // Optimistic concurrency control: Only replace the version the changes are based on
+      if (!this.storage.replace(session, existing, hierarchy, replacement.getVersion())) {
+        this.cache.invalidate(identifier);
+        throw new SensorHierarchyConflictException();
+      }
+
+      this.operationTimer("updateSensorCollectionsOnUpdate").record(
+          () -> this.updateSensorCollectionsOnUpdate(session, changes, existingHierarchy));
 
-    this.session.commitTransaction();
+      events.clear();
+      events.addAll(buildSensorChangedEvents(hierarchy, changes));
+      this.storeEvents(session, events);
 
-    this.emitSensorChangedEvents(hierarchy, comparisonResult);
+      return Optional.empty();
+    };
+    final Optional<List<String>> globalCollisions =
+        this.runInTransactionDetectingCollisions(addedSensorGroups, operation);
+    if (globalCollisions.isPresent()) {
+      return globalCollisions;
+    }
+
+    this.cache.put(replacement);
+    this.updateSensorGroupIndex(identifier, changes);
+
+    this.emitEvents(events);
 
     return Optional.empty();
   }
 
   /**
    * Update the collections {@link #sensorGroups} and {@link #machineSensors} when a sensor
-   * hierarchy is updated.
+   * hierarchy is updated. The changes are written as ordered bulk writes within the session,
+   * requiring one round trip per collection and batch instead of one per changed sensor. Renamed
+   * sensors require no writes, as the collections do not contain the names of sensors.
    *
+   * @param session The session to write in.
    * @param comparisonResult The comparison result of the old and new hierarchy.
    * @param existingHierarchy The old sensor hierarchy.
    */
-  private void updateSensorCollectionsOnUpdate(final List<SensorChangedEvent> comparisonResult,
-      final SensorRegistry existingHierarchy) {
+  private void updateSensorCollectionsOnUpdate(final ClientSession session,
+      final List<SensorChangedEvent> comparisonResult, final SensorRegistry existingHierarchy) {
+    final List<WriteModel<Document>> sensorGroupWrites = new ArrayList<>();
+    final List<WriteModel<Document>> machineSensorWrites = new ArrayList<>();
     for (final SensorChangedEvent event : comparisonResult) {
+      final Document document = buildSensorDocument(event.getSensor(), existingHierarchy);
+      final boolean isAggregated = event.getSensor() instanceof AggregatedSensor;
+      final List<WriteModel<Document>> writes =
+          isAggregated ? sensorGroupWrites : machineSensorWrites;
       if (event.getEventType() == EventType.SENSOR_ADDED) {
-        final Document document = this.buildSensorDocument(event.getSensor(), existingHierarchy);
-        if (event.getSensor() instanceof AggregatedSensor) {
-          // aggregated sensor
-          this.sensorGroups.insertOne(document);
-        } else {
-          // machine sensor
-          this.machineSensors.insertOne(document);
-        }
+        writes.add(new InsertOneModel<>(document)); // NOPMD
       } else if (event.getEventType() == EventType.SENSOR_DELETED) {
-        final Document document = this.buildSensorDocument(event.getSensor(), existingHierarchy);
-
-        if (event.getSensor() instanceof AggregatedSensor) {
-          // aggregated sensor
-          this.sensorGroups.deleteOne(document);
-        } else {
-          // machine sensor
-          this.machineSensors.deleteOne(document);
-        }
+        writes.add(new DeleteOneModel<>(document)); // NOPMD
       } else if (event.getEventType() == EventType.SENSOR_MOVED) {
-        final Document document = this.buildSensorDocument(event.getSensor(), existingHierarchy);
-
-        // update sensor in db and publish
-        if (event.getSensor() instanceof AggregatedSensor) {
-          // aggregated sensor
-          this.sensorGroups.replaceOne(
-              Filters.eq(IDENTIFIER_FIELD, event.getSensor().getIdentifier()), document);
-        } else {
-          // machine sensor
-          final Bson filter = Filters.and(
-              Filters.eq(IDENTIFIER_FIELD, event.getSensor().getIdentifier()),
-              Filters.eq(TOP_LEVEL_IDENTIFIER_FIELD,
-                  existingHierarchy.getTopLevelSensor().getIdentifier()));
-          this.machineSensors.replaceOne(filter, document);
-        }
+        final Bson filter = buildMovedSensorFilter(event.getSensor().getIdentifier(),
+            existingHierarchy.getTopLevelSensor().getIdentifier(), isAggregated);
+        writes.add(new ReplaceOneModel<>(filter, document)); // NOPMD
       }
+      // PMD: instantiate object within loop is required
     }
+    BulkWriteUtils.bulkWrite(session, this.sensorGroups, sensorGroupWrites,
+        Config.MONGODB_BULK_WRITE_BATCH_SIZE);
+    BulkWriteUtils.bulkWrite(session, this.machineSensors, machineSensorWrites,
+        Config.MONGODB_BULK_WRITE_BATCH_SIZE);
   }
 
   /**
-   * Emit the information concerning the changes of the sensors of a hierarchy.
+   * Build the events concerning the changes of the sensors of a hierarchy. Depending on the
+   * configuration, this is an event containing the entire hierarchy (legacy behavior) and/or a
+   * batch of the changes of the individual sensors.
    *
    * @param hierarchy The hierarchy (used until more fine grained events are used by other services)
    * @param comparisonResult A list of events, representing the changes of the sensors.
+   * @return The events to publish.
    */
-  private void emitSensorChangedEvents(final SensorRegistry hierarchy,
+  private static List<ConfigurationEvent> buildSensorChangedEvents(
+      final SensorRegistry hierarchy, final List<SensorChangedEvent> comparisonResult) {
+    final List<ConfigurationEvent> events = new ArrayList<>(2);
+    if (Config.EVENT_PUBLISHING_FULL_REGISTRY) {
+      events.add(ConfigurationEvent.ofRegistry(
+          ConfigurationEventType.SENSOR_REGISTRY_CHANGED, hierarchy, isBinaryHierarchyFormat()));
+    }
+
+    if (!comparisonResult.isEmpty()) {
+      events.add(buildSensorChangesEvent(
+          hierarchy.getTopLevelSensor().getIdentifier(), comparisonResult));
+    }
+    return events;
+  }
+
+  /**
+   * Build the event containing a batch of the changes of the individual sensors of a hierarchy.
+   * The parent of each sensor is taken from the hierarchy the sensor is contained in, i.e., the
+   * existing hierarchy for deleted sensors and the new hierarchy for added and moved sensors.
+   *
+   * @param topLevelIdentifier The identifier of the top level sensor of the hierarchy.
+   * @param comparisonResult A list of events, representing the changes of the sensors.
+   * @return The event to publish.
+   */
+  private static ConfigurationEvent buildSensorChangesEvent(final String topLevelIdentifier,
       final List<SensorChangedEvent> comparisonResult) {
-    // TODO remove when emitting more precise events
-    this.eventPublisher.publish(Event.SENSOR_REGISTRY_CHANGED, hierarchy.toJson());
-
-    // This is how precise events could be emitted
-    comparisonResult.forEach(event -> {
-      if (event.getSensor() instanceof AggregatedSensor) {
-        // TODO emit event with format (sensorIdentifier, [parentIdentifier])
-        if (LOGGER.isInfoEnabled()) {
-          LOGGER.info(
-              "Event: '{}' (Sensor Group) | Parent: {}",
-              event.getSensor().getIdentifier(),
-              event.getSensor().getParent().map(p -> p.getIdentifier()).orElse("none"));
-        }
+    final List<SensorChange> changes = comparisonResult.stream()
+        .map(event -> new SensorChange(
+            event.getSensor().getIdentifier(),
+            event.getEventType(),
+            event.getSensor().getName(),
+            event.getSensor().getParent().map(Sensor::getIdentifier).orElse(null)))
+        .collect(Collectors.toList());
 
-      } else {
-        // machine sensor
-        final List<String> parents = this.getMachineSensorsIdentifiersAccordingToFilter(// NOPMD
-            Filters.eq(IDENTIFIER_FIELD, event.getSensor().getIdentifier()));
-        // TODO emit event with format (sensorIdentifier, parentIdentifiers[])
-        if (LOGGER.isInfoEnabled()) {
-          LOGGER.info(
-              "Event: '{}' (Machine Sensor) | Parents: {}",
-              event.getSensor().getIdentifier(),
-              parents.stream().collect(Collectors.joining(", ", "[", "]")));
-        }
+    LOGGER.info("Built {} sensor changes of hierarchy '{}'.", changes.size(), topLevelIdentifier);
 
-      }
-    });
+    return ConfigurationEvent.ofSensorChanges(new SensorChanges(topLevelIdentifier, changes));
+  }
+
+  /**
+   * Store events in the outbox within the session's transaction, if the outbox is enabled.
+   *
+   * @param session The session to write in.
+   * @param events The events to store.
+   */
+  private void storeEvents(final ClientSession session, final List<ConfigurationEvent> events) {
+    if (Config.EVENT_OUTBOX) {
+      this.eventOutbox.add(session, events);
+    }
+  }
+
+  /**
+   * Publish events directly after the transaction is committed, if the outbox is disabled.
+   * Otherwise, the events are published by the outbox relay.
+   *
+   * @param events The events to publish.
+   */
+  private void emitEvents(final List<ConfigurationEvent> events) {
+    if (!Config.EVENT_OUTBOX) {
+      events.forEach(this.eventDispatcher::dispatch);
+    }
   }
 
   /**
@@ -471,7 +1238,7 @@ public final class SensorHierarchyRepository { // NOPMD see !8
    * @param hierarchy The hierarchy the sensor is contained in.
    * @return The respective BSON document representing the sensor in the hierarchy.
    */
-  private Document buildSensorDocument(final Sensor sensor, final SensorRegistry hierarchy) {
+  static Document buildSensorDocument(final Sensor sensor, final SensorRegistry hierarchy) {
     final Document doc = new Document();
     doc.append(SensorHierarchyRepository.IDENTIFIER_FIELD, sensor.getIdentifier());
     doc.append(SensorHierarchyRepository.TOP_LEVEL_IDENTIFIER_FIELD,
@@ -484,62 +1251,94 @@ public final class SensorHierarchyRepository { // NOPMD see !8
   }
 
   /**
-   * Build a list of Bson Documents that act as filter for all existing sensorGroups that are in
-   * other existing sensor hierarchies except in the given hierarchy.
+   * Build the filter of the documents with some identifiers, i.e., of sensor hierarchies or sensor
+   * groups.
+   */
+  static Bson buildIdentifiersFilter(final Collection<String> identifiers) {
+    return Filters.in(IDENTIFIER_FIELD, identifiers);
+  }
+
+  /**
+   * Build the filter of the sensor groups using some identifiers within hierarchies other than a
+   * given one.
    *
-   * @param hierarchy The sensor hierarchy to exclude all sensor from.
-   * @return A list of sensor identifiers matching the query.
+   * @param identifiers The identifiers to check.
+   * @param topLevelIdentifier The identifier of the top level sensor of the hierarchy whose sensor
+   *        groups do not collide or null, if the sensor groups of all hierarchies collide.
+   * @return The filter.
    */
-  private List<Bson> buildPairsOfSensorsAndHierarchyExcludingThisHierarchy(
-      final SensorRegistry hierarchy) {
-    final List<Document> pairs = this.buildSensorGroupDocuments(hierarchy);
-    return pairs
-        .stream()
-        .map(document -> Filters.and(
-            Filters.eq(SensorHierarchyRepository.IDENTIFIER_FIELD,
-                document.getString(SensorHierarchyRepository.IDENTIFIER_FIELD)),
-            Filters.not(
-                Filters.eq(SensorHierarchyRepository.TOP_LEVEL_IDENTIFIER_FIELD,
-                    document.getString(SensorHierarchyRepository.TOP_LEVEL_IDENTIFIER_FIELD)))))
-        .collect(Collectors.toList());
+  static Bson buildCollisionFilter(final Collection<String> identifiers,
+      final String topLevelIdentifier) {
+    final Bson filter = buildIdentifiersFilter(identifiers);
+    return topLevelIdentifier == null
+        ? filter
+        : Filters.and(filter, Filters.ne(TOP_LEVEL_IDENTIFIER_FIELD, topLevelIdentifier));
+  }
+
+  /**
+   * Build the filter of the sensor replaced when a sensor is moved. Sensor groups are unique across
+   * all hierarchies, while machine sensors are only unique within their hierarchy.
+   */
+  static Bson buildMovedSensorFilter(final String identifier, final String topLevelIdentifier,
+      final boolean aggregated) {
+    return aggregated
+        ? Filters.eq(IDENTIFIER_FIELD, identifier)
+        : Filters.and(
+            Filters.eq(IDENTIFIER_FIELD, identifier),
+            Filters.eq(TOP_LEVEL_IDENTIFIER_FIELD, topLevelIdentifier));
   }
 
   /**
-   * Get all colliding sensor identifiers within the hierarchy. Two sensorGroups are colliding, iff
-   * they have the same identifier.
+   * Build the filter of all sensor groups or machine sensors of some hierarchies.
+   */
+  static Bson buildHierarchySensorsFilter(final Collection<String> topLevelIdentifiers) {
+    return Filters.in(TOP_LEVEL_IDENTIFIER_FIELD, topLevelIdentifiers);
+  }
+
+  /**
+   * Build the filter of a page of the listing of sensor hierarchies, which are sorted by
+   * {@link #buildPageSort()}.
    *
-   * @param hierarchy The hierarchy.
-   * @return The List of colliding identifiers.
+   * @param continuationToken The continuation token of the previous page or null for the first
+   *        page.
+   * @return The filter.
+   * @throws IllegalArgumentException If the continuation token is invalid.
    */
-  // TODO fix bug due to naive comparison
-  private List<String> getCollisionsWithinHierarchy(final SensorRegistry hierarchy) {
-    final Collection<Sensor> flattedHierarchy = hierarchy.flatten();
-    return flattedHierarchy.stream()
-        .filter(sensor -> flattedHierarchy
-            .stream()
-            .filter(sensor2 -> sensor.getIdentifier().equals(sensor2.getIdentifier()))
-            .count() > 1)
-        .map(sensor -> sensor.getIdentifier())
-        .collect(Collectors.toList());
+  static Bson buildPageFilter(final String continuationToken) {
+    if (continuationToken == null) {
+      return new Document();
+    } else if (ObjectId.isValid(continuationToken)) {
+      return Filters.gt(ID_FIELD, new ObjectId(continuationToken));
+    } else {
+      throw new IllegalArgumentException("Invalid continuation token: " + continuationToken);
+    }
   }
 
+  /**
+   * Build the sort order of the listing of sensor hierarchies, i.e., the order of their creation.
+   */
+  static Bson buildPageSort() {
+    return Sorts.ascending(ID_FIELD);
+  }
 
   /**
-   * Build a list of BSON filters, containing key-value pairs for the identifiers for aggregated
-   * sensorGroups.
+   * Get all colliding sensor identifiers within the hierarchy. Two sensors are colliding, iff they
+   * have the same identifier. This check does not require database access and is therefore
+   * performed before a transaction is started.
    *
-   * @param hierarchy The hierarchy for which the pairs should be created,
-   * @return A List of filters, where the key is {@link #IDENTIFIER_FIELD} and the value is the
-   *         identifier of the respective aggregated sensor.
+   * @param hierarchy The hierarchy.
+   * @return The List of colliding identifiers, each contained once.
    */
-  private List<Bson> buildIdFiltersForSensors(final SensorRegistry hierarchy) {
-    return hierarchy
-        .flatten()
-        .stream()
-        .filter(sensor -> sensor instanceof AggregatedSensor)
-        .map(sensor -> Filters.eq(SensorHierarchyRepository.IDENTIFIER_FIELD,
-            sensor.getIdentifier()))
-        .collect(Collectors.toList());
+  private List<String> getCollisionsWithinHierarchy(final SensorRegistry hierarchy) {
+    final Map<String, List<String>> duplicates =
+        SensorHierarchyValidationUtils.findDuplicateIdentifiers(hierarchy);
+    if (LOGGER.isInfoEnabled()) {
+      duplicates.forEach((identifier, paths) -> LOGGER.info(
+          "Identifier '{}' is used multiple times: {}",
+          identifier,
+          paths.stream().collect(Collectors.joining(", ", "[", "]"))));
+    }
+    return new ArrayList<>(duplicates.keySet());
   }
 
   /**
@@ -557,7 +1356,7 @@ public final class SensorHierarchyRepository { // NOPMD see !8
         .flatten()
         .stream()
         .filter(sensor -> sensor instanceof AggregatedSensor)
-        .map(sensor -> this.buildSensorDocument(sensor, hierarchy))
+        .map(sensor -> buildSensorDocument(sensor, hierarchy))
         .collect(Collectors.toList());
   }
 
@@ -596,12 +1395,70 @@ public final class SensorHierarchyRepository { // NOPMD see !8
    */
   public void deleteSensorHierarchy(final String identifier)
       throws SensorHierarchyNotFoundException {
-    final DeleteResult result = this.sensorHierarchies
-        .deleteOne(Filters.eq(SensorHierarchyRepository.IDENTIFIER_FIELD, identifier));
-    if (result.getDeletedCount() > 0) {
+    if (this.deleteSensorHierarchies(List.of(identifier)).isEmpty()) {
       throw new SensorHierarchyNotFoundException();
     }
+  }
 
+  /**
+   * Delete multiple sensor hierarchies together with all their sensors within one transaction.
+   * For each deleted hierarchy, the deletion of all its sensors is published as a batch of sensor
+   * changes. The hierarchies are loaded within the transaction, so that the events describe the
+   * deleted versions even if the hierarchies are modified concurrently.
+   *
+   * @param identifiers The identifiers of the hierarchies that should be deleted.
+   * @return The identifiers of the deleted hierarchies. Hierarchies that do not exist are omitted.
+   */
+  public List<String> deleteSensorHierarchies(final Collection<String> identifiers) {
+    final List<ConfigurationEvent> events = new ArrayList<>();
+    final List<String> deleted = this.runInTransaction(session -> {
+      // A retried attempt must not keep the events of a previous one
+      events.clear();
+      final List<SensorRegistry> hierarchies = identifiers.stream()
+          .distinct()
+          .map(identifier -> this.storage.load(session, identifier))
+          .flatMap(Optional::stream)
+          .map(SerializedSensorHierarchy::getRegistry)
+          .collect(Collectors.toList());
+      if (hierarchies.isEmpty()) {
+        return List.<String>of();
+      }
+
+      hierarchies.forEach(hierarchy -> events.add(buildDeletedEvent(hierarchy)));
+
+      final List<String> deletedIdentifiers = this.storage.delete(session, hierarchies.stream()
+          .map(hierarchy -> hierarchy.getTopLevelSensor().getIdentifier())
+          .collect(Collectors.toList()));
+      final Bson filter = buildHierarchySensorsFilter(deletedIdentifiers);
+      this.sensorGroups.deleteMany(session, filter);
+      this.machineSensors.deleteMany(session, filter);
+      this.storeEvents(session, events);
+
+      return deletedIdentifiers;
+    });
+
+    deleted.forEach(this.cache::remove);
+    deleted.forEach(this.sensorGroupIndex::removeHierarchy);
+
+    this.emitEvents(events);
+
+    LOGGER.info("Deleted {} of {} sensor hierarchies.", deleted.size(), identifiers.size());
+
+    return deleted;
+  }
+
+  /**
+   * Build the event containing the deletion of all sensors of a hierarchy.
+   *
+   * @param hierarchy The deleted hierarchy.
+   * @return The event to publish.
+   */
+  static ConfigurationEvent buildDeletedEvent(final SensorRegistry hierarchy) {
+    return buildSensorChangesEvent(
+        hierarchy.getTopLevelSensor().getIdentifier(),
+        hierarchy.flatten().stream()
+            .map(sensor -> new SensorChangedEvent(sensor, EventType.SENSOR_DELETED))
+            .collect(Collectors.toList()));
   }
 
   /**
@@ -611,4 +1468,14 @@ public final class SensorHierarchyRepository { // NOPMD see !8
   public static class SensorHierarchyNotFoundException extends Exception {
 
   }
+
+  /**
+   * Exception indicating the hierarchy was modified concurrently, i.e., the version a modification
+   * is based on is not the stored version anymore. It is unchecked as it is thrown within
+   * transactions.
+   */
+  @SuppressWarnings("serial")
+  public static class SensorHierarchyConflictException extends RuntimeException {
+
+  }
 }
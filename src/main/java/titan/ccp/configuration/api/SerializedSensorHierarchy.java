@@ -0,0 +1,167 @@
+package titan.ccp.configuration.api;
+
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import titan.ccp.configuration.api.util.SensorHierarchyBinaryFormat;
+import titan.ccp.configuration.api.util.SensorHierarchyHashes;
+import titan.ccp.configuration.api.util.SensorHierarchyJsonWriter;
+import titan.ccp.model.sensorregistry.ImmutableSensorRegistry;
+import titan.ccp.model.sensorregistry.Sensor;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * An immutable version of a sensor hierarchy together with its version number, its JSON
+ * serialization, an entity tag derived from the serialization, its structural hashes and an index
+ * of its sensors. Instances are created once per stored version of a hierarchy so that the
+ * hierarchy does not have to be serialized, hashed or searched again for each request.
+ */
+public final class SerializedSensorHierarchy {
+
+  private final SensorRegistry registry;
+  private final byte[] json;
+  private final String entityTag;
+  private final Map<String, Sensor> sensorsByIdentifier;
+  private final SensorHierarchyHashes hashes;
+  private final long version;
+  private volatile byte[] binary; // NOPMD encoded lazily, since most clients request JSON
+
+  private SerializedSensorHierarchy(final SensorRegistry registry,
+      final SensorHierarchyHashes hashes, final long version) {
+    this.registry = registry;
+    this.hashes = hashes;
+    this.version = version;
+    this.json = SensorHierarchyJsonWriter.toBytes(registry);
+    this.entityTag = '"' + Hashing.sha256().hashBytes(this.json).toString() + '"';
+    this.sensorsByIdentifier = new HashMap<>();
+    for (final Sensor sensor : registry.flatten()) {
+      this.sensorsByIdentifier.putIfAbsent(sensor.getIdentifier(), sensor);
+    }
+  }
+
+  /**
+   * Create a serialized version of a sensor hierarchy. The hierarchy is copied into an immutable
+   * registry so that it can be shared safely between request threads.
+   *
+   * @param hierarchy The sensor hierarchy to serialize.
+   * @param version The version number of the stored hierarchy.
+   * @return The serialized sensor hierarchy.
+   */
+  public static SerializedSensorHierarchy of(final SensorRegistry hierarchy, final long version) {
+    return of(hierarchy, SensorHierarchyHashes.of(hierarchy), version);
+  }
+
+  /**
+   * Create a serialized version of a sensor hierarchy whose structural hashes are already known.
+   *
+   * @param hierarchy The sensor hierarchy to serialize.
+   * @param hashes The structural hashes of the sensor hierarchy.
+   * @param version The version number of the stored hierarchy.
+   * @return The serialized sensor hierarchy.
+   */
+  public static SerializedSensorHierarchy of(final SensorRegistry hierarchy,
+      final SensorHierarchyHashes hashes, final long version) {
+    final SensorRegistry immutableHierarchy = hierarchy instanceof ImmutableSensorRegistry
+        ? hierarchy
+        : ImmutableSensorRegistry.copyOf(hierarchy);
+    return new SerializedSensorHierarchy(immutableHierarchy, hashes, version);
+  }
+
+  public SensorRegistry getRegistry() {
+    return this.registry;
+  }
+
+  public SensorHierarchyHashes getHashes() {
+    return this.hashes;
+  }
+
+  /**
+   * Get the version number of the stored hierarchy, which is incremented with each update.
+   */
+  public long getVersion() {
+    return this.version;
+  }
+
+  /**
+   * Get a sensor of this hierarchy, which may be an aggregated or a machine sensor.
+   *
+   * @param identifier The identifier of the sensor.
+   * @return The sensor or an empty Optional if the hierarchy does not contain it.
+   */
+  public Optional<Sensor> getSensor(final String identifier) {
+    return Optional.ofNullable(this.sensorsByIdentifier.get(identifier));
+  }
+
+  /**
+   * Get the strong entity tag of this version of the hierarchy, including the surrounding quotes
+   * as required for the HTTP ETag header.
+   */
+  public String getEntityTag() {
+    return this.entityTag;
+  }
+
+  /**
+   * Get the length of the representation of the hierarchy in the
+   * {@link SensorHierarchyBinaryFormat} in bytes. The hierarchy is encoded on the first call.
+   */
+  public int getBinaryLength() {
+    return this.getBinary().length;
+  }
+
+  /**
+   * Get the strong entity tag of the representation of this version of the hierarchy in the
+   * {@link SensorHierarchyBinaryFormat}, which differs from the one of the JSON representation.
+   */
+  public String getBinaryEntityTag() {
+    return this.entityTag.substring(0, this.entityTag.length() - 1) + "-bin\"";
+  }
+
+  private byte[] getBinary() {
+    byte[] result = this.binary;
+    if (result == null) {
+      // Concurrent calls may encode the hierarchy multiple times, which yields equal results
+      result = SensorHierarchyBinaryFormat.encode(this.registry);
+      this.binary = result;
+    }
+    return result;
+  }
+
+  /**
+   * Write the UTF-8 encoded JSON representation of the hierarchy to a stream.
+   *
+   * @param output The stream to write to. It is neither flushed nor closed.
+   * @throws IOException If writing to the stream fails.
+   */
+  public void writeJson(final OutputStream output) throws IOException {
+    output.write(this.json);
+  }
+
+  /**
+   * Write the representation of the hierarchy in the {@link SensorHierarchyBinaryFormat} to a
+   * stream. The hierarchy is encoded on the first call.
+   *
+   * @param output The stream to write to. It is neither flushed nor closed.
+   * @throws IOException If writing to the stream fails.
+   */
+  public void writeBinary(final OutputStream output) throws IOException {
+    output.write(this.getBinary());
+  }
+
+  /**
+   * Get the length of the UTF-8 encoded JSON representation of the hierarchy in bytes.
+   */
+  public int getJsonLength() {
+    return this.json.length;
+  }
+
+  /**
+   * Get the number of sensors (aggregated and machine sensors) in this hierarchy.
+   */
+  public int getSensorCount() {
+    return this.sensorsByIdentifier.size();
+  }
+
+}
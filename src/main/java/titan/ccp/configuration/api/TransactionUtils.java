@@ -0,0 +1,121 @@
+package titan.ccp.configuration.api;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import titan.ccp.configuration.api.util.MetricsUtils;
+
+/**
+ * Class for executing operations within MongoDB transactions. Each execution uses its own session,
+ * so that operations of concurrent requests do not interfere.
+ */
+public final class TransactionUtils {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransactionUtils.class);
+
+  private static final String COMMIT_TIMER = "mongodb.transaction.commit";
+  private static final String RETRY_COUNTER = "mongodb.transaction.retries";
+  private static final String ABORT_COUNTER = "mongodb.transaction.aborts";
+  private static final String REASON_TAG = "reason";
+
+  private TransactionUtils() {
+
+  }
+
+  /**
+   * Execute an operation within a transaction of a new session and commit the transaction
+   * afterwards. If the operation aborts the transaction itself, nothing is committed. If the
+   * transaction fails due to a transient error, e.g., a write conflict with a concurrent
+   * transaction, the entire operation is retried. Committing is retried if its result is unknown.
+   * Before each retry, the thread backs off for a random time of up to the base delay multiplied by
+   * the number of failed attempts, so that conflicting transactions do not collide again. All other
+   * errors abort the transaction and are rethrown. The duration of commits as well as the number of
+   * retries and aborts are recorded in a meter registry.
+   *
+   * @param mongoClient The client to start the session with.
+   * @param maxAttempts The maximum number of attempts for executing the operation and for
+   *        committing the transaction, respectively.
+   * @param delayMs The base delay in milliseconds to back off before a retry.
+   * @param meterRegistry The registry to record metrics of the transaction in.
+   * @param operation The operation to execute. It may be called multiple times.
+   * @return The result of the operation.
+   */
+  public static <T> T runInTransaction(final MongoClient mongoClient, final int maxAttempts,
+      final long delayMs, final MeterRegistry meterRegistry,
+      final Function<ClientSession, T> operation) {
+    for (int attempt = 1;; attempt++) {
+      try (ClientSession session = mongoClient.startSession()) {
+        session.startTransaction();
+        try {
+          final T result = operation.apply(session);
+          if (session.hasActiveTransaction()) {
+            MetricsUtils.latencyTimer(meterRegistry, COMMIT_TIMER)
+                .record(() -> commitWithRetry(session, maxAttempts, delayMs, meterRegistry));
+          } else {
+            meterRegistry.counter(ABORT_COUNTER, REASON_TAG, "operation").increment();
+          }
+          return result;
+        } catch (final MongoException e) {
+          if (session.hasActiveTransaction()) {
+            session.abortTransaction();
+          }
+          if (!e.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)
+              || attempt >= maxAttempts) {
+            meterRegistry.counter(ABORT_COUNTER, REASON_TAG, "error").increment();
+            throw e;
+          }
+          meterRegistry.counter(RETRY_COUNTER, REASON_TAG, "transient.error").increment();
+          LOGGER.info("Transaction failed due to a transient error. Retry attempt {} of {}.",
+              attempt + 1, maxAttempts);
+          backOff(delayMs, attempt, e);
+        } catch (final RuntimeException e) { // NOPMD abort transaction on all errors
+          if (session.hasActiveTransaction()) {
+            session.abortTransaction();
+          }
+          meterRegistry.counter(ABORT_COUNTER, REASON_TAG, "error").increment();
+          throw e;
+        }
+      }
+    }
+  }
+
+  private static void commitWithRetry(final ClientSession session, final int maxAttempts,
+      final long delayMs, final MeterRegistry meterRegistry) {
+    for (int attempt = 1;; attempt++) {
+      try {
+        session.commitTransaction();
+        return;
+      } catch (final MongoException e) {
+        if (!e.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)
+            || attempt >= maxAttempts) {
+          throw e;
+        }
+        meterRegistry.counter(RETRY_COUNTER, REASON_TAG, "unknown.commit.result").increment();
+        LOGGER.info("Commit result is unknown. Retry attempt {} of {}.", attempt + 1, maxAttempts);
+        backOff(delayMs, attempt, e);
+      }
+    }
+  }
+
+  /**
+   * Sleep for a random time of up to the base delay multiplied by the number of failed attempts.
+   * If the thread is interrupted, the error causing the retry is rethrown instead.
+   */
+  private static void backOff(final long delayMs, final int attempt, final MongoException cause) {
+    if (delayMs <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextLong(delayMs * attempt + 1));
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw cause;
+    }
+  }
+
+}
@@ -0,0 +1,97 @@
+package titan.ccp.configuration.api;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Jetty {@link ThreadPool} running each task on a new virtual thread. Requests blocking on I/O,
+ * such as synchronous MongoDB calls, then only block a virtual thread instead of one of a limited
+ * number of platform threads, so that the number of concurrent requests is not bounded by the size
+ * of a thread pool.
+ *
+ * <p>
+ * Virtual threads require Java 21 or newer. Since this service is built for Java 11, the virtual
+ * thread executor is looked up reflectively at runtime.
+ * </p>
+ */
+public final class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadPool.class);
+
+  private static final String FACTORY_METHOD = "newVirtualThreadPerTaskExecutor";
+
+  private final ExecutorService executor;
+
+  private final AtomicInteger activeThreads = new AtomicInteger();
+
+  private VirtualThreadPool(final ExecutorService executor) {
+    super();
+    this.executor = executor;
+  }
+
+  /**
+   * Create a new thread pool, if the running JVM supports virtual threads.
+   *
+   * @return The thread pool or an empty Optional if virtual threads are not supported.
+   */
+  public static Optional<VirtualThreadPool> create() {
+    try {
+      final ExecutorService executor =
+          (ExecutorService) Executors.class.getMethod(FACTORY_METHOD).invoke(null);
+      return Optional.of(new VirtualThreadPool(executor));
+    } catch (final NoSuchMethodException | IllegalAccessException
+        | InvocationTargetException e) {
+      LOGGER.warn("Virtual threads are not supported by Java {}.",
+          System.getProperty("java.version"));
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    this.executor.execute(() -> {
+      this.activeThreads.incrementAndGet();
+      try {
+        task.run();
+      } finally {
+        this.activeThreads.decrementAndGet();
+      }
+    });
+  }
+
+  @Override
+  public void join() throws InterruptedException {
+    while (!this.executor.awaitTermination(1, TimeUnit.MINUTES)) { // NOPMD wait for termination
+    }
+  }
+
+  @Override
+  public int getThreads() {
+    return this.activeThreads.get();
+  }
+
+  @Override
+  public int getIdleThreads() {
+    return 0;
+  }
+
+  @Override
+  public boolean isLowOnThreads() {
+    return false;
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    this.executor.shutdownNow();
+    super.doStop();
+  }
+
+}
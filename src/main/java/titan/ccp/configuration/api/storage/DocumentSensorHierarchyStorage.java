@@ -0,0 +1,101 @@
+package titan.ccp.configuration.api.storage;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import titan.ccp.configuration.api.SerializedSensorHierarchy;
+import titan.ccp.model.sensorregistry.AggregatedSensor;
+import titan.ccp.model.sensorregistry.Sensor;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Storage writing each sensor hierarchy as one document, containing the entire hierarchy. Reading
+ * or writing a hierarchy requires only one operation, but always transfers the entire hierarchy and
+ * hierarchies are limited by the maximum document size of MongoDB.
+ */
+public final class DocumentSensorHierarchyStorage extends SensorHierarchyStorage {
+
+  /**
+   * Create a new storage.
+   *
+   * @param hierarchies The collection containing one document per hierarchy.
+   * @param nodes The collection containing the sensors of hierarchies in the normalized format,
+   *        required for migrating them.
+   * @param batchSize The maximum number of write operations per bulk write.
+   */
+  public DocumentSensorHierarchyStorage(final MongoCollection<Document> hierarchies,
+      final MongoCollection<Document> nodes, final int batchSize) {
+    super(hierarchies, nodes, batchSize);
+  }
+
+  @Override
+  public void insert(final ClientSession session, final List<SensorRegistry> hierarchies,
+      final long version) {
+    this.hierarchies.insertMany(session, hierarchies.stream()
+        .map(hierarchy -> buildDocument(hierarchy, version))
+        .collect(Collectors.toList()));
+  }
+
+  @Override
+  public boolean replace(final ClientSession session, final SerializedSensorHierarchy existing,
+      final SensorRegistry hierarchy, final long version) {
+    final Document previous = this.hierarchies.findOneAndReplace(session,
+        buildVersionFilter(hierarchy.getTopLevelSensor().getIdentifier(), existing.getVersion()),
+        buildDocument(hierarchy, version));
+    if (previous == null) {
+      return false;
+    }
+    if (isNormalized(previous)) {
+      this.deleteNodes(session, hierarchy.getTopLevelSensor().getIdentifier());
+    }
+    return true;
+  }
+
+  @Override
+  public boolean migrate(final ClientSession session, final String identifier) {
+    final Document document = this.hierarchies
+        .find(session, buildHierarchyFilter(identifier))
+        .first();
+    if (document == null || !isNormalized(document)) {
+      return false;
+    }
+    this.hierarchies.replaceOne(session, buildHierarchyFilter(identifier),
+        buildDocument(this.readHierarchy(session, document), getVersion(document)));
+    this.deleteNodes(session, identifier);
+    return true;
+  }
+
+  @Override
+  protected Bson buildOtherFormatFilter() {
+    return Filters.eq(FORMAT_FIELD, NORMALIZED_FORMAT);
+  }
+
+  private void deleteNodes(final ClientSession session, final String identifier) {
+    this.nodes.deleteMany(session, buildNodesFilter(identifier));
+  }
+
+  /**
+   * Build the document of a hierarchy directly from its sensors, without serializing it to JSON
+   * and parsing it again.
+   */
+  private static Document buildDocument(final SensorRegistry hierarchy, final long version) {
+    return buildSensorDocument(hierarchy.getTopLevelSensor()).append(VERSION_FIELD, version);
+  }
+
+  private static Document buildSensorDocument(final Sensor sensor) {
+    final Document document = new Document()
+        .append(IDENTIFIER_FIELD, sensor.getIdentifier())
+        .append(NAME_FIELD, sensor.getName());
+    if (sensor instanceof AggregatedSensor) {
+      document.append(CHILDREN_FIELD, ((AggregatedSensor) sensor).getChildren().stream()
+          .map(DocumentSensorHierarchyStorage::buildSensorDocument)
+          .collect(Collectors.toList()));
+    }
+    return document;
+  }
+
+}
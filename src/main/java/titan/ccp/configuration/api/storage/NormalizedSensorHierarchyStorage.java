@@ -0,0 +1,133 @@
+package titan.ccp.configuration.api.storage;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import titan.ccp.configuration.api.BulkWriteUtils;
+import titan.ccp.configuration.api.SerializedSensorHierarchy;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Storage writing each sensor hierarchy in the normalized format, i.e., as one small document for
+ * the top level sensor and one document per other sensor. Hierarchies are not limited by the
+ * maximum document size of MongoDB and updates only write the documents of sensors that changed.
+ */
+public final class NormalizedSensorHierarchyStorage extends SensorHierarchyStorage {
+
+  /**
+   * Create a new storage.
+   *
+   * @param hierarchies The collection containing one document per hierarchy.
+   * @param nodes The collection containing the sensors of the hierarchies.
+   * @param batchSize The maximum number of write operations per bulk write.
+   */
+  public NormalizedSensorHierarchyStorage(final MongoCollection<Document> hierarchies,
+      final MongoCollection<Document> nodes, final int batchSize) {
+    super(hierarchies, nodes, batchSize);
+  }
+
+  @Override
+  public void insert(final ClientSession session, final List<SensorRegistry> hierarchies,
+      final long version) {
+    this.hierarchies.insertMany(session, hierarchies.stream()
+        .map(hierarchy -> buildDocument(hierarchy, version))
+        .collect(Collectors.toList()));
+    this.insertNodes(session, hierarchies);
+  }
+
+  @Override
+  public boolean replace(final ClientSession session, final SerializedSensorHierarchy existing,
+      final SensorRegistry hierarchy, final long version) {
+    final Document previous = this.hierarchies.findOneAndReplace(session,
+        buildVersionFilter(hierarchy.getTopLevelSensor().getIdentifier(), existing.getVersion()),
+        buildDocument(hierarchy, version));
+    if (previous == null) {
+      return false;
+    }
+    if (isNormalized(previous)) {
+      this.updateNodes(session, existing.getRegistry(), hierarchy);
+    } else {
+      this.insertNodes(session, List.of(hierarchy));
+    }
+    return true;
+  }
+
+  @Override
+  public boolean migrate(final ClientSession session, final String identifier) {
+    final Document document = this.hierarchies
+        .find(session, buildHierarchyFilter(identifier))
+        .first();
+    if (document == null || isNormalized(document)) {
+      return false;
+    }
+    final SensorRegistry hierarchy = this.readHierarchy(session, document);
+    this.hierarchies.replaceOne(session, buildHierarchyFilter(identifier),
+        buildDocument(hierarchy, getVersion(document)));
+    this.insertNodes(session, List.of(hierarchy));
+    return true;
+  }
+
+  @Override
+  protected Bson buildOtherFormatFilter() {
+    return Filters.ne(FORMAT_FIELD, NORMALIZED_FORMAT);
+  }
+
+  /**
+   * Write only the nodes that differ between two versions of a hierarchy.
+   *
+   * @param session The session to write in.
+   * @param existingHierarchy The stored version of the hierarchy.
+   * @param hierarchy The new version of the hierarchy.
+   */
+  private void updateNodes(final ClientSession session, final SensorRegistry existingHierarchy,
+      final SensorRegistry hierarchy) {
+    final String topLevelIdentifier = hierarchy.getTopLevelSensor().getIdentifier();
+    final Map<String, Document> existingNodes = buildNodeDocuments(existingHierarchy);
+    final Map<String, Document> newNodes = buildNodeDocuments(hierarchy);
+    final List<WriteModel<Document>> writes = new ArrayList<>();
+    for (final String identifier : existingNodes.keySet()) {
+      if (!newNodes.containsKey(identifier)) {
+        writes.add(new DeleteOneModel<>( // NOPMD
+            buildNodeFilter(topLevelIdentifier, identifier)));
+      }
+    }
+    for (final Map.Entry<String, Document> node : newNodes.entrySet()) {
+      final Document existingNode = existingNodes.get(node.getKey());
+      if (existingNode == null) {
+        writes.add(new InsertOneModel<>(node.getValue())); // NOPMD
+      } else if (!existingNode.equals(node.getValue())) {
+        writes.add(new ReplaceOneModel<>( // NOPMD
+            buildNodeFilter(topLevelIdentifier, node.getKey()), node.getValue()));
+      }
+    }
+    BulkWriteUtils.bulkWrite(session, this.nodes, writes, this.batchSize);
+  }
+
+  /**
+   * Build a filter matching a single node of a hierarchy in the normalized format.
+   */
+  static Bson buildNodeFilter(final String topLevelIdentifier, final String identifier) {
+    return Filters.and(
+        Filters.eq(TOP_LEVEL_IDENTIFIER_FIELD, topLevelIdentifier),
+        Filters.eq(IDENTIFIER_FIELD, identifier));
+  }
+
+  private static Document buildDocument(final SensorRegistry hierarchy, final long version) {
+    return new Document()
+        .append(IDENTIFIER_FIELD, hierarchy.getTopLevelSensor().getIdentifier())
+        .append(NAME_FIELD, hierarchy.getTopLevelSensor().getName())
+        .append(VERSION_FIELD, version)
+        .append(FORMAT_FIELD, NORMALIZED_FORMAT);
+  }
+
+}
@@ -0,0 +1,520 @@
+package titan.ccp.configuration.api.storage;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.WriteModel;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.bson.Document;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.conversions.Bson;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriter;
+import org.bson.json.JsonWriterSettings;
+import titan.ccp.configuration.api.BulkWriteUtils;
+import titan.ccp.configuration.api.IndexReconciler;
+import titan.ccp.configuration.api.IndexReconciler.Index;
+import titan.ccp.configuration.api.SensorHierarchyRepository.SensorHierarchyConflictException;
+import titan.ccp.configuration.api.SerializedSensorHierarchy;
+import titan.ccp.configuration.api.util.SensorHierarchyJsonWriter;
+import titan.ccp.model.sensorregistry.AggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableAggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+import titan.ccp.model.sensorregistry.Sensor;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Storage of sensor hierarchies in MongoDB. Each hierarchy has a document in the collection of
+ * hierarchies, which contains at least the identifier and name of its top level sensor and the
+ * version of the hierarchy. Hierarchies are either stored in the document format, where this
+ * document contains the entire hierarchy, or in the normalized format, where each other sensor is
+ * stored as a document of its own in the collection of nodes.
+ *
+ * <p>
+ * Implementations write hierarchies in one of the formats, but read both of them, so that
+ * hierarchies can be migrated between the formats while the service is running.
+ * </p>
+ */
+public abstract class SensorHierarchyStorage {
+
+  protected static final String ID_FIELD = "_id";
+  protected static final String IDENTIFIER_FIELD = "identifier";
+  protected static final String NAME_FIELD = "name";
+  protected static final String VERSION_FIELD = "version";
+  protected static final String FORMAT_FIELD = "format";
+  protected static final String NORMALIZED_FORMAT = "normalized";
+  protected static final String TOP_LEVEL_IDENTIFIER_FIELD = "topLevelSensor";
+  protected static final String PARENT_FIELD = "parent";
+  protected static final String POSITION_FIELD = "position";
+  protected static final String AGGREGATED_FIELD = "aggregated";
+  protected static final String CHILDREN_FIELD = "children";
+
+  private static final int MAX_READ_ATTEMPTS = 5;
+
+  private static final JsonWriterSettings JSON_WRITER_SETTINGS =
+      JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+
+  protected final MongoCollection<Document> hierarchies;
+  protected final MongoCollection<Document> nodes;
+  protected final int batchSize;
+
+  /**
+   * Create a new storage.
+   *
+   * @param hierarchies The collection containing one document per hierarchy.
+   * @param nodes The collection containing the sensors of hierarchies in the normalized format.
+   * @param batchSize The maximum number of write operations per bulk write.
+   */
+  protected SensorHierarchyStorage(final MongoCollection<Document> hierarchies,
+      final MongoCollection<Document> nodes, final int batchSize) {
+    this.hierarchies = hierarchies;
+    this.nodes = nodes;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Create the indexes required by this storage.
+   */
+  public void createIndexes() {
+    IndexReconciler.reconcile(this.nodes, getNodeIndexes());
+  }
+
+  /**
+   * Indexes of the collection of nodes, which are looked up by their hierarchy and identifier.
+   */
+  public static List<Index> getNodeIndexes() {
+    return List.of(Index.ascending(true, TOP_LEVEL_IDENTIFIER_FIELD, IDENTIFIER_FIELD));
+  }
+
+  /**
+   * Load a sensor hierarchy, regardless of the format it is stored in.
+   *
+   * <p>
+   * The document of a hierarchy in the normalized format and its nodes are read in separate
+   * queries. To not return a hierarchy mixing two versions, the document is checked to be
+   * unchanged after reading the nodes. Otherwise, the hierarchy is read again.
+   * </p>
+   *
+   * @param identifier The identifier of the hierarchy's top level sensor.
+   * @return The hierarchy with its version or an empty Optional if it does not exist.
+   * @throws SensorHierarchyConflictException If the hierarchy was modified concurrently in each
+   *         attempt to read it.
+   */
+  public Optional<SerializedSensorHierarchy> load(final String identifier) {
+    for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+      final Document document = this.hierarchies
+          .find(buildHierarchyFilter(identifier))
+          .first();
+      if (document == null) {
+        return Optional.empty();
+      }
+      final SensorRegistry hierarchy = this.readHierarchy(null, document);
+      if (!isNormalized(document) || this.isUnchanged(document)) {
+        return Optional.of(SerializedSensorHierarchy.of(hierarchy, getVersion(document)));
+      }
+    }
+    throw new SensorHierarchyConflictException();
+  }
+
+  /**
+   * Load a sensor hierarchy within a session, regardless of the format it is stored in. Within a
+   * transaction, the document of the hierarchy and its nodes are read from the same snapshot.
+   *
+   * @param session The session to read in.
+   * @param identifier The identifier of the hierarchy's top level sensor.
+   * @return The hierarchy with its version or an empty Optional if it does not exist.
+   */
+  public Optional<SerializedSensorHierarchy> load(final ClientSession session,
+      final String identifier) {
+    final Document document = this.hierarchies
+        .find(session, buildHierarchyFilter(identifier))
+        .first();
+    return document == null
+        ? Optional.empty()
+        : Optional.of(SerializedSensorHierarchy.of(
+            this.readHierarchy(session, document), getVersion(document)));
+  }
+
+  /**
+   * Check whether a sensor hierarchy is stored in a certain version. Only the identifier of the
+   * hierarchy's document is read.
+   *
+   * @param identifier The identifier of the hierarchy's top level sensor.
+   * @param version The version to check for.
+   * @return True if the hierarchy exists in this version, false otherwise.
+   */
+  public boolean isStored(final String identifier, final long version) {
+    return this.hierarchies
+        .find(buildVersionFilter(identifier, version))
+        .projection(Projections.include(ID_FIELD))
+        .first() != null;
+  }
+
+  /**
+   * Write the JSON representations of all stored sensor hierarchies as newline delimited JSON.
+   * Hierarchies are read from a cursor and written incrementally. Those in the document format are
+   * serialized directly from their documents without being parsed into sensor registries. Hence,
+   * only the current batch of the cursor is held in memory, regardless of the number of
+   * hierarchies, and no hierarchy is materialized as JSON string.
+   *
+   * <p>
+   * The hierarchies are not read from a snapshot, i.e., hierarchies modified while exporting may or
+   * may not be included in their modified version. However, each exported hierarchy is consistent
+   * in itself, as hierarchies in the normalized format modified while reading their nodes are
+   * loaded again.
+   * </p>
+   *
+   * @param writer The writer to write to. It is flushed, but not closed.
+   * @throws IOException If writing fails.
+   */
+  public void export(final Writer writer) throws IOException {
+    final DocumentCodec codec = new DocumentCodec();
+    for (final Document document : this.hierarchies.find()) {
+      if (isNormalized(document)) {
+        final SensorRegistry hierarchy = this.readNormalizedHierarchy(null, document);
+        if (this.isUnchanged(document)) {
+          SensorHierarchyJsonWriter.write(hierarchy, writer);
+        } else {
+          final Optional<SerializedSensorHierarchy> reloaded =
+              this.load(document.getString(IDENTIFIER_FIELD));
+          if (reloaded.isEmpty()) {
+            continue; // deleted while exporting
+          }
+          SensorHierarchyJsonWriter.write(reloaded.get().getRegistry(), writer);
+        }
+      } else {
+        document.remove(ID_FIELD);
+        document.remove(VERSION_FIELD);
+        final JsonWriter jsonWriter = new JsonWriter(writer, JSON_WRITER_SETTINGS); // NOPMD
+        codec.encode(jsonWriter, document, EncoderContext.builder().build());
+        jsonWriter.flush();
+      }
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  /**
+   * Store a new sensor hierarchy.
+   *
+   * @param session The session to write in.
+   * @param hierarchy The hierarchy.
+   * @param version The version of the hierarchy.
+   */
+  public void insert(final ClientSession session, final SensorRegistry hierarchy,
+      final long version) {
+    this.insert(session, List.of(hierarchy), version);
+  }
+
+  /**
+   * Store multiple new sensor hierarchies with as few round trips as possible.
+   *
+   * @param session The session to write in.
+   * @param hierarchies The hierarchies.
+   * @param version The version of all hierarchies.
+   */
+  public abstract void insert(ClientSession session, List<SensorRegistry> hierarchies,
+      long version);
+
+  /**
+   * Replace a stored sensor hierarchy by a new version, if the stored version is still the one the
+   * new version is based on.
+   *
+   * @param session The session to write in.
+   * @param existing The version of the hierarchy the new version is based on.
+   * @param hierarchy The new version of the hierarchy.
+   * @param version The version number of the new version.
+   * @return True if the hierarchy was replaced, false if the stored version does not match.
+   */
+  public abstract boolean replace(ClientSession session, SerializedSensorHierarchy existing,
+      SensorRegistry hierarchy, long version);
+
+  /**
+   * Delete stored sensor hierarchies.
+   *
+   * @param session The session to read and write in.
+   * @param identifiers The identifiers of the hierarchies' top level sensors.
+   * @return The identifiers of the hierarchies that existed and were deleted.
+   */
+  public List<String> delete(final ClientSession session, final Collection<String> identifiers) {
+    final List<String> existing = new ArrayList<>();
+    for (final Document document : this.hierarchies
+        .find(session, buildHierarchiesFilter(identifiers))
+        .projection(Projections.include(IDENTIFIER_FIELD))) {
+      existing.add(document.getString(IDENTIFIER_FIELD));
+    }
+    if (!existing.isEmpty()) {
+      this.hierarchies.deleteMany(session, buildHierarchiesFilter(existing));
+      this.nodes.deleteMany(session, buildNodesFilter(existing));
+    }
+    return existing;
+  }
+
+  /**
+   * Get the identifiers of all hierarchies, which are stored in another format than the one written
+   * by this storage.
+   */
+  public List<String> getIdentifiersToMigrate() {
+    final List<String> identifiers = new ArrayList<>();
+    for (final Document document : this.hierarchies
+        .find(this.buildOtherFormatFilter())
+        .projection(Projections.include(IDENTIFIER_FIELD))) {
+      identifiers.add(document.getString(IDENTIFIER_FIELD));
+    }
+    return identifiers;
+  }
+
+  /**
+   * Convert a hierarchy stored in another format into the format written by this storage. The
+   * version of the hierarchy is retained.
+   *
+   * @param session The session to read and write in.
+   * @param identifier The identifier of the hierarchy's top level sensor.
+   * @return True if the hierarchy was converted, false if it does not exist (anymore) or is already
+   *         stored in the format of this storage.
+   */
+  public abstract boolean migrate(ClientSession session, String identifier);
+
+  /**
+   * Build a filter matching all hierarchies, which are stored in another format than the one
+   * written by this storage.
+   */
+  protected abstract Bson buildOtherFormatFilter();
+
+  /**
+   * Read a hierarchy from its document, regardless of the format it is stored in.
+   *
+   * @param session The session to read in or null, if no session should be used.
+   * @param document The document of the hierarchy.
+   * @return The hierarchy.
+   */
+  protected SensorRegistry readHierarchy(final ClientSession session, final Document document) {
+    return isNormalized(document)
+        ? this.readNormalizedHierarchy(session, document)
+        : readDocumentHierarchy(document);
+  }
+
+  /**
+   * Build a hierarchy stored in the document format directly from the nested documents of its
+   * sensors, without serializing them to JSON and parsing it again.
+   */
+  private static SensorRegistry readDocumentHierarchy(final Document document) {
+    final MutableSensorRegistry hierarchy = new MutableSensorRegistry(
+        document.getString(IDENTIFIER_FIELD), document.getString(NAME_FIELD));
+    addChildDocuments(hierarchy.getTopLevelSensor(), document);
+    return hierarchy;
+  }
+
+  private static void addChildDocuments(final MutableAggregatedSensor sensor,
+      final Document document) {
+    for (final Document child : document.getList(CHILDREN_FIELD, Document.class, List.of())) {
+      if (child.containsKey(CHILDREN_FIELD)) {
+        addChildDocuments(sensor.addChildAggregatedSensor(
+            child.getString(IDENTIFIER_FIELD), child.getString(NAME_FIELD)), child);
+      } else {
+        sensor.addChildMachineSensor(
+            child.getString(IDENTIFIER_FIELD), child.getString(NAME_FIELD));
+      }
+    }
+  }
+
+  /**
+   * Reassemble a hierarchy stored in the normalized format from its nodes.
+   */
+  private SensorRegistry readNormalizedHierarchy(final ClientSession session,
+      final Document document) {
+    final String identifier = document.getString(IDENTIFIER_FIELD);
+    final Bson filter = buildNodesFilter(identifier);
+    final Map<String, List<Document>> children = new HashMap<>();
+    for (final Document node : session == null
+        ? this.nodes.find(filter)
+        : this.nodes.find(session, filter)) {
+      children
+          .computeIfAbsent(node.getString(PARENT_FIELD), parent -> new ArrayList<>())
+          .add(node);
+    }
+    children.values().forEach(siblings -> siblings.sort(
+        Comparator.comparingInt(node -> node.getInteger(POSITION_FIELD))));
+
+    final MutableSensorRegistry hierarchy =
+        new MutableSensorRegistry(identifier, document.getString(NAME_FIELD));
+    addChildren(hierarchy.getTopLevelSensor(), children);
+    return hierarchy;
+  }
+
+  private static void addChildren(final MutableAggregatedSensor sensor,
+      final Map<String, List<Document>> children) {
+    for (final Document child : children.getOrDefault(sensor.getIdentifier(), List.of())) {
+      if (child.getBoolean(AGGREGATED_FIELD)) {
+        addChildren(sensor.addChildAggregatedSensor(
+            child.getString(IDENTIFIER_FIELD), child.getString(NAME_FIELD)), children);
+      } else {
+        sensor.addChildMachineSensor(
+            child.getString(IDENTIFIER_FIELD), child.getString(NAME_FIELD));
+      }
+    }
+  }
+
+  /**
+   * Insert all nodes of hierarchies in the normalized format.
+   *
+   * @param session The session to write in.
+   * @param hierarchies The hierarchies.
+   */
+  protected void insertNodes(final ClientSession session,
+      final List<SensorRegistry> hierarchies) {
+    final List<WriteModel<Document>> writes = new ArrayList<>();
+    for (final SensorRegistry hierarchy : hierarchies) {
+      for (final Document node : buildNodeDocuments(hierarchy).values()) {
+        writes.add(new InsertOneModel<>(node)); // NOPMD
+      }
+    }
+    BulkWriteUtils.bulkWrite(session, this.nodes, writes, this.batchSize);
+  }
+
+  /**
+   * Build the documents of all sensors of a hierarchy except for its top level sensor, as stored in
+   * the normalized format.
+   *
+   * @param hierarchy The hierarchy.
+   * @return A map from the sensors' identifiers to their documents in the order of a pre-order
+   *         traversal of the hierarchy.
+   */
+  protected static Map<String, Document> buildNodeDocuments(final SensorRegistry hierarchy) {
+    final Map<String, Document> documents = new LinkedHashMap<>();
+    addNodeDocuments(hierarchy.getTopLevelSensor(),
+        hierarchy.getTopLevelSensor().getIdentifier(), documents);
+    return documents;
+  }
+
+  private static void addNodeDocuments(final AggregatedSensor sensor,
+      final String topLevelIdentifier, final Map<String, Document> documents) {
+    int position = 0; // NOPMD redefineable variable
+    for (final Sensor child : sensor.getChildren()) {
+      final boolean aggregated = child instanceof AggregatedSensor;
+      documents.put(child.getIdentifier(), new Document() // NOPMD
+          .append(TOP_LEVEL_IDENTIFIER_FIELD, topLevelIdentifier)
+          .append(IDENTIFIER_FIELD, child.getIdentifier())
+          .append(NAME_FIELD, child.getName())
+          .append(PARENT_FIELD, sensor.getIdentifier())
+          .append(POSITION_FIELD, position++)
+          .append(AGGREGATED_FIELD, aggregated));
+      if (aggregated) {
+        addNodeDocuments((AggregatedSensor) child, topLevelIdentifier, documents);
+      }
+    }
+  }
+
+  /**
+   * Build a filter matching a stored hierarchy.
+   *
+   * @param identifier The identifier of the hierarchy's top level sensor.
+   * @return The filter.
+   */
+  static Bson buildHierarchyFilter(final String identifier) {
+    return Filters.eq(IDENTIFIER_FIELD, identifier);
+  }
+
+  /**
+   * Build a filter matching some stored hierarchies.
+   *
+   * @param identifiers The identifiers of the hierarchies' top level sensors.
+   * @return The filter.
+   */
+  static Bson buildHierarchiesFilter(final Collection<String> identifiers) {
+    return Filters.in(IDENTIFIER_FIELD, identifiers);
+  }
+
+  /**
+   * Build a filter matching all nodes of a hierarchy in the normalized format.
+   *
+   * @param topLevelIdentifier The identifier of the hierarchy's top level sensor.
+   * @return The filter.
+   */
+  static Bson buildNodesFilter(final String topLevelIdentifier) {
+    return Filters.eq(TOP_LEVEL_IDENTIFIER_FIELD, topLevelIdentifier);
+  }
+
+  /**
+   * Build a filter matching all nodes of some hierarchies in the normalized format.
+   *
+   * @param topLevelIdentifiers The identifiers of the hierarchies' top level sensors.
+   * @return The filter.
+   */
+  static Bson buildNodesFilter(final Collection<String> topLevelIdentifiers) {
+    return Filters.in(TOP_LEVEL_IDENTIFIER_FIELD, topLevelIdentifiers);
+  }
+
+  /**
+   * Build a filter matching the document of a hierarchy in the normalized format only if it is
+   * still stored in the same version.
+   *
+   * @param document The document of the hierarchy as read before.
+   * @return The filter.
+   */
+  static Bson buildUnchangedFilter(final Document document) {
+    return Filters.and(
+        Filters.eq(ID_FIELD, document.get(ID_FIELD)),
+        buildVersionFilter(document.getString(IDENTIFIER_FIELD), getVersion(document)),
+        Filters.eq(FORMAT_FIELD, NORMALIZED_FORMAT));
+  }
+
+  /**
+   * Build a filter matching a stored hierarchy only if it has the expected version.
+   *
+   * @param identifier The identifier of the hierarchy's top level sensor.
+   * @param version The expected version.
+   * @return The filter.
+   */
+  protected static Bson buildVersionFilter(final String identifier, final long version) {
+    return Filters.and(
+        Filters.eq(IDENTIFIER_FIELD, identifier),
+        version == 0
+            ? Filters.exists(VERSION_FIELD, false)
+            : Filters.eq(VERSION_FIELD, version));
+  }
+
+  /**
+   * Get the version of a stored sensor hierarchy. Hierarchies stored before versions were
+   * introduced have version 0.
+   *
+   * @param document The document representing the hierarchy.
+   * @return The version of the hierarchy.
+   */
+  protected static long getVersion(final Document document) {
+    final Object version = document.get(VERSION_FIELD);
+    return version instanceof Number ? ((Number) version).longValue() : 0;
+  }
+
+  /**
+   * Check whether the document of a hierarchy in the normalized format is still stored in the same
+   * version, i.e., the hierarchy was neither modified, migrated nor deleted and created again since
+   * the document was read.
+   */
+  private boolean isUnchanged(final Document document) {
+    return this.hierarchies
+        .find(buildUnchangedFilter(document))
+        .projection(Projections.include(ID_FIELD))
+        .first() != null;
+  }
+
+  /**
+   * Check whether a document of a hierarchy represents a hierarchy in the normalized format.
+   */
+  protected static boolean isNormalized(final Document document) {
+    return NORMALIZED_FORMAT.equals(document.getString(FORMAT_FIELD));
+  }
+
+}
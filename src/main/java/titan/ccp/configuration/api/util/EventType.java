@@ -4,5 +4,5 @@ package titan.ccp.configuration.api.util;
  * Type of changes of sensor in the sensor registry.
  */
 public enum EventType {
-  SENSOR_ADDED, SENSOR_DELETED, SENSOR_MOVED
+  SENSOR_ADDED, SENSOR_DELETED, SENSOR_MOVED, SENSOR_RENAMED
 }
@@ -0,0 +1,77 @@
+package titan.ccp.configuration.api.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import titan.ccp.configuration.api.util.SensorHierarchyParser.SensorHierarchyTooLargeException;
+
+/**
+ * Reader for the lines of a UTF-8 encoded stream, such as newline delimited JSON, which never
+ * buffers more than a maximum number of bytes per line. As soon as a line exceeds the maximum, the
+ * rest of the line is skipped without buffering it and the line is rejected, so that a single
+ * oversized line cannot exhaust the memory.
+ */
+public final class LimitedLineReader {
+
+  private static final int LINE_FEED = '\n';
+  private static final byte CARRIAGE_RETURN = '\r';
+
+  private final InputStream input;
+  private final long maxBytes;
+  private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+  /**
+   * Create a new reader.
+   *
+   * @param input The stream to read from.
+   * @param maxBytes The maximum size of a line in bytes, excluding the line terminator.
+   */
+  public LimitedLineReader(final InputStream input, final long maxBytes) {
+    this.input = new BufferedInputStream(input);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Read the next line. Lines are terminated by a line feed, optionally preceded by a carriage
+   * return, or by the end of the stream.
+   *
+   * @return The line without its terminator or null if the end of the stream is reached.
+   * @throws SensorHierarchyTooLargeException If the line exceeds the maximum size. The line is
+   *         skipped, so that the next call returns the following line.
+   * @throws IOException If reading from the stream fails.
+   */
+  public String readLine() throws IOException {
+    this.line.reset();
+    int next = this.input.read(); // NOPMD redefineable variable
+    if (next < 0) {
+      return null;
+    }
+    while (next >= 0 && next != LINE_FEED) {
+      // Allow one more byte for a carriage return preceding the line feed
+      if (this.line.size() > this.maxBytes) {
+        this.skipLine();
+        throw new SensorHierarchyTooLargeException(this.maxBytes);
+      }
+      this.line.write(next);
+      next = this.input.read();
+    }
+    final byte[] bytes = this.line.toByteArray();
+    final int length = bytes.length > 0 && bytes[bytes.length - 1] == CARRIAGE_RETURN
+        ? bytes.length - 1
+        : bytes.length;
+    if (length > this.maxBytes) {
+      throw new SensorHierarchyTooLargeException(this.maxBytes);
+    }
+    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private void skipLine() throws IOException {
+    int next = this.input.read(); // NOPMD redefineable variable
+    while (next >= 0 && next != LINE_FEED) {
+      next = this.input.read();
+    }
+  }
+
+}
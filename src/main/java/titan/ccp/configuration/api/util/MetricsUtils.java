@@ -0,0 +1,38 @@
+package titan.ccp.configuration.api.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+
+/**
+ * Utility functions for recording metrics of the service.
+ */
+public final class MetricsUtils {
+
+  private static final Duration MIN_EXPECTED_LATENCY = Duration.ofMillis(1);
+  private static final Duration MAX_EXPECTED_LATENCY = Duration.ofSeconds(30);
+
+  private MetricsUtils() {}
+
+  /**
+   * Get a timer recording latencies as histogram, so that percentiles can be aggregated across
+   * instances. The buckets of the histogram are restricted to the latencies to expect from a
+   * request or database operation, which keeps the number of time series small. The timer is
+   * registered on first use and looked up afterwards.
+   *
+   * @param registry The registry to register the timer in.
+   * @param name The name of the timer.
+   * @param tags The tags of the timer as alternating keys and values.
+   * @return The timer.
+   */
+  public static Timer latencyTimer(final MeterRegistry registry, final String name,
+      final String... tags) {
+    return Timer.builder(name)
+        .tags(tags)
+        .publishPercentileHistogram()
+        .minimumExpectedValue(MIN_EXPECTED_LATENCY)
+        .maximumExpectedValue(MAX_EXPECTED_LATENCY)
+        .register(registry);
+  }
+
+}
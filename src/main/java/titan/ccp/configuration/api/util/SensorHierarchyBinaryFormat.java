@@ -0,0 +1,262 @@
+package titan.ccp.configuration.api.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import titan.ccp.configuration.api.util.SensorHierarchyParser.InvalidSensorHierarchyException;
+import titan.ccp.model.sensorregistry.AggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableAggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+import titan.ccp.model.sensorregistry.Sensor;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Compact binary encoding of sensor hierarchies as an alternative to their JSON representation.
+ *
+ * <p>
+ * An encoded hierarchy starts with a magic number and a format version, followed by a table of all
+ * distinct identifiers and names of its sensors and the sensors themselves in pre-order. Each
+ * sensor consists of the table indexes of its identifier and name and, for aggregated sensors, the
+ * number of its children plus one (zero denotes a machine sensor). Lengths, counts and indexes are
+ * encoded as unsigned variable-length integers with seven bits per byte, strings as UTF-8. Since
+ * names often equal or repeat identifiers and no field names are encoded, hierarchies are
+ * considerably smaller than in JSON.
+ * </p>
+ */
+public final class SensorHierarchyBinaryFormat {
+
+  public static final String CONTENT_TYPE = "application/x-sensor-hierarchy";
+
+  private static final int MAGIC_NUMBER = 0x5348; // "SH"
+  private static final int VERSION = 1;
+  private static final int UNLIMITED = Integer.MAX_VALUE;
+
+  private SensorHierarchyBinaryFormat() {}
+
+  /**
+   * Encode a sensor hierarchy.
+   *
+   * @param hierarchy The sensor hierarchy.
+   * @return The encoded hierarchy.
+   */
+  public static byte[] encode(final SensorRegistry hierarchy) {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      encode(hierarchy, output);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Encode a sensor hierarchy to a stream.
+   *
+   * @param hierarchy The sensor hierarchy.
+   * @param output The stream to write to. It is neither flushed nor closed.
+   * @throws IOException If writing to the stream fails.
+   */
+  public static void encode(final SensorRegistry hierarchy, final OutputStream output)
+      throws IOException {
+    final Map<String, Integer> strings = new LinkedHashMap<>();
+    collectStrings(hierarchy.getTopLevelSensor(), strings);
+
+    output.write(MAGIC_NUMBER >>> 8);
+    output.write(MAGIC_NUMBER & 0xFF);
+    output.write(VERSION);
+    writeVarInt(output, strings.size());
+    for (final String string : strings.keySet()) {
+      final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      writeVarInt(output, bytes.length);
+      output.write(bytes);
+    }
+    writeSensor(output, hierarchy.getTopLevelSensor(), strings);
+  }
+
+  /**
+   * Decode a sensor hierarchy without limits.
+   *
+   * @param bytes The encoded hierarchy.
+   * @return The sensor hierarchy.
+   * @throws InvalidSensorHierarchyException If the bytes are no valid encoded hierarchy.
+   */
+  public static SensorRegistry decode(final byte[] bytes) {
+    try {
+      return decode(new ByteArrayInputStream(bytes), UNLIMITED, UNLIMITED);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Decode a sensor hierarchy from a stream, failing as soon as the hierarchy exceeds a maximum
+   * depth or number of sensors.
+   *
+   * @param input The stream to read from. It is not closed.
+   * @param maxDepth The maximum depth of the hierarchy.
+   * @param maxSensors The maximum number of sensors of the hierarchy.
+   * @return The sensor hierarchy.
+   * @throws InvalidSensorHierarchyException If the stream does not contain a valid encoded
+   *         hierarchy or the hierarchy exceeds one of the limits.
+   * @throws IOException If reading from the stream fails.
+   */
+  public static SensorRegistry decode(final InputStream input, final int maxDepth,
+      final int maxSensors) throws IOException {
+    if ((readByte(input) << 8 | readByte(input)) != MAGIC_NUMBER) {
+      throw new InvalidSensorHierarchyException("Not a binary sensor hierarchy.");
+    }
+    final int version = readByte(input);
+    if (version != VERSION) {
+      throw new InvalidSensorHierarchyException("Unsupported format version " + version + '.');
+    }
+
+    final int stringCount = readVarInt(input);
+    // Each sensor contributes at most two distinct strings
+    if (stringCount > 2L * maxSensors) {
+      throw new InvalidSensorHierarchyException(
+          "Sensor hierarchy contains more than " + maxSensors + " sensors.");
+    }
+    final List<String> strings = new ArrayList<>(Math.min(stringCount, 1024));
+    for (int i = 0; i < stringCount; i++) {
+      final int length = readVarInt(input);
+      final byte[] bytes = input.readNBytes(length);
+      if (bytes.length < length) {
+        throw new InvalidSensorHierarchyException("Unexpected end of sensor hierarchy.");
+      }
+      strings.add(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    final String identifier = readString(input, strings);
+    final String name = readString(input, strings);
+    final int childCount = readVarInt(input) - 1;
+    if (childCount < 0) {
+      throw new InvalidSensorHierarchyException("Top level sensor must be an aggregated sensor.");
+    }
+    final MutableSensorRegistry hierarchy = new MutableSensorRegistry(identifier, name);
+    final Decoder decoder = new Decoder(input, strings, maxDepth, maxSensors);
+    decoder.readChildren(hierarchy.getTopLevelSensor(), childCount, 1);
+    return hierarchy;
+  }
+
+  private static void collectStrings(final Sensor sensor, final Map<String, Integer> strings) {
+    strings.putIfAbsent(sensor.getIdentifier(), strings.size());
+    strings.putIfAbsent(sensor.getName(), strings.size());
+    if (sensor instanceof AggregatedSensor) {
+      for (final Sensor child : ((AggregatedSensor) sensor).getChildren()) {
+        collectStrings(child, strings);
+      }
+    }
+  }
+
+  private static void writeSensor(final OutputStream output, final Sensor sensor,
+      final Map<String, Integer> strings) throws IOException {
+    writeVarInt(output, strings.get(sensor.getIdentifier()));
+    writeVarInt(output, strings.get(sensor.getName()));
+    if (sensor instanceof AggregatedSensor) {
+      final Collection<Sensor> children = ((AggregatedSensor) sensor).getChildren();
+      writeVarInt(output, children.size() + 1);
+      for (final Sensor child : children) {
+        writeSensor(output, child, strings);
+      }
+    } else {
+      writeVarInt(output, 0);
+    }
+  }
+
+  private static void writeVarInt(final OutputStream output, final int value) throws IOException {
+    int remaining = value; // NOPMD redefineable variable
+    while ((remaining & ~0x7F) != 0) {
+      output.write(remaining & 0x7F | 0x80);
+      remaining >>>= 7;
+    }
+    output.write(remaining);
+  }
+
+  private static int readVarInt(final InputStream input) throws IOException {
+    int value = 0; // NOPMD redefineable variable
+    for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+      final int current = readByte(input);
+      value |= (current & 0x7F) << shift;
+      if ((current & 0x80) == 0) {
+        if (value < 0) {
+          break;
+        }
+        return value;
+      }
+    }
+    throw new InvalidSensorHierarchyException("Invalid variable-length integer.");
+  }
+
+  private static int readByte(final InputStream input) throws IOException {
+    final int value = input.read();
+    if (value < 0) {
+      throw new InvalidSensorHierarchyException(
+          "Unexpected end of sensor hierarchy.", new EOFException());
+    }
+    return value;
+  }
+
+  private static String readString(final InputStream input, final List<String> strings)
+      throws IOException {
+    final int index = readVarInt(input);
+    if (index >= strings.size()) {
+      throw new InvalidSensorHierarchyException("Invalid string index " + index + '.');
+    }
+    return strings.get(index);
+  }
+
+  /**
+   * State of decoding the sensors of a single hierarchy.
+   */
+  private static final class Decoder {
+
+    private final InputStream input;
+    private final List<String> strings;
+    private final int maxDepth;
+    private final int maxSensors;
+    private int sensorCount = 1;
+
+    private Decoder(final InputStream input, final List<String> strings, final int maxDepth,
+        final int maxSensors) {
+      this.input = input;
+      this.strings = strings;
+      this.maxDepth = maxDepth;
+      this.maxSensors = maxSensors;
+    }
+
+    private void readChildren(final MutableAggregatedSensor parent, final int childCount,
+        final int depth) throws IOException {
+      if (depth > this.maxDepth) {
+        throw new InvalidSensorHierarchyException(
+            "Sensor hierarchy is deeper than " + this.maxDepth + " levels.");
+      }
+      for (int i = 0; i < childCount; i++) {
+        if (++this.sensorCount > this.maxSensors) {
+          throw new InvalidSensorHierarchyException(
+              "Sensor hierarchy contains more than " + this.maxSensors + " sensors.");
+        }
+        final String identifier = readString(this.input, this.strings);
+        final String name = readString(this.input, this.strings);
+        final int grandchildCount = readVarInt(this.input) - 1;
+        if (grandchildCount < 0) {
+          parent.addChildMachineSensor(identifier, name);
+        } else {
+          this.readChildren(
+              parent.addChildAggregatedSensor(identifier, name), grandchildCount, depth + 1);
+        }
+      }
+    }
+
+  }
+
+}
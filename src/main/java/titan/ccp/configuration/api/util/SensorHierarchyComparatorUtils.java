@@ -2,7 +2,10 @@ package titan.ccp.configuration.api.util;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import titan.ccp.model.sensorregistry.AggregatedSensor;
 import titan.ccp.model.sensorregistry.Sensor;
 import titan.ccp.model.sensorregistry.SensorRegistry;
@@ -17,12 +20,13 @@ public final class SensorHierarchyComparatorUtils {
   }
 
   /**
-   * Compare two sensor hierarchies.
+   * Compare two sensor hierarchies. Both hierarchies are indexed by their sensors' identifiers
+   * once, so that the comparison requires time linear in the number of sensors.
    *
    * @param oldHierarchy The old hierarchy.
    * @param newHierarchy The new hierarchy.
    * @return A list of SensorChangedEvent that contains the information which sensors are deleted
-   *         from the old hierarchy, added with the new hierarchy.
+   *         from the old hierarchy, added with the new hierarchy, moved or renamed.
    */
   public static List<SensorChangedEvent> compareSensorHierarchies(final SensorRegistry oldHierarchy,
       final SensorRegistry newHierarchy) {
@@ -33,33 +37,101 @@ public final class SensorHierarchyComparatorUtils {
     final List<SensorChangedEvent> acc = new ArrayList<>();
 
     // find deleted sensors
-    findDeletedSensors(oldHierarchySensors, newHierarchySensors, acc);
+    findDeletedSensors(oldHierarchySensors, indexByIdentifier(newHierarchySensors), acc);
 
-    // find added and moved sensors
-    findAddedAndMovedSensors(oldHierarchySensors, newHierarchySensors, acc);
+    // find added, moved and renamed sensors
+    findAddedAndMovedSensors(indexByIdentifier(oldHierarchySensors), newHierarchySensors, acc);
 
     return acc;
   }
 
+  /**
+   * Compare two sensor hierarchies, skipping all subtrees that are identical in both hierarchies
+   * according to their structural hashes. The roots of identical subtrees are still compared, as
+   * they might have been moved as a whole. The identifiers of sensors have to be unique within each
+   * hierarchy.
+   *
+   * @param oldHierarchy The old hierarchy.
+   * @param oldHashes The structural hashes of the old hierarchy.
+   * @param newHierarchy The new hierarchy.
+   * @param newHashes The structural hashes of the new hierarchy.
+   * @return A list of SensorChangedEvent that contains the information which sensors are deleted
+   *         from the old hierarchy, added with the new hierarchy, moved or renamed.
+   */
+  public static List<SensorChangedEvent> compareSensorHierarchies(final SensorRegistry oldHierarchy,
+      final SensorHierarchyHashes oldHashes, final SensorRegistry newHierarchy,
+      final SensorHierarchyHashes newHashes) {
+
+    final List<SensorChangedEvent> acc = new ArrayList<>();
+
+    if (oldHashes.isHierarchyEqual(newHashes)) {
+      return acc;
+    }
+
+    final List<Sensor> oldHierarchySensors = new ArrayList<>();
+    collectChangedSensors(oldHierarchy.getTopLevelSensor(), oldHashes, newHashes,
+        oldHierarchySensors);
+    final List<Sensor> newHierarchySensors = new ArrayList<>();
+    collectChangedSensors(newHierarchy.getTopLevelSensor(), newHashes, oldHashes,
+        newHierarchySensors);
+
+    // find deleted sensors
+    findDeletedSensors(oldHierarchySensors, indexByIdentifier(newHierarchySensors), acc);
+
+    // find added, moved and renamed sensors
+    findAddedAndMovedSensors(indexByIdentifier(oldHierarchySensors), newHierarchySensors, acc);
+
+    return acc;
+  }
+
+  /**
+   * Collect a sensor and, unless it spans a subtree that is identical in the other hierarchy, all
+   * of its descendants. All collected sensors are put into the accumulator as a side effect.
+   *
+   * @param sensor The sensor to start from.
+   * @param hashes The structural hashes of the hierarchy containing the sensor.
+   * @param otherHashes The structural hashes of the hierarchy to compare with.
+   * @param acc The accumulator.
+   */
+  private static void collectChangedSensors(final Sensor sensor,
+      final SensorHierarchyHashes hashes, final SensorHierarchyHashes otherHashes,
+      final List<Sensor> acc) {
+    acc.add(sensor);
+    if (sensor instanceof AggregatedSensor
+        && !hashes.isSubtreeEqual(sensor.getIdentifier(), otherHashes)) {
+      for (final Sensor child : ((AggregatedSensor) sensor).getChildren()) {
+        collectChangedSensors(child, hashes, otherHashes, acc);
+      }
+    }
+  }
+
+  /**
+   * Index sensors by their identifiers. If multiple sensors share the same identifier, the first
+   * one is indexed.
+   *
+   * @param sensors The sensors to index.
+   * @return A map from identifiers to the respective sensors.
+   */
+  private static Map<String, Sensor> indexByIdentifier(final Collection<Sensor> sensors) {
+    final Map<String, Sensor> index = new HashMap<>(sensors.size() * 4 / 3 + 1);
+    for (final Sensor sensor : sensors) {
+      index.putIfAbsent(sensor.getIdentifier(), sensor);
+    }
+    return index;
+  }
+
   /**
    * Find all sensors that are contained in the old hierarchy, but not in the new hierarchy. All
    * sensors matching the criteria are put into the accumulator as a side effect.
    *
    * @param oldHierarchySensors Contains the sensors of the old hierarchy.
-   * @param newHierarchySensors COntains the sensors of the new hierarchy.
+   * @param newHierarchySensors Contains the sensors of the new hierarchy indexed by identifier.
    * @param acc The accumulator.
    */
   private static void findDeletedSensors(final Collection<Sensor> oldHierarchySensors,
-      final Collection<Sensor> newHierarchySensors, final List<SensorChangedEvent> acc) {
+      final Map<String, Sensor> newHierarchySensors, final List<SensorChangedEvent> acc) {
     for (final Sensor oldSensor : oldHierarchySensors) {
-      boolean deleted = true; // NOPMD redefineable variable
-      for (final Sensor newSensor : newHierarchySensors) {
-        if (oldSensor.getIdentifier().equals(newSensor.getIdentifier())) {
-          deleted = false;
-          break;
-        }
-      }
-      if (deleted) {
+      if (!newHierarchySensors.containsKey(oldSensor.getIdentifier())) {
         acc.add(new SensorChangedEvent(oldSensor, EventType.SENSOR_DELETED)); // NOPMD
         // PMD: instantiate object within loop is required
       }
@@ -67,35 +139,30 @@ public final class SensorHierarchyComparatorUtils {
   }
 
   /**
-   * Find all sensors that are added to or moved within the hierarchy. All sensors matching the
-   * criteria are put into the accumulator as a side effect.
+   * Find all sensors that are added to, moved within or renamed in the hierarchy. A sensor that is
+   * moved and renamed is reported twice. All sensors matching the criteria are put into the
+   * accumulator as a side effect.
    *
-   * @param oldHierarchySensors Contains the sensors of the old hierarchy.
-   * @param newHierarchySensors COntains the sensors of the new hierarchy.
+   * @param oldHierarchySensors Contains the sensors of the old hierarchy indexed by identifier.
+   * @param newHierarchySensors Contains the sensors of the new hierarchy.
    * @param acc The accumulator.
    */
-  private static void findAddedAndMovedSensors(final Collection<Sensor> oldHierarchySensors,
+  private static void findAddedAndMovedSensors(final Map<String, Sensor> oldHierarchySensors,
       final Collection<Sensor> newHierarchySensors, final List<SensorChangedEvent> acc) {
     for (final Sensor newSensor : newHierarchySensors) {
-      boolean added = true; // NOPMD redefineable variable
-      boolean moved = false; // NOPMD redefinable variable
-      for (final Sensor oldSensor : oldHierarchySensors) {
-        if (newSensor.getIdentifier().equals(oldSensor.getIdentifier())) {
-          added = false;
-          final boolean isParentDifferent =
-              SensorHierarchyComparatorUtils.isParentDifferent(oldSensor, newSensor);
-          if (isParentDifferent) {
-            moved = true; // NOPMD
-          }
-          break;
-        }
-      }
-      if (added) {
+      final Sensor oldSensor = oldHierarchySensors.get(newSensor.getIdentifier());
+      if (oldSensor == null) {
         acc.add(new SensorChangedEvent(newSensor, EventType.SENSOR_ADDED)); // NOPMD
         // PMD: instantiate object within loop is required
-      } else if (moved) {
-        acc.add(new SensorChangedEvent(newSensor, EventType.SENSOR_MOVED)); // NOPMD
-        // PMD: instantiate object within loop is required
+      } else {
+        if (SensorHierarchyComparatorUtils.isParentDifferent(oldSensor, newSensor)) {
+          acc.add(new SensorChangedEvent(newSensor, EventType.SENSOR_MOVED)); // NOPMD
+          // PMD: instantiate object within loop is required
+        }
+        if (!Objects.equals(oldSensor.getName(), newSensor.getName())) {
+          acc.add(new SensorChangedEvent(newSensor, EventType.SENSOR_RENAMED)); // NOPMD
+          // PMD: instantiate object within loop is required
+        }
       }
     }
   }
@@ -0,0 +1,114 @@
+package titan.ccp.configuration.api.util;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import titan.ccp.model.sensorregistry.AggregatedSensor;
+import titan.ccp.model.sensorregistry.Sensor;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Structural (Merkle) hashes of all aggregated sensors of a sensor hierarchy. The hash of an
+ * aggregated sensor covers its identifier, its name and the ordered hashes of its children. Hence,
+ * two aggregated sensors with equal hashes span identical subtrees.
+ */
+public final class SensorHierarchyHashes {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+
+  private static final int AGGREGATED_SENSOR_MARKER = 1;
+  private static final int MACHINE_SENSOR_MARKER = 2;
+
+  private final Map<String, HashCode> hashes = new HashMap<>();
+
+  private final HashCode topLevelHash;
+
+  private SensorHierarchyHashes(final SensorRegistry hierarchy) {
+    this.topLevelHash = this.computeHash(hierarchy.getTopLevelSensor());
+  }
+
+  /**
+   * Compute the hashes of all aggregated sensors of a sensor hierarchy.
+   *
+   * @param hierarchy The sensor hierarchy.
+   * @return The hashes of the hierarchy.
+   */
+  public static SensorHierarchyHashes of(final SensorRegistry hierarchy) {
+    return new SensorHierarchyHashes(hierarchy);
+  }
+
+  private HashCode computeHash(final Sensor sensor) {
+    final Hasher hasher = HASH_FUNCTION.newHasher();
+    if (sensor instanceof AggregatedSensor) {
+      final AggregatedSensor aggregatedSensor = (AggregatedSensor) sensor;
+      hasher.putInt(AGGREGATED_SENSOR_MARKER);
+      putString(hasher, sensor.getIdentifier());
+      putString(hasher, sensor.getName());
+      hasher.putInt(aggregatedSensor.getChildren().size());
+      for (final Sensor child : aggregatedSensor.getChildren()) {
+        hasher.putBytes(this.computeHash(child).asBytes());
+      }
+      final HashCode hash = hasher.hash();
+      this.hashes.put(sensor.getIdentifier(), hash);
+      return hash;
+    } else {
+      hasher.putInt(MACHINE_SENSOR_MARKER);
+      putString(hasher, sensor.getIdentifier());
+      putString(hasher, sensor.getName());
+      return hasher.hash();
+    }
+  }
+
+  private static void putString(final Hasher hasher, final String value) {
+    // Prefix with the length to make the encoding of consecutive strings unambiguous
+    final String nonNullValue = value == null ? "" : value;
+    hasher.putInt(nonNullValue.length());
+    hasher.putString(nonNullValue, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Get the hash of the hierarchy's top level sensor, i.e., the hash of the entire hierarchy.
+   */
+  public HashCode getTopLevelHash() {
+    return this.topLevelHash;
+  }
+
+  /**
+   * Get the hash of the subtree spanned by an aggregated sensor.
+   *
+   * @param identifier The identifier of the aggregated sensor.
+   * @return The hash or null if the hierarchy does not contain an aggregated sensor with this
+   *         identifier.
+   */
+  public HashCode getHash(final String identifier) {
+    return this.hashes.get(identifier);
+  }
+
+  /**
+   * Check whether the subtree spanned by an aggregated sensor is identical in this and another
+   * hierarchy.
+   *
+   * @param identifier The identifier of the aggregated sensor.
+   * @param other The hashes of the other hierarchy.
+   * @return True if both hierarchies contain the aggregated sensor with equal hashes.
+   */
+  public boolean isSubtreeEqual(final String identifier, final SensorHierarchyHashes other) {
+    final HashCode hash = this.hashes.get(identifier);
+    return hash != null && hash.equals(other.hashes.get(identifier));
+  }
+
+  /**
+   * Check whether another hierarchy is structurally identical to this one.
+   *
+   * @param other The hashes of the other hierarchy.
+   * @return True if the hashes of both top level sensors are equal.
+   */
+  public boolean isHierarchyEqual(final SensorHierarchyHashes other) {
+    return this.topLevelHash.equals(other.topLevelHash);
+  }
+
+}
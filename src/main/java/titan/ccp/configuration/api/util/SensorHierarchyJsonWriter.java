@@ -0,0 +1,89 @@
+package titan.ccp.configuration.api.util;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import titan.ccp.model.sensorregistry.AggregatedSensor;
+import titan.ccp.model.sensorregistry.Sensor;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Class for writing the JSON representation of sensor hierarchies incrementally, sensor by sensor,
+ * to a stream. In contrast to {@link SensorRegistry#toJson()}, the JSON representation is never
+ * materialized as a whole, so that serializing a hierarchy allocates only the stream's buffer in
+ * addition to the written output.
+ */
+public final class SensorHierarchyJsonWriter {
+
+  private static final String IDENTIFIER_FIELD = "identifier";
+  private static final String NAME_FIELD = "name";
+  private static final String CHILDREN_FIELD = "children";
+
+  private SensorHierarchyJsonWriter() {
+
+  }
+
+  /**
+   * Get the UTF-8 encoded JSON representation of a sensor hierarchy without creating an
+   * intermediate string.
+   *
+   * @param hierarchy The sensor hierarchy.
+   * @return The UTF-8 encoded JSON representation.
+   */
+  public static byte[] toBytes(final SensorRegistry hierarchy) {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      write(hierarchy, output);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Write the UTF-8 encoded JSON representation of a sensor hierarchy to a stream.
+   *
+   * @param hierarchy The sensor hierarchy.
+   * @param output The stream to write to. It is flushed, but not closed.
+   * @throws IOException If writing to the stream fails.
+   */
+  public static void write(final SensorRegistry hierarchy, final OutputStream output)
+      throws IOException {
+    write(hierarchy, new OutputStreamWriter(output, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Write the JSON representation of a sensor hierarchy to a writer.
+   *
+   * @param hierarchy The sensor hierarchy.
+   * @param writer The writer to write to. It is flushed, but not closed.
+   * @throws IOException If writing fails.
+   */
+  public static void write(final SensorRegistry hierarchy, final Writer writer)
+      throws IOException {
+    final JsonWriter jsonWriter = new JsonWriter(writer);
+    writeSensor(hierarchy.getTopLevelSensor(), jsonWriter);
+    jsonWriter.flush();
+  }
+
+  private static void writeSensor(final Sensor sensor, final JsonWriter writer)
+      throws IOException {
+    writer.beginObject();
+    writer.name(IDENTIFIER_FIELD).value(sensor.getIdentifier());
+    writer.name(NAME_FIELD).value(sensor.getName());
+    if (sensor instanceof AggregatedSensor) {
+      writer.name(CHILDREN_FIELD).beginArray();
+      for (final Sensor child : ((AggregatedSensor) sensor).getChildren()) {
+        writeSensor(child, writer);
+      }
+      writer.endArray();
+    }
+    writer.endObject();
+  }
+
+}
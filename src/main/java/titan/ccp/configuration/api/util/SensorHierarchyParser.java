@@ -0,0 +1,344 @@
+package titan.ccp.configuration.api.util;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import titan.ccp.model.sensorregistry.MutableAggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Incremental parser for the JSON representation of sensor hierarchies. Hierarchies are read token
+ * by token from a stream, so that the JSON document never has to be held in memory as a whole.
+ * Parsing is aborted as soon as the document exceeds a maximum size in bytes, a maximum nesting
+ * depth of sensors or a maximum number of sensors.
+ *
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ * </p>
+ */
+public final class SensorHierarchyParser {
+
+  private static final String IDENTIFIER_FIELD = "identifier";
+  private static final String NAME_FIELD = "name";
+  private static final String CHILDREN_FIELD = "children";
+
+  private final long maxBytes;
+  private final int maxDepth;
+  private final int maxSensors;
+
+  /**
+   * Create a new parser.
+   *
+   * @param maxBytes The maximum size of a document in bytes.
+   * @param maxDepth The maximum depth of a hierarchy, i.e., the maximum number of aggregated
+   *        sensors on a path from the top level sensor to another sensor.
+   * @param maxSensors The maximum number of sensors (including the top level sensor) of a
+   *        hierarchy.
+   */
+  public SensorHierarchyParser(final long maxBytes, final int maxDepth, final int maxSensors) {
+    this.maxBytes = maxBytes;
+    this.maxDepth = maxDepth;
+    this.maxSensors = maxSensors;
+  }
+
+  public long getMaxBytes() {
+    return this.maxBytes;
+  }
+
+  /**
+   * Parse a single sensor hierarchy from a UTF-8 encoded stream. The stream is closed afterwards.
+   *
+   * @param input The stream to read from.
+   * @return The sensor hierarchy.
+   * @throws SensorHierarchyTooLargeException If the stream is larger than the maximum size.
+   * @throws InvalidSensorHierarchyException If the stream does not contain a valid hierarchy or
+   *         the hierarchy exceeds the maximum depth or number of sensors.
+   * @throws IOException If reading from the stream fails.
+   */
+  public SensorRegistry parse(final InputStream input) throws IOException {
+    return this.parse(this.newReader(input));
+  }
+
+  /**
+   * Parse a single sensor hierarchy from a string.
+   *
+   * @param json The JSON representation of the hierarchy.
+   * @return The sensor hierarchy.
+   * @throws SensorHierarchyTooLargeException If the string encoded in UTF-8 is larger than the
+   *         maximum size.
+   * @throws InvalidSensorHierarchyException If the string is no valid hierarchy or the hierarchy
+   *         exceeds the maximum depth or number of sensors.
+   */
+  public SensorRegistry parse(final String json) {
+    // Each char takes at least one byte in UTF-8, so only count bytes of short enough strings
+    if (json.length() > this.maxBytes || utf8Length(json) > this.maxBytes) {
+      throw new SensorHierarchyTooLargeException(this.maxBytes);
+    }
+    try {
+      return this.parse(new StringReader(json));
+    } catch (final IOException e) {
+      throw new IllegalStateException("Reading from a string must not fail.", e);
+    }
+  }
+
+  /**
+   * Get the number of bytes of a string encoded in UTF-8 without encoding it.
+   */
+  private static long utf8Length(final String string) {
+    long length = 0;
+    for (int i = 0; i < string.length(); i++) {
+      final char character = string.charAt(i);
+      if (character < 0x80) {
+        length += 1;
+      } else if (character < 0x800) {
+        length += 2;
+      } else if (Character.isSurrogate(character)) {
+        length += 2; // a surrogate pair takes four bytes
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Parse a single sensor hierarchy in the {@link SensorHierarchyBinaryFormat} from a stream. The
+   * stream is closed afterwards.
+   *
+   * @param input The stream to read from.
+   * @return The sensor hierarchy.
+   * @throws SensorHierarchyTooLargeException If the stream is larger than the maximum size.
+   * @throws InvalidSensorHierarchyException If the stream does not contain a valid hierarchy or
+   *         the hierarchy exceeds the maximum depth or number of sensors.
+   * @throws IOException If reading from the stream fails.
+   */
+  public SensorRegistry parseBinary(final InputStream input) throws IOException {
+    try (InputStream limitedInput =
+        new BufferedInputStream(new LimitedInputStream(input, this.maxBytes))) {
+      final SensorRegistry hierarchy =
+          SensorHierarchyBinaryFormat.decode(limitedInput, this.maxDepth, this.maxSensors);
+      if (limitedInput.read() >= 0) {
+        throw new InvalidSensorHierarchyException("Unexpected content after sensor hierarchy.");
+      }
+      return hierarchy;
+    }
+  }
+
+  /**
+   * Parse a JSON array of sensor hierarchies from a UTF-8 encoded stream. The stream is closed
+   * afterwards. The maximum size applies to the entire stream, whereas the maximum depth and number
+   * of sensors apply to each hierarchy.
+   *
+   * @param input The stream to read from.
+   * @return The sensor hierarchies in the order of the array.
+   * @throws SensorHierarchyTooLargeException If the stream is larger than the maximum size.
+   * @throws InvalidSensorHierarchyException If the stream does not contain an array of valid
+   *         hierarchies or a hierarchy exceeds the maximum depth or number of sensors.
+   * @throws IOException If reading from the stream fails.
+   */
+  public List<SensorRegistry> parseArray(final InputStream input) throws IOException {
+    try (JsonReader reader = new JsonReader(this.newReader(input))) {
+      final List<SensorRegistry> hierarchies = new ArrayList<>();
+      reader.beginArray();
+      while (reader.hasNext()) {
+        hierarchies.add(this.readHierarchy(reader));
+      }
+      reader.endArray();
+      expectEnd(reader);
+      return hierarchies;
+    } catch (final MalformedJsonException | EOFException | IllegalStateException e) {
+      throw new InvalidSensorHierarchyException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Create a reader for a UTF-8 encoded stream, which fails as soon as more than the maximum size
+   * is read from the stream. It allows other JSON documents to be read incrementally with the same
+   * limit as sensor hierarchies.
+   *
+   * @param input The stream to read from.
+   * @return The reader, throwing a {@link SensorHierarchyTooLargeException} once the stream
+   *         exceeds the maximum size.
+   */
+  public Reader newReader(final InputStream input) {
+    return new InputStreamReader(new LimitedInputStream(input, this.maxBytes),
+        StandardCharsets.UTF_8);
+  }
+
+  private SensorRegistry parse(final Reader input) throws IOException {
+    try (JsonReader reader = new JsonReader(input)) {
+      final SensorRegistry hierarchy = this.readHierarchy(reader);
+      expectEnd(reader);
+      return hierarchy;
+    } catch (final MalformedJsonException | EOFException | IllegalStateException e) {
+      throw new InvalidSensorHierarchyException(e.getMessage(), e);
+    }
+  }
+
+  private static void expectEnd(final JsonReader reader) throws IOException {
+    if (reader.peek() != JsonToken.END_DOCUMENT) {
+      throw new InvalidSensorHierarchyException("Unexpected content after sensor hierarchy.");
+    }
+  }
+
+  private SensorRegistry readHierarchy(final JsonReader reader) throws IOException {
+    final ParsedSensor topLevelSensor = this.readSensor(reader, 0, new int[] {0});
+    final MutableSensorRegistry hierarchy =
+        new MutableSensorRegistry(topLevelSensor.identifier, topLevelSensor.name);
+    addChildren(hierarchy.getTopLevelSensor(), topLevelSensor);
+    return hierarchy;
+  }
+
+  private ParsedSensor readSensor(final JsonReader reader, final int depth,
+      final int[] sensorCount) throws IOException {
+    if (++sensorCount[0] > this.maxSensors) {
+      throw new InvalidSensorHierarchyException(
+          "Sensor hierarchy contains more than " + this.maxSensors + " sensors.");
+    }
+    final ParsedSensor sensor = new ParsedSensor();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case IDENTIFIER_FIELD:
+          sensor.identifier = reader.nextString();
+          break;
+        case NAME_FIELD:
+          sensor.name = reader.nextString();
+          break;
+        case CHILDREN_FIELD:
+          if (depth >= this.maxDepth) {
+            throw new InvalidSensorHierarchyException(
+                "Sensor hierarchy is deeper than " + this.maxDepth + " levels.");
+          }
+          sensor.children = new ArrayList<>();
+          reader.beginArray();
+          while (reader.hasNext()) {
+            sensor.children.add(this.readSensor(reader, depth + 1, sensorCount));
+          }
+          reader.endArray();
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+    if (sensor.identifier == null || sensor.name == null) {
+      throw new InvalidSensorHierarchyException("Sensor without identifier or name.");
+    }
+    return sensor;
+  }
+
+  private static void addChildren(final MutableAggregatedSensor sensor,
+      final ParsedSensor parsedSensor) {
+    for (final ParsedSensor child : parsedSensor.children) {
+      if (child.children == null) {
+        sensor.addChildMachineSensor(child.identifier, child.name);
+      } else {
+        addChildren(sensor.addChildAggregatedSensor(child.identifier, child.name), child);
+      }
+    }
+  }
+
+  /**
+   * A sensor as read from the document. It is converted into a sensor of a registry only after it
+   * has been read completely, since its identifier and name may succeed its children.
+   */
+  private static final class ParsedSensor {
+    private String identifier;
+    private String name;
+    private List<ParsedSensor> children; // null for machine sensors
+  }
+
+  /**
+   * Stream counting the bytes read from another stream and failing as soon as their number exceeds
+   * a maximum.
+   */
+  private static final class LimitedInputStream extends FilterInputStream {
+
+    private final long maxBytes;
+    private long bytesRead;
+
+    private LimitedInputStream(final InputStream input, final long maxBytes) {
+      super(input);
+      this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int result = super.read();
+      if (result >= 0) {
+        this.count(1);
+      }
+      return result;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+      final int result = super.read(buffer, offset, length);
+      if (result > 0) {
+        this.count(result);
+      }
+      return result;
+    }
+
+    @Override
+    public long skip(final long length) throws IOException {
+      final long result = super.skip(length);
+      this.count(result);
+      return result;
+    }
+
+    private void count(final long bytes) {
+      this.bytesRead += bytes;
+      if (this.bytesRead > this.maxBytes) {
+        throw new SensorHierarchyTooLargeException(this.maxBytes);
+      }
+    }
+
+  }
+
+  /**
+   * Thrown if a document of sensor hierarchies exceeds the maximum size.
+   */
+  public static class SensorHierarchyTooLargeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SensorHierarchyTooLargeException(final long maxBytes) {
+      super("Sensor hierarchy document exceeds the maximum size of " + maxBytes + " bytes.");
+    }
+
+  }
+
+  /**
+   * Thrown if a document is no valid sensor hierarchy or a hierarchy exceeds the maximum depth or
+   * number of sensors.
+   */
+  public static class InvalidSensorHierarchyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidSensorHierarchyException(final String message) {
+      super(message);
+    }
+
+    public InvalidSensorHierarchyException(final String message, final Throwable cause) {
+      super(message, cause);
+    }
+
+  }
+
+}
@@ -0,0 +1,97 @@
+package titan.ccp.configuration.api.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import titan.ccp.model.sensorregistry.AggregatedSensor;
+import titan.ccp.model.sensorregistry.Sensor;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Class for the validation of sensor hierarchies.
+ */
+public final class SensorHierarchyValidationUtils {
+
+  public static final String PATH_SEPARATOR = "/";
+
+  private SensorHierarchyValidationUtils() {
+
+  }
+
+  /**
+   * Find all identifiers that are used by more than one sensor within a hierarchy. The hierarchy is
+   * traversed only once.
+   *
+   * @param hierarchy The hierarchy.
+   * @return A map from each duplicate identifier to the paths of all sensors using it, in the order
+   *         of their first occurrence. The path of a sensor consists of the identifiers of its
+   *         ancestors and itself, separated by {@value #PATH_SEPARATOR}.
+   */
+  public static Map<String, List<String>> findDuplicateIdentifiers(
+      final SensorRegistry hierarchy) {
+    final Map<String, Sensor> firstOccurrences = new HashMap<>();
+    final Map<String, List<String>> duplicates = new LinkedHashMap<>();
+    for (final Sensor sensor : hierarchy.flatten()) {
+      final Sensor firstOccurrence = firstOccurrences.putIfAbsent(sensor.getIdentifier(), sensor);
+      if (firstOccurrence != null) {
+        duplicates
+            .computeIfAbsent(sensor.getIdentifier(), identifier -> {
+              final List<String> paths = new ArrayList<>(2);
+              paths.add(getPath(firstOccurrence));
+              return paths;
+            })
+            .add(getPath(sensor));
+      }
+    }
+    return duplicates;
+  }
+
+  /**
+   * Find the paths of all sensors using some identifiers within a hierarchy, e.g., to report where
+   * colliding identifiers are used. The hierarchy is traversed only once.
+   *
+   * @param hierarchy The hierarchy.
+   * @param identifiers The identifiers to find.
+   * @return A map from each identifier to the paths of all sensors using it, in the order of the
+   *         identifiers. Identifiers not used within the hierarchy are mapped to an empty list.
+   */
+  public static Map<String, List<String>> findPaths(final SensorRegistry hierarchy,
+      final Collection<String> identifiers) {
+    final Map<String, List<String>> paths = new LinkedHashMap<>();
+    for (final String identifier : identifiers) {
+      paths.put(identifier, new ArrayList<>(1)); // NOPMD
+    }
+    for (final Sensor sensor : hierarchy.flatten()) {
+      final List<String> sensorPaths = paths.get(sensor.getIdentifier());
+      if (sensorPaths != null) {
+        sensorPaths.add(getPath(sensor));
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Get the path of a sensor within its hierarchy.
+   *
+   * @param sensor The sensor.
+   * @return The identifiers of the sensor's ancestors and the sensor itself, separated by
+   *         {@value #PATH_SEPARATOR}.
+   */
+  public static String getPath(final Sensor sensor) {
+    final Deque<String> identifiers = new ArrayDeque<>();
+    identifiers.addFirst(sensor.getIdentifier());
+    Optional<AggregatedSensor> parent = sensor.getParent();
+    while (parent.isPresent()) {
+      identifiers.addFirst(parent.get().getIdentifier());
+      parent = parent.get().getParent();
+    }
+    return String.join(PATH_SEPARATOR, identifiers);
+  }
+
+}
@@ -0,0 +1,73 @@
+package titan.ccp.configuration.api.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import titan.ccp.configuration.api.util.jsondeserialization.SensorSubtreeType;
+import titan.ccp.configuration.api.util.jsondeserialization.SensorType;
+import titan.ccp.model.sensorregistry.AggregatedSensor;
+import titan.ccp.model.sensorregistry.Sensor;
+
+/**
+ * Class for extracting the subtree of a single sensor from a sensor hierarchy, so that clients
+ * interested in only a part of a hierarchy do not have to request the entire one.
+ */
+public final class SensorSubtreeUtils {
+
+  /**
+   * Depth for requesting the entire subtree of a sensor.
+   */
+  public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+  private SensorSubtreeUtils() {
+
+  }
+
+  /**
+   * Build the subtree of a sensor together with the path of its ancestors.
+   *
+   * @param sensor The sensor.
+   * @param maxDepth The maximum depth of the subtree relative to the sensor. For a depth of 0, only
+   *        the sensor itself is contained, for a depth of 1 also its children, and so on.
+   * @return The subtree and the ancestor path of the sensor.
+   */
+  public static SensorSubtreeType toSubtree(final Sensor sensor, final int maxDepth) {
+    return new SensorSubtreeType(getAncestors(sensor), toSensorType(sensor, maxDepth));
+  }
+
+  /**
+   * Get the ancestors of a sensor, without their children.
+   *
+   * @param sensor The sensor.
+   * @return The ancestors of the sensor, starting at the top level sensor and ending at the
+   *         sensor's parent.
+   */
+  private static List<SensorType> getAncestors(final Sensor sensor) {
+    final Deque<SensorType> ancestors = new ArrayDeque<>();
+    Optional<AggregatedSensor> parent = sensor.getParent();
+    while (parent.isPresent()) {
+      ancestors.addFirst(new SensorType( // NOPMD
+          parent.get().getIdentifier(), parent.get().getName(), null, null));
+      parent = parent.get().getParent();
+    }
+    return new ArrayList<>(ancestors);
+  }
+
+  private static SensorType toSensorType(final Sensor sensor, final int remainingDepth) {
+    if (!(sensor instanceof AggregatedSensor)) {
+      return new SensorType(sensor.getIdentifier(), sensor.getName(), null, null);
+    }
+    final AggregatedSensor aggregatedSensor = (AggregatedSensor) sensor;
+    if (remainingDepth <= 0 && !aggregatedSensor.getChildren().isEmpty()) {
+      return new SensorType(sensor.getIdentifier(), sensor.getName(), null, true);
+    }
+    final List<SensorType> children = new ArrayList<>(aggregatedSensor.getChildren().size());
+    for (final Sensor child : aggregatedSensor.getChildren()) {
+      children.add(toSensorType(child, remainingDepth - 1));
+    }
+    return new SensorType(sensor.getIdentifier(), sensor.getName(), children, null);
+  }
+
+}
@@ -0,0 +1,20 @@
+package titan.ccp.configuration.api.util.jsondeserialization;
+
+/**
+ * Class for automatic GSON serialization of the statistics of the sensor hierarchy cache.
+ */
+@SuppressWarnings("PMD")
+public class CacheStatisticsType {
+  private final long size;
+  private final long hits;
+  private final long misses;
+  private final long evictions;
+
+  public CacheStatisticsType(final long size, final long hits, final long misses,
+      final long evictions) {
+    this.size = size;
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+  }
+}
@@ -1,15 +1,23 @@
 package titan.ccp.configuration.api.util.jsondeserialization;
 
 import java.util.List;
+import java.util.Map;
 
 /**
- * Class for automatic GSON deserialization for colliding sensor identifiers.
+ * Class for automatic GSON deserialization for colliding sensor identifiers. Optionally, the paths
+ * of the sensors using each colliding identifier within the submitted hierarchy are included.
  */
 @SuppressWarnings("PMD")
 public class CollisionsType {
   private final List<String> collisions;
+  private final Map<String, List<String>> paths;
 
   public CollisionsType(final List<String> collisions) {
+    this(collisions, null);
+  }
+
+  public CollisionsType(final List<String> collisions, final Map<String, List<String>> paths) {
     this.collisions = collisions;
+    this.paths = paths;
   }
 }
@@ -0,0 +1,17 @@
+package titan.ccp.configuration.api.util.jsondeserialization;
+
+import java.util.List;
+
+/**
+ * Class for automatic GSON deserialization for the result of deleting multiple sensor hierarchies.
+ */
+@SuppressWarnings("PMD")
+public class DeletedHierarchiesType {
+  private final List<String> deleted;
+  private final List<String> notFound;
+
+  public DeletedHierarchiesType(final List<String> deleted, final List<String> notFound) {
+    this.deleted = deleted;
+    this.notFound = notFound;
+  }
+}
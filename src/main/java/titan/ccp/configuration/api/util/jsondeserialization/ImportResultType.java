@@ -0,0 +1,39 @@
+package titan.ccp.configuration.api.util.jsondeserialization;
+
+import java.util.List;
+
+/**
+ * Class for automatic GSON deserialization for the result of importing a single sensor hierarchy.
+ * The colliding sensor identifiers are absent if the hierarchy was created. The error and the
+ * number of the line, starting at 1, are only present if a line of newline delimited JSON could not
+ * be parsed as hierarchy.
+ */
+@SuppressWarnings("PMD")
+public class ImportResultType {
+  private final String identifier;
+  private final boolean created;
+  private final List<String> collisions;
+  private final String error;
+  private final Integer line;
+
+  public ImportResultType(final String identifier, final boolean created,
+      final List<String> collisions) {
+    this(identifier, created, collisions, null, null);
+  }
+
+  /**
+   * Create a new result of a line that could not be parsed as sensor hierarchy.
+   */
+  public ImportResultType(final String error, final int line) {
+    this(null, false, null, error, line);
+  }
+
+  private ImportResultType(final String identifier, final boolean created,
+      final List<String> collisions, final String error, final Integer line) {
+    this.identifier = identifier;
+    this.created = created;
+    this.collisions = collisions;
+    this.error = error;
+    this.line = line;
+  }
+}
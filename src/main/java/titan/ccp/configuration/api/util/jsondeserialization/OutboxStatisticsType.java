@@ -0,0 +1,17 @@
+package titan.ccp.configuration.api.util.jsondeserialization;
+
+/**
+ * Class for automatic GSON serialization of the statistics of the event outbox.
+ */
+@SuppressWarnings("PMD")
+public class OutboxStatisticsType {
+  private final long pending;
+  private final long published;
+  private final long lagMs;
+
+  public OutboxStatisticsType(final long pending, final long published, final long lagMs) {
+    this.pending = pending;
+    this.published = published;
+    this.lagMs = lagMs;
+  }
+}
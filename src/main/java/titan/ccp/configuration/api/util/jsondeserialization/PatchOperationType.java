@@ -0,0 +1,49 @@
+package titan.ccp.configuration.api.util.jsondeserialization;
+
+/**
+ * Class for automatic GSON deserialization for a single operation of a patch of a sensor
+ * hierarchy. Depending on the operation, only some of the fields are required:
+ * <ul>
+ * <li>{@code add}: identifier, name, parent and, for aggregated sensors, aggregated</li>
+ * <li>{@code move}: identifier and parent</li>
+ * <li>{@code remove}: identifier</li>
+ * <li>{@code rename}: identifier and name</li>
+ * </ul>
+ */
+@SuppressWarnings("PMD")
+public class PatchOperationType {
+  private final String op;
+  private final String identifier;
+  private final String name;
+  private final String parent;
+  private final boolean aggregated;
+
+  public PatchOperationType(final String op, final String identifier, final String name,
+      final String parent, final boolean aggregated) {
+    this.op = op;
+    this.identifier = identifier;
+    this.name = name;
+    this.parent = parent;
+    this.aggregated = aggregated;
+  }
+
+  public String getOp() {
+    return this.op;
+  }
+
+  public String getIdentifier() {
+    return this.identifier;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public String getParent() {
+    return this.parent;
+  }
+
+  public boolean isAggregated() {
+    return this.aggregated;
+  }
+}
@@ -0,0 +1,18 @@
+package titan.ccp.configuration.api.util.jsondeserialization;
+
+import java.util.List;
+
+/**
+ * Class for automatic GSON deserialization for the subtree of a sensor together with the path of
+ * its ancestors, starting at the top level sensor.
+ */
+@SuppressWarnings("PMD")
+public class SensorSubtreeType {
+  private final List<SensorType> path;
+  private final SensorType sensor;
+
+  public SensorSubtreeType(final List<SensorType> path, final SensorType sensor) {
+    this.path = path;
+    this.sensor = sensor;
+  }
+}
@@ -0,0 +1,24 @@
+package titan.ccp.configuration.api.util.jsondeserialization;
+
+import java.util.List;
+
+/**
+ * Class for automatic GSON deserialization for a sensor and, if requested, its descendants. The
+ * children are absent for machine sensors and for aggregated sensors whose children are not
+ * requested. In the latter case, the sensor is marked as truncated.
+ */
+@SuppressWarnings("PMD")
+public class SensorType {
+  private final String identifier;
+  private final String name;
+  private final List<SensorType> children;
+  private final Boolean truncated;
+
+  public SensorType(final String identifier, final String name, final List<SensorType> children,
+      final Boolean truncated) {
+    this.identifier = identifier;
+    this.name = name;
+    this.children = children;
+    this.truncated = truncated;
+  }
+}
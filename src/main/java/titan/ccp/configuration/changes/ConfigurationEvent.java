@@ -0,0 +1,96 @@
+package titan.ccp.configuration.changes;
+
+import java.util.Optional;
+import titan.ccp.configuration.api.util.SensorHierarchyBinaryFormat;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * An event to be published by the sensor management, consisting of its type, the identifier of the
+ * top level sensor of the affected hierarchy and its serialized payload. The payload is either
+ * serialized as JSON or, for events containing an entire hierarchy, optionally in the
+ * {@link SensorHierarchyBinaryFormat}, so that it does not have to be converted when published.
+ */
+public final class ConfigurationEvent {
+
+  private final ConfigurationEventType type;
+  private final String key;
+  private final String payload;
+  private final byte[] binaryPayload;
+
+  /**
+   * Create a new event with a JSON payload.
+   */
+  public ConfigurationEvent(final ConfigurationEventType type, final String key,
+      final String payload) {
+    this(type, key, payload, null);
+  }
+
+  /**
+   * Create a new event with either a JSON or a binary payload.
+   *
+   * @param payload The JSON payload or null, if the event has a binary payload.
+   * @param binaryPayload The payload in the {@link SensorHierarchyBinaryFormat} or null, if the
+   *        event has a JSON payload.
+   */
+  public ConfigurationEvent(final ConfigurationEventType type, final String key,
+      final String payload, final byte[] binaryPayload) { // NOPMD array is not modified
+    this.type = type;
+    this.key = key;
+    this.payload = payload;
+    this.binaryPayload = binaryPayload;
+  }
+
+  /**
+   * Create an event containing an entire sensor hierarchy as JSON.
+   */
+  public static ConfigurationEvent ofRegistry(final ConfigurationEventType type,
+      final SensorRegistry hierarchy) {
+    return ofRegistry(type, hierarchy, false);
+  }
+
+  /**
+   * Create an event containing an entire sensor hierarchy.
+   *
+   * @param binary Whether the hierarchy is encoded in the {@link SensorHierarchyBinaryFormat}
+   *        instead of JSON.
+   */
+  public static ConfigurationEvent ofRegistry(final ConfigurationEventType type,
+      final SensorRegistry hierarchy, final boolean binary) {
+    final String key = hierarchy.getTopLevelSensor().getIdentifier();
+    return binary
+        ? new ConfigurationEvent(type, key, null, SensorHierarchyBinaryFormat.encode(hierarchy))
+        : new ConfigurationEvent(type, key, hierarchy.toJson());
+  }
+
+  /**
+   * Create an event containing a batch of sensor changes.
+   */
+  public static ConfigurationEvent ofSensorChanges(final SensorChanges changes) {
+    return new ConfigurationEvent(
+        ConfigurationEventType.SENSOR_CHANGES, changes.getTopLevelSensor(), changes.toJson());
+  }
+
+  public ConfigurationEventType getType() {
+    return this.type;
+  }
+
+  public String getKey() {
+    return this.key;
+  }
+
+  /**
+   * Get the JSON payload of this event, which is null if the event has a binary payload.
+   */
+  public String getPayload() {
+    return this.payload;
+  }
+
+  /**
+   * Get the payload of this event in the {@link SensorHierarchyBinaryFormat}, if it has one. The
+   * returned array must not be modified.
+   */
+  public Optional<byte[]> getBinaryPayload() {
+    return Optional.ofNullable(this.binaryPayload);
+  }
+
+}
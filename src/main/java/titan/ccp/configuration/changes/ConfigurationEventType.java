@@ -0,0 +1,19 @@
+package titan.ccp.configuration.changes;
+
+/**
+ * Types of events published by the sensor management.
+ */
+public enum ConfigurationEventType {
+  /**
+   * A sensor hierarchy has changed. The event contains the entire hierarchy.
+   */
+  SENSOR_REGISTRY_CHANGED,
+  /**
+   * Current state of a sensor hierarchy. The event contains the entire hierarchy.
+   */
+  SENSOR_REGISTRY_STATUS,
+  /**
+   * A sensor hierarchy has changed. The event contains a batch of changes of individual sensors.
+   */
+  SENSOR_CHANGES
+}
@@ -0,0 +1,82 @@
+package titan.ccp.configuration.changes;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.CompletableFuture;
+import titan.ccp.configuration.api.util.MetricsUtils;
+import titan.ccp.configuration.events.Event;
+
+/**
+ * Dispatches {@link ConfigurationEvent}s to the publisher responsible for their type. The latency
+ * of publishing, from dispatching an event until it is acknowledged or failed, is recorded per
+ * event type and result.
+ */
+public class EventDispatcher {
+
+  private static final String PUBLISH_TIMER = "events.publish";
+
+  private final RegistryEventPublisher registryEventPublisher;
+
+  private final SensorChangesPublisher sensorChangesPublisher;
+
+  private final MeterRegistry meterRegistry;
+
+  /**
+   * Create a new dispatcher.
+   */
+  public EventDispatcher(final RegistryEventPublisher registryEventPublisher,
+      final SensorChangesPublisher sensorChangesPublisher, final MeterRegistry meterRegistry) {
+    this.registryEventPublisher = registryEventPublisher;
+    this.sensorChangesPublisher = sensorChangesPublisher;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Publish an event.
+   *
+   * @param event The event.
+   * @return A future completed as soon as the event is acknowledged or completed exceptionally if
+   *         the event could not be published.
+   */
+  public CompletableFuture<Void> dispatch(final ConfigurationEvent event) {
+    final Timer.Sample sample = Timer.start(this.meterRegistry);
+    final CompletableFuture<Void> result = this.publish(event);
+    result.whenComplete((value, error) -> sample.stop(MetricsUtils.latencyTimer(
+        this.meterRegistry, PUBLISH_TIMER,
+        "type", event.getType().name(),
+        "result", error == null ? "success" : "failure")));
+    return result;
+  }
+
+  private CompletableFuture<Void> publish(final ConfigurationEvent event) {
+    switch (event.getType()) {
+      case SENSOR_REGISTRY_CHANGED:
+        return this.registryEventPublisher.publish(
+            Event.SENSOR_REGISTRY_CHANGED, event);
+      case SENSOR_REGISTRY_STATUS:
+        return this.registryEventPublisher.publish(
+            Event.SENSOR_REGISTRY_STATUS, event);
+      case SENSOR_CHANGES:
+        return this.sensorChangesPublisher.publish(event.getKey(), event.getPayload());
+      default:
+        throw new IllegalArgumentException("Unknown event type: " + event.getType());
+    }
+  }
+
+  /**
+   * Block until all events dispatched so far are sent.
+   */
+  public void flush() {
+    this.registryEventPublisher.flush();
+    this.sensorChangesPublisher.flush();
+  }
+
+  /**
+   * Close the publishers.
+   */
+  public void close() {
+    this.registryEventPublisher.close();
+    this.sensorChangesPublisher.close();
+  }
+
+}
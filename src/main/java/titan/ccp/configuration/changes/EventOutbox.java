@@ -0,0 +1,413 @@
+package titan.ccp.configuration.changes;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import titan.ccp.configuration.api.IndexReconciler.Index;
+
+/**
+ * Transactional outbox for {@link ConfigurationEvent}s. Events are stored in a MongoDB collection
+ * within the same transaction as the changes causing them. A background relay periodically reads
+ * the stored events in batches, publishes them via an {@link EventDispatcher} and removes them
+ * afterwards. Hence, events are neither lost if the service crashes after committing a change nor
+ * does publishing them delay the request that caused them.
+ *
+ * <p>
+ * Each event is stamped with a sequence number per key, i.e., per hierarchy, which is allocated
+ * from a counter document within the transaction storing the event. As transactions incrementing
+ * the same counter conflict, the sequence numbers of a key follow the order in which the
+ * transactions are committed, regardless of the instance or the time they were started. The relay
+ * publishes the events of each key in the order of their sequence numbers.
+ * </p>
+ *
+ * <p>
+ * Events are only removed after their publication is acknowledged. If publishing an event fails,
+ * the event and all events succeeding it are kept and published again on the next run of the relay,
+ * so that events are published at least once and in order. As multiple instances of the service
+ * share the outbox, a relay only publishes events while it holds a lease stored in a separate
+ * collection, so that events are not published once per instance.
+ * </p>
+ */
+public class EventOutbox {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EventOutbox.class);
+
+  private static final String ID_FIELD = "_id";
+  private static final String TYPE_FIELD = "type";
+  private static final String KEY_FIELD = "key";
+  private static final String PAYLOAD_FIELD = "payload";
+  private static final String BINARY_PAYLOAD_FIELD = "binaryPayload";
+  private static final String CREATED_FIELD = "created";
+  private static final String SEQUENCE_FIELD = "sequence";
+  private static final String LEASE_ID = "relay";
+  private static final String OWNER_FIELD = "owner";
+  private static final String EXPIRES_FIELD = "expires";
+  private static final int DUPLICATE_KEY_ERROR = 11_000;
+
+  private final MongoCollection<Document> outbox;
+
+  private final MongoCollection<Document> leases;
+
+  private final MongoCollection<Document> sequences;
+
+  private final EventDispatcher eventDispatcher;
+
+  private final int batchSize;
+
+  private final long intervalMs;
+
+  private final long leaseMs;
+
+  private final String owner = UUID.randomUUID().toString();
+
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      runnable -> {
+        final Thread thread = new Thread(runnable, "event-outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final AtomicLong publishedEvents = new AtomicLong();
+
+  /**
+   * Create a new outbox.
+   *
+   * @param outbox The collection storing the events.
+   * @param leases The collection storing the lease of the relay.
+   * @param sequences The collection storing the last sequence number allocated per key.
+   * @param eventDispatcher The dispatcher used to publish the events.
+   * @param batchSize The maximum number of events published at once.
+   * @param intervalMs The delay between two runs of the relay in milliseconds.
+   * @param leaseMs The duration of the relay's lease in milliseconds. It has to exceed the time
+   *        required for publishing a batch of events.
+   */
+  public EventOutbox(final MongoCollection<Document> outbox,
+      final MongoCollection<Document> leases, final MongoCollection<Document> sequences,
+      final EventDispatcher eventDispatcher, final int batchSize, final long intervalMs,
+      final long leaseMs) {
+    this.outbox = outbox;
+    this.leases = leases;
+    this.sequences = sequences;
+    this.eventDispatcher = eventDispatcher;
+    this.batchSize = batchSize;
+    this.intervalMs = intervalMs;
+    this.leaseMs = leaseMs;
+  }
+
+  /**
+   * Indexes of the collection storing the events, which are read in the order of their sequence
+   * numbers per key.
+   */
+  public static List<Index> getIndexes() {
+    return List.of(Index.ascending(false, KEY_FIELD, SEQUENCE_FIELD));
+  }
+
+  /**
+   * Build the filter of the sequence counters of some keys.
+   */
+  static Bson buildSequencesFilter(final Collection<String> keys) {
+    return Filters.in(ID_FIELD, keys);
+  }
+
+  /**
+   * Build the filter of the lease if it can be acquired by a relay, i.e., if it is held by the
+   * relay or has expired.
+   *
+   * @param owner The identifier of the relay.
+   * @param now The current time.
+   * @return The filter.
+   */
+  static Bson buildAcquirableLeaseFilter(final String owner, final Date now) {
+    return Filters.and(
+        Filters.eq(ID_FIELD, LEASE_ID),
+        Filters.or(Filters.eq(OWNER_FIELD, owner), Filters.lt(EXPIRES_FIELD, now)));
+  }
+
+  /**
+   * Build the order in which events are relayed, i.e., by their sequence numbers per key.
+   */
+  static Bson buildRelaySort() {
+    return Sorts.ascending(KEY_FIELD, SEQUENCE_FIELD);
+  }
+
+  /**
+   * Build the filter of some events by their identifiers.
+   */
+  static Bson buildEventsFilter(final Collection<ObjectId> identifiers) {
+    return Filters.in(ID_FIELD, identifiers);
+  }
+
+  /**
+   * Build the order in which events were stored, so that the first event is the oldest one.
+   */
+  static Bson buildLagSort() {
+    return Sorts.ascending(ID_FIELD);
+  }
+
+  /**
+   * Store events in the outbox within a session, i.e., within the session's current transaction.
+   *
+   * @param session The session to store the events in.
+   * @param events The events to store in the order they should be published.
+   */
+  public void add(final ClientSession session, final List<ConfigurationEvent> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+    final Map<String, Long> nextSequences = this.allocateSequences(session, events);
+    final Date created = new Date();
+    final List<Document> documents = events.stream()
+        .map(event -> buildEventDocument(
+            event, nextSequences.merge(event.getKey(), 1L, Long::sum) - 1, created))
+        .collect(Collectors.toList());
+    this.outbox.insertMany(session, documents);
+  }
+
+  /**
+   * Build the document of an event stored in the outbox. Binary payloads are stored as they are,
+   * so that they do not have to be encoded again when the event is published.
+   */
+  private static Document buildEventDocument(final ConfigurationEvent event, final long sequence,
+      final Date created) {
+    final Document document = new Document()
+        .append(TYPE_FIELD, event.getType().name())
+        .append(KEY_FIELD, event.getKey())
+        .append(SEQUENCE_FIELD, sequence);
+    event.getBinaryPayload().ifPresentOrElse(
+        payload -> document.append(BINARY_PAYLOAD_FIELD, payload),
+        () -> document.append(PAYLOAD_FIELD, event.getPayload()));
+    return document.append(CREATED_FIELD, created);
+  }
+
+  /**
+   * Allocate sequence numbers for events within a session by incrementing the counters of their
+   * keys by the number of events per key. All counters are incremented with one bulk write and read
+   * back with one query.
+   *
+   * @param session The session to allocate the sequence numbers in.
+   * @param events The events to allocate sequence numbers for.
+   * @return A map from the keys of the events to the first sequence number allocated for the key.
+   */
+  private Map<String, Long> allocateSequences(final ClientSession session,
+      final List<ConfigurationEvent> events) {
+    final Map<String, Long> counts = new LinkedHashMap<>();
+    for (final ConfigurationEvent event : events) {
+      counts.merge(event.getKey(), 1L, Long::sum);
+    }
+    final List<WriteModel<Document>> increments = new ArrayList<>(counts.size());
+    counts.forEach((key, count) -> increments.add(new UpdateOneModel<>( // NOPMD
+        Filters.eq(ID_FIELD, key),
+        Updates.inc(SEQUENCE_FIELD, count),
+        new UpdateOptions().upsert(true))));
+    this.sequences.bulkWrite(session, increments);
+
+    final Map<String, Long> nextSequences = new HashMap<>(counts.size() * 4 / 3 + 1);
+    for (final Document document : this.sequences
+        .find(session, buildSequencesFilter(counts.keySet()))) {
+      final String key = document.getString(ID_FIELD);
+      final long last = ((Number) document.get(SEQUENCE_FIELD)).longValue();
+      nextSequences.put(key, last - counts.get(key) + 1);
+    }
+    return nextSequences;
+  }
+
+  /**
+   * Start relaying events from the outbox.
+   */
+  public void start() {
+    this.executor.scheduleWithFixedDelay(
+        this::relay, 0, this.intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop relaying events from the outbox. Events remaining in the outbox are published on the next
+   * start.
+   */
+  public void stop() {
+    this.executor.shutdown();
+    try {
+      this.executor.awaitTermination(this.intervalMs * 10, TimeUnit.MILLISECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      this.releaseLease();
+    } catch (final MongoException e) {
+      LOGGER.warn("Releasing the lease of the outbox relay failed.", e);
+    }
+  }
+
+  /**
+   * Publish all events currently stored in the outbox, batch by batch, as long as this relay holds
+   * the lease.
+   */
+  void relay() {
+    try {
+      int relayed; // NOPMD redefineable variable
+      do {
+        if (!this.acquireLease()) {
+          return;
+        }
+        relayed = this.relayBatch();
+      } while (relayed == this.batchSize);
+    } catch (final RuntimeException e) { // NOPMD relay must not die
+      LOGGER.error("Relaying events from the outbox failed. Retrying on next run.", e);
+    }
+  }
+
+  /**
+   * Acquire or renew the lease of the relay. The lease is acquired if it does not exist yet, has
+   * expired or is already held by this relay.
+   *
+   * @return Whether this relay holds the lease.
+   */
+  private boolean acquireLease() {
+    final Date now = new Date();
+    try {
+      this.leases.findOneAndUpdate(
+          buildAcquirableLeaseFilter(this.owner, now),
+          Updates.combine(
+              Updates.set(OWNER_FIELD, this.owner),
+              Updates.set(EXPIRES_FIELD, new Date(now.getTime() + this.leaseMs))),
+          new FindOneAndUpdateOptions().upsert(true));
+      return true;
+    } catch (final MongoException e) {
+      // The upsert fails with a duplicate key if the lease is held by another relay
+      if (e.getCode() == DUPLICATE_KEY_ERROR) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  private void releaseLease() {
+    this.leases.updateOne(
+        Filters.and(Filters.eq(ID_FIELD, LEASE_ID), Filters.eq(OWNER_FIELD, this.owner)),
+        Updates.set(EXPIRES_FIELD, new Date(0)));
+  }
+
+  /**
+   * Publish a batch of events, ordered by their keys and sequence numbers, and remove those, whose
+   * publication is acknowledged, from the outbox. If an event is not acknowledged, it is kept
+   * together with all succeeding events.
+   *
+   * @return The number of removed events.
+   */
+  private int relayBatch() {
+    final List<Document> documents = this.outbox
+        .find()
+        .sort(buildRelaySort())
+        .limit(this.batchSize)
+        .into(new ArrayList<>(this.batchSize));
+    if (documents.isEmpty()) {
+      return 0;
+    }
+
+    final List<CompletableFuture<Void>> acknowledgements = new ArrayList<>(documents.size());
+    for (final Document document : documents) {
+      acknowledgements.add(this.eventDispatcher.dispatch(new ConfigurationEvent( // NOPMD
+          ConfigurationEventType.valueOf(document.getString(TYPE_FIELD)),
+          document.getString(KEY_FIELD),
+          document.getString(PAYLOAD_FIELD),
+          getBinaryPayload(document))));
+    }
+    this.eventDispatcher.flush();
+    this.awaitAcknowledgements(acknowledgements);
+
+    final List<ObjectId> identifiers = new ArrayList<>(documents.size());
+    for (int i = 0; i < documents.size(); i++) {
+      final CompletableFuture<Void> acknowledgement = acknowledgements.get(i);
+      if (!acknowledgement.isDone() || acknowledgement.isCompletedExceptionally()) {
+        LOGGER.error("Publishing event {} from the outbox failed. Retrying on next run.",
+            documents.get(i).getObjectId(ID_FIELD),
+            acknowledgement.handle((result, exception) -> exception).getNow(null));
+        break;
+      }
+      identifiers.add(documents.get(i).getObjectId(ID_FIELD));
+    }
+    if (!identifiers.isEmpty()) {
+      this.outbox.deleteMany(buildEventsFilter(identifiers));
+      this.publishedEvents.addAndGet(identifiers.size());
+    }
+    return identifiers.size();
+  }
+
+  /**
+   * Get the binary payload of a stored event, if it has one.
+   */
+  private static byte[] getBinaryPayload(final Document document) {
+    final Binary payload = document.get(BINARY_PAYLOAD_FIELD, Binary.class);
+    return payload == null ? null : payload.getData();
+  }
+
+  /**
+   * Wait until all events of a batch are either acknowledged or failed, but at most for the
+   * duration of the lease.
+   */
+  private void awaitAcknowledgements(final List<CompletableFuture<Void>> acknowledgements) {
+    try {
+      CompletableFuture.allOf(acknowledgements.toArray(new CompletableFuture<?>[0]))
+          .get(this.leaseMs, TimeUnit.MILLISECONDS);
+    } catch (final ExecutionException | TimeoutException e) { // NOPMD
+      // Failed or pending events are handled individually
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Get the number of events that are stored in the outbox, but not published yet. The number is
+   * estimated from the collection's metadata, so that it is obtained without scanning the outbox.
+   */
+  public long getPendingEvents() {
+    return this.outbox.estimatedDocumentCount();
+  }
+
+  /**
+   * Get the number of events published since this outbox was created.
+   */
+  public long getPublishedEvents() {
+    return this.publishedEvents.get();
+  }
+
+  /**
+   * Get the age of the oldest event in the outbox in milliseconds, i.e., the current lag of the
+   * relay. The lag is 0 if the outbox is empty.
+   */
+  public long getLagMs() {
+    final Document oldest = this.outbox.find().sort(buildLagSort()).first();
+    return oldest == null
+        ? 0
+        : Math.max(0, System.currentTimeMillis() - oldest.getDate(CREATED_FIELD).getTime());
+  }
+
+}
@@ -0,0 +1,56 @@
+package titan.ccp.configuration.changes;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import titan.ccp.configuration.events.Event;
+import titan.ccp.configuration.events.EventSerde;
+
+/**
+ * {@link RegistryEventPublisher} that publishes events to a Kafka topic. Records are keyed by the
+ * event type and serialized the same way as by the {@code KafkaPublisher} of the common library,
+ * so that existing consumers of the topic are not affected. Optionally, hierarchies are published
+ * in the more compact {@link titan.ccp.configuration.api.util.SensorHierarchyBinaryFormat}
+ * instead of JSON.
+ */
+public class KafkaRegistryEventPublisher implements RegistryEventPublisher {
+
+  private final String topic;
+
+  private final Producer<Event, ConfigurationEvent> producer;
+
+  /**
+   * Create a new publisher with additional producer properties, e.g., for compression.
+   *
+   * @param binary Whether hierarchies are published in the binary format instead of JSON.
+   */
+  public KafkaRegistryEventPublisher(final String bootstrapServers, final String topic,
+      final Properties defaultProperties, final boolean binary) {
+    this.topic = topic;
+
+    final Properties properties = new Properties();
+    properties.putAll(defaultProperties);
+    properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+    this.producer = new KafkaProducer<>(properties, EventSerde.serializer(),
+        new SensorHierarchySerializer(binary));
+  }
+
+  @Override
+  public CompletableFuture<Void> publish(final Event event, final ConfigurationEvent hierarchy) {
+    return KafkaSends.send(this.producer, new ProducerRecord<>(this.topic, event, hierarchy));
+  }
+
+  @Override
+  public void flush() {
+    this.producer.flush();
+  }
+
+  @Override
+  public void close() {
+    this.producer.close();
+  }
+
+}
@@ -0,0 +1,40 @@
+package titan.ccp.configuration.changes;
+
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+/**
+ * Utility functions for sending records with Kafka producers.
+ */
+final class KafkaSends {
+
+  private KafkaSends() {}
+
+  /**
+   * Send a record and get a future completed as soon as the record is acknowledged by the broker.
+   * Errors are reported by completing the future exceptionally instead of throwing them, regardless
+   * of whether they occur while enqueuing or while sending the record.
+   *
+   * @param producer The producer to send the record with.
+   * @param record The record.
+   * @return The future of the acknowledgement.
+   */
+  static <K, V> CompletableFuture<Void> send(final Producer<K, V> producer,
+      final ProducerRecord<K, V> record) {
+    final CompletableFuture<Void> acknowledgement = new CompletableFuture<>();
+    try {
+      producer.send(record, (metadata, exception) -> {
+        if (exception == null) {
+          acknowledgement.complete(null);
+        } else {
+          acknowledgement.completeExceptionally(exception);
+        }
+      });
+    } catch (final RuntimeException e) { // NOPMD report all errors via the future
+      acknowledgement.completeExceptionally(e);
+    }
+    return acknowledgement;
+  }
+
+}
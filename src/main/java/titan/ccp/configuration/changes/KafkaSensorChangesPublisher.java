@@ -0,0 +1,52 @@
+package titan.ccp.configuration.changes;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+/**
+ * {@link SensorChangesPublisher} that publishes each batch of sensor changes as one JSON record to
+ * a Kafka topic. Records are keyed by the identifier of the hierarchy's top level sensor, so that
+ * all changes of a hierarchy are stored in the same partition and, thus, consumed in order.
+ */
+public class KafkaSensorChangesPublisher implements SensorChangesPublisher {
+
+  private final String topic;
+
+  private final Producer<String, String> producer;
+
+  /**
+   * Create a new publisher with additional producer properties, e.g., for compression.
+   */
+  public KafkaSensorChangesPublisher(final String bootstrapServers, final String topic,
+      final Properties defaultProperties) {
+    this.topic = topic;
+
+    final Properties properties = new Properties();
+    properties.putAll(defaultProperties);
+    properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+    this.producer =
+        new KafkaProducer<>(properties, new StringSerializer(), new StringSerializer());
+  }
+
+  @Override
+  public CompletableFuture<Void> publish(final String topLevelSensor, final String changes) {
+    return KafkaSends.send(this.producer,
+        new ProducerRecord<>(this.topic, topLevelSensor, changes));
+  }
+
+  @Override
+  public void flush() {
+    this.producer.flush();
+  }
+
+  @Override
+  public void close() {
+    this.producer.close();
+  }
+
+}
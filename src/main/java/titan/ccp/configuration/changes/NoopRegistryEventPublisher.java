@@ -0,0 +1,26 @@
+package titan.ccp.configuration.changes;
+
+import java.util.concurrent.CompletableFuture;
+import titan.ccp.configuration.events.Event;
+
+/**
+ * {@link RegistryEventPublisher} that does not publish anything.
+ */
+public class NoopRegistryEventPublisher implements RegistryEventPublisher {
+
+  @Override
+  public CompletableFuture<Void> publish(final Event event, final ConfigurationEvent hierarchy) {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  @Override
+  public void flush() {
+    // Do nothing
+  }
+
+  @Override
+  public void close() {
+    // Do nothing
+  }
+
+}
@@ -0,0 +1,25 @@
+package titan.ccp.configuration.changes;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link SensorChangesPublisher} that does not publish anything.
+ */
+public class NoopSensorChangesPublisher implements SensorChangesPublisher {
+
+  @Override
+  public CompletableFuture<Void> publish(final String topLevelSensor, final String changes) {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  @Override
+  public void flush() {
+    // Do nothing
+  }
+
+  @Override
+  public void close() {
+    // Do nothing
+  }
+
+}
@@ -0,0 +1,34 @@
+package titan.ccp.configuration.changes;
+
+import java.util.concurrent.CompletableFuture;
+import titan.ccp.configuration.events.Event;
+
+/**
+ * Publishes events containing entire sensor hierarchies, such as
+ * {@link Event#SENSOR_REGISTRY_CHANGED}. In contrast to the {@code EventPublisher} of the common
+ * library, the result of publishing an event can be awaited, so that events are only considered
+ * published after they are acknowledged.
+ */
+public interface RegistryEventPublisher {
+
+  /**
+   * Publish an event.
+   *
+   * @param event The type of the event.
+   * @param hierarchy The event containing the sensor hierarchy as JSON or in the binary format.
+   * @return A future completed as soon as the event is acknowledged or completed exceptionally if
+   *         the event could not be published.
+   */
+  CompletableFuture<Void> publish(Event event, ConfigurationEvent hierarchy);
+
+  /**
+   * Block until all events published so far are sent.
+   */
+  void flush();
+
+  /**
+   * Close this publisher and release its resources.
+   */
+  void close();
+
+}
@@ -0,0 +1,50 @@
+package titan.ccp.configuration.changes;
+
+import titan.ccp.configuration.api.util.EventType;
+
+/**
+ * Change of a single sensor within a sensor hierarchy, consisting of the sensor's identifier, the
+ * type of change, the sensor's name and the identifier of the sensor's parent. As each sensor has
+ * at most one parent, the parent is a single identifier, which is absent for the top level sensor.
+ * Name and parent are the ones after the change, except for deleted sensors.
+ */
+@SuppressWarnings("PMD")
+public class SensorChange {
+  private final String sensor;
+  private final EventType type;
+  private final String name;
+  private final String parent;
+
+  /**
+   * Create a new sensor change.
+   *
+   * @param name The name of the sensor.
+   * @param parent The identifier of the sensor's parent or null for the top level sensor.
+   */
+  public SensorChange(final String sensor, final EventType type, final String name,
+      final String parent) {
+    this.sensor = sensor;
+    this.type = type;
+    this.name = name;
+    this.parent = parent;
+  }
+
+  public String getSensor() {
+    return this.sensor;
+  }
+
+  public EventType getType() {
+    return this.type;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Get the identifier of the sensor's parent or null for the top level sensor.
+   */
+  public String getParent() {
+    return this.parent;
+  }
+}
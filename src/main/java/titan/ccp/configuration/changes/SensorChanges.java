@@ -0,0 +1,37 @@
+package titan.ccp.configuration.changes;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.util.List;
+
+/**
+ * Batch of all sensor changes caused by one modification of a sensor hierarchy.
+ */
+public class SensorChanges {
+
+  private static final Gson GSON = new GsonBuilder().create();
+
+  private final String topLevelSensor;
+  private final List<SensorChange> changes;
+
+  public SensorChanges(final String topLevelSensor, final List<SensorChange> changes) {
+    this.topLevelSensor = topLevelSensor;
+    this.changes = changes;
+  }
+
+  public String getTopLevelSensor() {
+    return this.topLevelSensor;
+  }
+
+  public List<SensorChange> getChanges() {
+    return this.changes;
+  }
+
+  /**
+   * Serialize this batch to its JSON representation.
+   */
+  public String toJson() {
+    return GSON.toJson(this);
+  }
+
+}
@@ -0,0 +1,30 @@
+package titan.ccp.configuration.changes;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes batches of sensor changes.
+ */
+public interface SensorChangesPublisher {
+
+  /**
+   * Publish a batch of sensor changes, which is already serialized.
+   *
+   * @param topLevelSensor The identifier of the top level sensor of the changed hierarchy.
+   * @param changes The JSON representation of the {@link SensorChanges}.
+   * @return A future completed as soon as the batch is acknowledged or completed exceptionally if
+   *         the batch could not be published.
+   */
+  CompletableFuture<Void> publish(String topLevelSensor, String changes);
+
+  /**
+   * Block until all batches published so far are sent.
+   */
+  void flush();
+
+  /**
+   * Close this publisher and release its resources.
+   */
+  void close();
+
+}
@@ -0,0 +1,53 @@
+package titan.ccp.configuration.changes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.apache.kafka.common.serialization.Serializer;
+import titan.ccp.configuration.api.util.SensorHierarchyBinaryFormat;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Kafka {@link Serializer} writing the sensor hierarchy of a {@link ConfigurationEvent} either as
+ * JSON or in the {@link SensorHierarchyBinaryFormat}. Payloads already in the requested format are
+ * written as they are. Others, e.g., of events stored in the outbox before the format was changed,
+ * are converted.
+ */
+public class SensorHierarchySerializer implements Serializer<ConfigurationEvent> {
+
+  private final boolean binary;
+
+  /**
+   * Create a new serializer.
+   *
+   * @param binary Whether hierarchies are written in the binary format instead of JSON.
+   */
+  public SensorHierarchySerializer(final boolean binary) {
+    this.binary = binary;
+  }
+
+  @Override
+  public void configure(final Map<String, ?> configs, final boolean isKey) {
+    // Nothing to configure
+  }
+
+  @Override
+  public byte[] serialize(final String topic, final ConfigurationEvent event) {
+    if (event == null) {
+      return null;
+    }
+    if (this.binary) {
+      return event.getBinaryPayload().orElseGet(() -> SensorHierarchyBinaryFormat.encode(
+          SensorRegistry.fromJson(event.getPayload())));
+    }
+    final String json = event.getPayload() == null
+        ? SensorHierarchyBinaryFormat.decode(event.getBinaryPayload().orElseThrow()).toJson()
+        : event.getPayload();
+    return json.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close() {
+    // Nothing to close
+  }
+
+}
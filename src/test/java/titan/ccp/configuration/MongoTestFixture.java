@@ -0,0 +1,145 @@
+package titan.ccp.configuration;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.Assume;
+import org.junit.rules.ExternalResource;
+import titan.ccp.model.sensorregistry.MutableAggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+
+/**
+ * Shared fixture of tests requiring a MongoDB instance, whose connection URL is passed with the
+ * system property {@value #URL_PROPERTY}. If it is not passed, tests using this fixture are
+ * skipped. Otherwise, each test gets a dedicated, empty database, which is dropped afterwards.
+ *
+ */
+public final class MongoTestFixture extends ExternalResource {
+
+  public static final String URL_PROPERTY = "test.mongodb.url";
+
+  private final String databaseName;
+
+  private String url;
+  private MongoClient client;
+  private MongoDatabase database;
+
+  /**
+   * Create a new fixture.
+   *
+   * @param databaseName The name of the database of the tests, which must not be used otherwise.
+   */
+  public MongoTestFixture(final String databaseName) {
+    super();
+    this.databaseName = databaseName;
+  }
+
+  @Override
+  protected void before() {
+    this.connect();
+  }
+
+  @Override
+  protected void after() {
+    this.close();
+  }
+
+  /**
+   * Connect to the MongoDB and drop the database of the tests, or skip the calling test if no
+   * MongoDB is available. This is only required if the fixture is not used as rule, e.g., if only
+   * some tests of a class require a MongoDB.
+   */
+  public void connect() {
+    this.url = System.getProperty(URL_PROPERTY);
+    Assume.assumeNotNull(this.url);
+    this.client = MongoClients.create(this.url);
+    this.database = this.client.getDatabase(this.databaseName);
+    this.database.drop();
+  }
+
+  /**
+   * Drop the database of the tests and close the connection, if connected.
+   */
+  public void close() {
+    if (this.client != null) {
+      this.database.drop();
+      this.client.close();
+      this.client = null;
+    }
+  }
+
+  public String getUrl() {
+    return this.url;
+  }
+
+  public String getDatabaseName() {
+    return this.databaseName;
+  }
+
+  public MongoClient getClient() {
+    return this.client;
+  }
+
+  public MongoDatabase getDatabase() {
+    return this.database;
+  }
+
+  /**
+   * Assert that a query is served by an index, i.e., the winning plan of the query scans an index
+   * and not the entire collection.
+   *
+   * @param collection The name of the queried collection.
+   * @param filter The filter of the query.
+   * @param sort The sort order of the query or null, if the query is not sorted.
+   */
+  public void assertIndexed(final String collection, final Bson filter, final Bson sort) {
+    final Document find = new Document("find", collection).append("filter", toBson(filter));
+    if (sort != null) {
+      find.append("sort", toBson(sort));
+    }
+    final String winningPlan = this.database.runCommand(new Document("explain", find))
+        .get("queryPlanner", Document.class)
+        .get("winningPlan", Document.class)
+        .toJson();
+    assertTrue(winningPlan, winningPlan.contains("IXSCAN") || winningPlan.contains("IDHACK"));
+    assertFalse(winningPlan, winningPlan.contains("COLLSCAN"));
+  }
+
+  /**
+   * Assert that an unsorted query is served by an index.
+   *
+   * @see #assertIndexed(String, Bson, Bson)
+   */
+  public void assertIndexed(final String collection, final Bson filter) {
+    this.assertIndexed(collection, filter, null);
+  }
+
+  private static BsonDocument toBson(final Bson bson) {
+    return bson.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+  }
+
+  /**
+   * Create a sensor hierarchy of depth three with seven sensors, including a nested and an empty
+   * aggregated sensor as well as a top level sensor whose name contains quotes and non-ASCII
+   * characters.
+   */
+  public static MutableSensorRegistry createHierarchy() {
+    final MutableSensorRegistry hierarchy =
+        new MutableSensorRegistry("root", "Root \"quoted\" \u00e4\u00f6\u00fc");
+    final MutableAggregatedSensor group = hierarchy.getTopLevelSensor()
+        .addChildAggregatedSensor("group", "Group");
+    group.addChildMachineSensor("machine1", "Machine 1");
+    group.addChildMachineSensor("machine2", "Machine 2");
+    group.addChildAggregatedSensor("subgroup", "Subgroup")
+        .addChildMachineSensor("machine3", "Machine 3");
+    hierarchy.getTopLevelSensor().addChildAggregatedSensor("empty", "Empty");
+    return hierarchy;
+  }
+
+}
@@ -0,0 +1,72 @@
+package titan.ccp.configuration.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Optional;
+import org.junit.Test;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+
+/**
+ * Test the entity tags of sensor hierarchies and their comparison with If-None-Match headers.
+ *
+ */
+public class EntityTagTest {
+
+  private static final String TAG = "\"abc\"";
+
+  @Test
+  public void testMatchStrongTag() {
+    assertTrue(RestApiServer.matchesEntityTag(TAG, TAG));
+  }
+
+  @Test
+  public void testMatchWeakTag() {
+    assertTrue(RestApiServer.matchesEntityTag("W/" + TAG, TAG));
+  }
+
+  @Test
+  public void testMatchTagList() {
+    assertTrue(RestApiServer.matchesEntityTag("\"other\", W/\"more\",  " + TAG, TAG));
+  }
+
+  @Test
+  public void testMatchEncodedTag() {
+    final String gzipTag = HttpCompression.encodeEntityTag(TAG, Optional.of(HttpCompression.GZIP));
+    assertEquals("\"abc-gzip\"", gzipTag);
+    assertTrue(RestApiServer.matchesEntityTag(gzipTag, TAG));
+    assertTrue(RestApiServer.matchesEntityTag(TAG, gzipTag));
+    assertTrue(RestApiServer.matchesEntityTag("W/\"abc-deflate\"", gzipTag));
+    assertEquals(TAG, HttpCompression.encodeEntityTag(TAG, Optional.empty()));
+  }
+
+  @Test
+  public void testMatchWildcard() {
+    assertTrue(RestApiServer.matchesEntityTag("*", TAG));
+  }
+
+  @Test
+  public void testMismatch() {
+    assertFalse(RestApiServer.matchesEntityTag("\"other\", W/\"abcd\"", TAG));
+    assertFalse(RestApiServer.matchesEntityTag("abc", TAG));
+    assertFalse(RestApiServer.matchesEntityTag(null, TAG));
+  }
+
+  /**
+   * Test that the entity tag changes with a new version of a hierarchy that changes its
+   * representation, whereas equal representations have equal strong entity tags.
+   */
+  @Test
+  public void testTagChangesWithVersion() {
+    final MutableSensorRegistry hierarchy = new MutableSensorRegistry("root", "Root");
+    final SerializedSensorHierarchy first = SerializedSensorHierarchy.of(hierarchy, 1);
+    hierarchy.getTopLevelSensor().addChildMachineSensor("machine", "Machine");
+    final SerializedSensorHierarchy second = SerializedSensorHierarchy.of(hierarchy, 2);
+
+    assertFalse(first.getEntityTag().equals(second.getEntityTag()));
+    assertFalse(first.getBinaryEntityTag().equals(second.getBinaryEntityTag()));
+    assertFalse(RestApiServer.matchesEntityTag(first.getEntityTag(), second.getEntityTag()));
+    assertEquals(second.getEntityTag(), SerializedSensorHierarchy.of(hierarchy, 3).getEntityTag());
+  }
+
+}
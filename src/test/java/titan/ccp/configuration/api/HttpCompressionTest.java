@@ -0,0 +1,86 @@
+package titan.ccp.configuration.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Optional;
+import org.junit.Test;
+import titan.ccp.configuration.api.HttpCompression.UnsupportedContentEncodingException;
+
+/**
+ * Test the content encoding of request and response bodies.
+ *
+ */
+public class HttpCompressionTest {
+
+  private static final String BODY = ("{\"identifier\": \"root\", \"name\": \"Root\", "
+      + "\"children\": [{\"identifier\": \"machine\", \"name\": \"Machine\"}]}").repeat(100);
+
+  private final HttpCompression compression = new HttpCompression(true, 1024, 6);
+
+  @Test
+  public void testNegotiateGzip() {
+    assertEquals(Optional.of(HttpCompression.GZIP), HttpCompression.negotiate("gzip, deflate, br"));
+  }
+
+  @Test
+  public void testNegotiateByQuality() {
+    assertEquals(Optional.of(HttpCompression.DEFLATE),
+        HttpCompression.negotiate("gzip;q=0.5, deflate;q=0.8"));
+  }
+
+  @Test
+  public void testNegotiateWildcard() {
+    assertEquals(Optional.of(HttpCompression.DEFLATE),
+        HttpCompression.negotiate("gzip;q=0, *"));
+  }
+
+  @Test
+  public void testNegotiateNone() {
+    assertEquals(Optional.empty(), HttpCompression.negotiate(null));
+    assertEquals(Optional.empty(), HttpCompression.negotiate("identity, br"));
+    assertEquals(Optional.empty(), HttpCompression.negotiate("*;q=0"));
+  }
+
+  @Test
+  public void testGzipRoundTrip() throws IOException {
+    this.testRoundTrip(HttpCompression.GZIP);
+  }
+
+  @Test
+  public void testDeflateRoundTrip() throws IOException {
+    this.testRoundTrip(HttpCompression.DEFLATE);
+  }
+
+  @Test
+  public void testIdentity() throws IOException {
+    final InputStream input = new ByteArrayInputStream(new byte[0]);
+    assertEquals(input, HttpCompression.decode(input, null));
+    assertEquals(input, HttpCompression.decode(input, "identity"));
+  }
+
+  @Test(expected = UnsupportedContentEncodingException.class)
+  public void testUnsupportedEncoding() throws IOException {
+    HttpCompression.decode(new ByteArrayInputStream(new byte[0]), "br");
+  }
+
+  private void testRoundTrip(final String encoding) throws IOException {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream output = this.compression.encode(compressed, encoding)) {
+      output.write(BODY.getBytes(StandardCharsets.UTF_8));
+    }
+    assertTrue(compressed.size() < BODY.length() / 10);
+
+    try (InputStream input = HttpCompression.decode(
+        new ByteArrayInputStream(compressed.toByteArray()), encoding.toUpperCase(Locale.ROOT))) {
+      assertEquals(BODY, new String(input.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+}
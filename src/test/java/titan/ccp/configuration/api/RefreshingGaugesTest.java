@@ -0,0 +1,74 @@
+package titan.ccp.configuration.api;
+
+import static org.junit.Assert.assertEquals;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+/**
+ * Test that gauges read the values obtained by the last refresh instead of obtaining them on each
+ * scrape.
+ *
+ */
+public class RefreshingGaugesTest {
+
+  private static final String GAUGE = "sensors";
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final RefreshingGauges gauges = new RefreshingGauges(this.meterRegistry, 1000);
+
+  /**
+   * Test that scraping a gauge does not obtain its value, which is only updated by refreshes.
+   */
+  @Test
+  public void testScrapeReadsRefreshedValue() {
+    final AtomicLong value = new AtomicLong(3);
+    final AtomicInteger calls = new AtomicInteger();
+    this.gauges.register(GAUGE, "Sensors", () -> {
+      calls.incrementAndGet();
+      return value.get();
+    }, "type", "machine");
+
+    assertEquals(0, this.scrape(), 0);
+    this.gauges.refresh();
+    value.set(5);
+
+    assertEquals(3, this.scrape(), 0);
+    assertEquals(3, this.scrape(), 0);
+    assertEquals(1, calls.get());
+
+    this.gauges.refresh();
+
+    assertEquals(5, this.scrape(), 0);
+  }
+
+  /**
+   * Test that a gauge whose value cannot be obtained keeps its previous value without affecting the
+   * refresh of other gauges.
+   */
+  @Test
+  public void testFailedRefreshKeepsValue() {
+    final AtomicLong value = new AtomicLong(3);
+    this.gauges.register(GAUGE, "Sensors", () -> {
+      if (value.get() < 0) {
+        throw new IllegalStateException("Database unavailable");
+      }
+      return value.get();
+    }, "type", "machine");
+    this.gauges.register(GAUGE, "Sensors", () -> 7, "type", "aggregated");
+    this.gauges.refresh();
+
+    value.set(-1);
+    this.gauges.refresh();
+
+    assertEquals(3, this.scrape(), 0);
+    assertEquals(7, this.meterRegistry.get(GAUGE).tag("type", "aggregated").gauge().value(), 0);
+  }
+
+  private double scrape() {
+    return this.meterRegistry.get(GAUGE).tag("type", "machine").gauge().value();
+  }
+
+}
@@ -0,0 +1,328 @@
+package titan.ccp.configuration.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import titan.ccp.configuration.Config;
+import titan.ccp.configuration.MongoTestFixture;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Test the responses of the {@link RestApiServer} backed by a {@link SensorHierarchyRepository}.
+ * Requires a MongoDB replica set, whose connection URL is passed with the system property
+ * {@value MongoTestFixture#URL_PROPERTY}. Otherwise, the tests are skipped.
+ *
+ */
+public class RestApiServerTest {
+
+  private static final String DATABASE_NAME = "sensorManagementRestApiTest";
+  private static final String ROOT = "root";
+  private static final String HIERARCHIES_PATH = "/sensor-hierarchy/";
+  private static final String CONTINUATION_TOKEN_HEADER = "Continuation-Token";
+  private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+  @Rule
+  public final MongoTestFixture mongo = new MongoTestFixture(DATABASE_NAME);
+
+  private final HttpClient client = HttpClient.newHttpClient();
+  private SensorHierarchyRepository repository;
+  private RestApiServer server;
+  private String baseUrl;
+
+  /**
+   * Start a repository, which creates the empty default hierarchy, and a webserver.
+   */
+  @Before
+  public void setUp() throws IOException {
+    this.repository = this.createRepository();
+    final int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    this.baseUrl = "http://localhost:" + port;
+    this.server = new RestApiServer(port, false, this.repository, new SimpleMeterRegistry());
+    this.server.start();
+    this.server.awaitInitialization();
+  }
+
+  /**
+   * Stop the webserver and repository.
+   */
+  @After
+  public void tearDown() {
+    if (this.server != null) {
+      this.server.stop();
+    }
+    if (this.repository != null) {
+      this.repository.stop();
+    }
+  }
+
+  /**
+   * Test that updating a hierarchy based on a stale cached version responds with a conflict and
+   * that a retry is based on the current version.
+   */
+  @Test
+  public void testUpdateOfStaleVersionConflicts() throws Exception {
+    final SensorHierarchyRepository otherRepository = this.createRepository();
+    try {
+      assertTrue(otherRepository.updateSensorHierarchy(MongoTestFixture.createHierarchy())
+          .isEmpty());
+    } finally {
+      otherRepository.stop();
+    }
+    final MutableSensorRegistry hierarchy = new MutableSensorRegistry(ROOT, "Root");
+    hierarchy.getTopLevelSensor().addChildMachineSensor("machine", "Machine");
+
+    final HttpResponse<String> conflict =
+        this.send("PUT", "/sensor-hierarchy/" + ROOT, hierarchy.toJson());
+    assertEquals(409, conflict.statusCode());
+
+    final HttpResponse<String> retry =
+        this.send("PUT", "/sensor-hierarchy/" + ROOT, hierarchy.toJson());
+    assertEquals(200, retry.statusCode());
+    assertEquals(hierarchy.toJson(), this.repository.getSensorHierarchy(ROOT).toJson());
+  }
+
+  /**
+   * Test that a patch adding an existing identifier responds with a conflict containing the paths
+   * of the existing and the attempted sensor and that invalid patches are rejected.
+   */
+  @Test
+  public void testPatchReportsCollisionPaths() throws Exception {
+    assertEquals(200, this.send("PATCH", "/sensor-hierarchy/" + ROOT,
+        "[{\"op\": \"add\", \"identifier\": \"group\", \"name\": \"Group\", "
+            + "\"parent\": \"root\", \"aggregated\": true}]").statusCode());
+
+    final HttpResponse<String> conflict = this.send("PATCH", "/sensor-hierarchy/" + ROOT,
+        "[{\"op\": \"add\", \"identifier\": \"group\", \"name\": \"Group\", "
+            + "\"parent\": \"group\"}]");
+    assertEquals(409, conflict.statusCode());
+    assertEquals("{\"collisions\":[\"group\"],\"paths\":{\"group\":[\"root/group\","
+        + "\"root/group/group\"]}}", conflict.body());
+
+    final HttpResponse<String> invalid = this.send("PATCH", "/sensor-hierarchy/" + ROOT,
+        "[{\"op\": \"remove\", \"identifier\": \"missing\"}]");
+    assertEquals(400, invalid.statusCode());
+  }
+
+  /**
+   * Test that following the continuation tokens lists all hierarchies exactly once in the order of
+   * their creation and that the last page has no continuation token.
+   */
+  @Test
+  public void testListingFollowsContinuationTokens() throws Exception {
+    this.createHierarchies(5);
+
+    final List<String> listed = new ArrayList<>();
+    String path = HIERARCHIES_PATH + "?limit=2";
+    int pages = 0;
+    while (path != null) {
+      final HttpResponse<String> response = this.send("GET", path, null);
+      assertEquals(200, response.statusCode());
+      final List<String> page = parseIdentifiers(response.body());
+      assertTrue(page.size() <= 2);
+      listed.addAll(page);
+      pages++;
+      path = response.headers().firstValue(CONTINUATION_TOKEN_HEADER)
+          .map(token -> HIERARCHIES_PATH + "?limit=2&continuationToken=" + token)
+          .orElse(null);
+    }
+
+    assertEquals(List.of(ROOT, "hierarchy0", "hierarchy1", "hierarchy2", "hierarchy3",
+        "hierarchy4"), listed);
+    assertEquals(3, pages);
+  }
+
+  /**
+   * Test that a limit exceeding the maximum page size is capped at it.
+   */
+  @Test
+  public void testListingCapsLimit() throws Exception {
+    this.createHierarchies(Config.API_PAGE_SIZE_MAX);
+
+    final HttpResponse<String> first =
+        this.send("GET", HIERARCHIES_PATH + "?limit=" + (Config.API_PAGE_SIZE_MAX + 1), null);
+    assertEquals(200, first.statusCode());
+    assertEquals(Config.API_PAGE_SIZE_MAX, parseIdentifiers(first.body()).size());
+    final String token = first.headers().firstValue(CONTINUATION_TOKEN_HEADER).get();
+
+    final HttpResponse<String> last =
+        this.send("GET", HIERARCHIES_PATH + "?continuationToken=" + token, null);
+    assertEquals(List.of("hierarchy" + (Config.API_PAGE_SIZE_MAX - 1)),
+        parseIdentifiers(last.body()));
+    assertFalse(last.headers().firstValue(CONTINUATION_TOKEN_HEADER).isPresent());
+  }
+
+  /**
+   * Test that invalid continuation tokens and limits are rejected.
+   */
+  @Test
+  public void testListingRejectsInvalidParameters() throws Exception {
+    assertEquals(400,
+        this.send("GET", HIERARCHIES_PATH + "?continuationToken=invalid", null).statusCode());
+    assertEquals(400, this.send("GET", HIERARCHIES_PATH + "?limit=0", null).statusCode());
+    assertEquals(400, this.send("GET", HIERARCHIES_PATH + "?limit=many", null).statusCode());
+  }
+
+  /**
+   * Test that a 304 (Not Modified) response varies by the same headers as the response it stands
+   * for, including Accept-Encoding as compression is enabled.
+   */
+  @Test
+  public void testNotModifiedVariesByEncoding() throws Exception {
+    final String path = HIERARCHIES_PATH + ROOT;
+    final HttpResponse<String> response = this.send("GET", path, null);
+    assertEquals(200, response.statusCode());
+    final String entityTag = response.headers().firstValue("ETag").orElseThrow();
+
+    final HttpRequest request = HttpRequest.newBuilder(URI.create(this.baseUrl + path))
+        .header("If-None-Match", entityTag)
+        .GET()
+        .build();
+    final HttpResponse<String> notModified = this.client.send(request, BodyHandlers.ofString());
+
+    assertEquals(304, notModified.statusCode());
+    assertEquals(response.headers().allValues("Vary"), notModified.headers().allValues("Vary"));
+    assertTrue(notModified.headers().allValues("Vary").contains("Accept-Encoding"));
+  }
+
+  /**
+   * Test that exported hierarchies are recreated by importing the export after they were deleted.
+   */
+  @Test
+  public void testExportImportRoundTrip() throws Exception {
+    this.createHierarchies(3);
+    final HttpResponse<String> export =
+        this.send("GET", HIERARCHIES_PATH + "export", null);
+    assertEquals(200, export.statusCode());
+    final List<String> exported = sortLines(export.body());
+    assertEquals(4, exported.size());
+    this.repository.deleteSensorHierarchies(
+        List.of(ROOT, "hierarchy0", "hierarchy1", "hierarchy2"));
+
+    final HttpRequest request = HttpRequest.newBuilder(
+        URI.create(this.baseUrl + HIERARCHIES_PATH + "import"))
+        .header("Content-Type", NDJSON_CONTENT_TYPE)
+        .POST(BodyPublishers.ofString(export.body()))
+        .build();
+    final HttpResponse<String> imported = this.client.send(request, BodyHandlers.ofString());
+
+    assertEquals(200, imported.statusCode());
+    for (final JsonElement result : new JsonParser().parse(imported.body()).getAsJsonArray()) {
+      assertTrue(result.getAsJsonObject().get("created").getAsBoolean());
+    }
+    assertEquals(exported, sortLines(this.send("GET", HIERARCHIES_PATH + "export", null).body()));
+  }
+
+  /**
+   * Test that invalid lines of an NDJSON import are reported with their line number, counting blank
+   * lines, without aborting the import.
+   */
+  @Test
+  public void testImportReportsInvalidLines() throws Exception {
+    final String body = new MutableSensorRegistry("first", "First").toJson() + "\n"
+        + "\n"
+        + "{\"identifier\": \n"
+        + new MutableSensorRegistry("second", "Second").toJson() + "\n";
+    final HttpRequest request = HttpRequest.newBuilder(
+        URI.create(this.baseUrl + HIERARCHIES_PATH + "import"))
+        .header("Content-Type", NDJSON_CONTENT_TYPE)
+        .POST(BodyPublishers.ofString(body))
+        .build();
+
+    final HttpResponse<String> response = this.client.send(request, BodyHandlers.ofString());
+
+    assertEquals(200, response.statusCode());
+    assertEquals("[{\"identifier\":\"first\",\"created\":true},"
+        + "{\"created\":false,\"error\":\"Invalid sensor hierarchy\",\"line\":3},"
+        + "{\"identifier\":\"second\",\"created\":true}]", response.body());
+  }
+
+  /**
+   * Test that a sensor group used by multiple imported hierarchies is only created with the first
+   * one, while the others are reported as collisions.
+   */
+  @Test
+  public void testImportOfCollidingHierarchies() throws Exception {
+    final List<String> hierarchies = new ArrayList<>();
+    for (final String identifier : List.of("first", "second")) {
+      final MutableSensorRegistry hierarchy = new MutableSensorRegistry(identifier, identifier);
+      hierarchy.getTopLevelSensor().addChildAggregatedSensor("shared", "Shared");
+      hierarchies.add(hierarchy.toJson());
+    }
+
+    final HttpResponse<String> response = this.send("POST", HIERARCHIES_PATH + "import",
+        "[" + String.join(",", hierarchies) + "]");
+
+    assertEquals(200, response.statusCode());
+    assertEquals("[{\"identifier\":\"first\",\"created\":true},"
+        + "{\"identifier\":\"second\",\"created\":false,\"collisions\":[\"shared\"]}]",
+        response.body());
+    assertNull(this.repository.getSensorHierarchy("second"));
+  }
+
+  private void createHierarchies(final int count) {
+    final List<SensorRegistry> hierarchies = IntStream.range(0, count)
+        .mapToObj(i -> {
+          final MutableSensorRegistry hierarchy =
+              new MutableSensorRegistry("hierarchy" + i, "Hierarchy " + i);
+          hierarchy.getTopLevelSensor().addChildMachineSensor("machine" + i, "Machine " + i);
+          return hierarchy;
+        })
+        .collect(Collectors.toList());
+    for (final Optional<List<String>> result :
+        this.repository.createSensorHierarchies(hierarchies)) {
+      assertTrue(result.isEmpty());
+    }
+  }
+
+  private static List<String> parseIdentifiers(final String body) {
+    final List<String> identifiers = new ArrayList<>();
+    for (final JsonElement sensor : new JsonParser().parse(body).getAsJsonArray()) {
+      identifiers.add(sensor.getAsJsonObject().get("identifier").getAsString());
+    }
+    return identifiers;
+  }
+
+  private static List<String> sortLines(final String body) {
+    return Arrays.stream(body.split("\n")).sorted().collect(Collectors.toList());
+  }
+
+  private SensorHierarchyRepository createRepository() {
+    return new SensorHierarchyRepository(
+        this.mongo.getUrl(), DATABASE_NAME, new SimpleMeterRegistry());
+  }
+
+  private HttpResponse<String> send(final String method, final String path, final String body)
+      throws IOException, InterruptedException {
+    final HttpRequest request = HttpRequest.newBuilder(URI.create(this.baseUrl + path))
+        .method(method, body == null ? BodyPublishers.noBody() : BodyPublishers.ofString(body))
+        .build();
+    return this.client.send(request, BodyHandlers.ofString());
+  }
+
+}
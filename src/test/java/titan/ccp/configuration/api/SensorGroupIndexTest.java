@@ -0,0 +1,59 @@
+package titan.ccp.configuration.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Test the in-memory index of sensor groups.
+ *
+ */
+public class SensorGroupIndexTest {
+
+  /**
+   * Test that only sensor groups of other hierarchies are reported as collisions.
+   */
+  @Test
+  public void testFindCollisions() {
+    final SensorGroupIndex index = new SensorGroupIndex();
+    index.put("root1", "root1");
+    index.put("group1", "root1");
+    index.put("root2", "root2");
+
+    assertEquals(List.of("group1"),
+        index.findCollisions(List.of("root2", "group1", "group2"), "root2"));
+    assertEquals(List.of("root2", "group1"),
+        index.findCollisions(List.of("root2", "group1", "group2"), null));
+  }
+
+  /**
+   * Test that sensor groups are only removed from the hierarchy they belong to.
+   */
+  @Test
+  public void testRemove() {
+    final SensorGroupIndex index = new SensorGroupIndex();
+    index.put("group", "root1");
+    index.remove("group", "root2");
+    assertEquals(List.of("group"), index.findCollisions(List.of("group"), null));
+
+    index.remove("group", "root1");
+    assertTrue(index.findCollisions(List.of("group"), null).isEmpty());
+  }
+
+  /**
+   * Test that all sensor groups of a hierarchy are removed at once.
+   */
+  @Test
+  public void testRemoveHierarchy() {
+    final SensorGroupIndex index = new SensorGroupIndex();
+    index.put("group1", "root1");
+    index.put("group2", "root1");
+    index.put("group3", "root2");
+
+    index.removeHierarchy("root1");
+
+    assertEquals(1, index.size());
+  }
+
+}
@@ -0,0 +1,155 @@
+package titan.ccp.configuration.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Test the read-through behavior of the sensor hierarchy cache.
+ *
+ */
+public class SensorHierarchyCacheTest {
+
+  private static final long EXPIRE_AFTER_WRITE_MS = 60_000;
+
+  /**
+   * Test that hierarchies are only loaded on cache misses.
+   */
+  @Test
+  public void testReadThrough() {
+    final AtomicInteger loads = new AtomicInteger();
+    final SensorHierarchyCache cache = new SensorHierarchyCache(1_000_000, EXPIRE_AFTER_WRITE_MS,
+        identifier -> {
+          loads.incrementAndGet();
+          return Optional.of(
+              SerializedSensorHierarchy.of(new MutableSensorRegistry(identifier, "Test"), 1));
+        });
+
+    assertTrue(cache.get("root").isPresent());
+    assertTrue(cache.get("root").isPresent());
+
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.getStats().hitCount());
+    assertEquals(1, cache.getStats().missCount());
+  }
+
+  /**
+   * Test that written hierarchies replace cached ones and deleted hierarchies are reloaded.
+   */
+  @Test
+  public void testPutAndInvalidate() {
+    final AtomicInteger loads = new AtomicInteger();
+    final SensorHierarchyCache cache = new SensorHierarchyCache(1_000_000, EXPIRE_AFTER_WRITE_MS,
+        identifier -> {
+          loads.incrementAndGet();
+          return Optional.empty();
+        });
+
+    assertFalse(cache.get("root").isPresent());
+
+    final SensorRegistry hierarchy = new MutableSensorRegistry("root", "Test");
+    cache.put(hierarchy, 1);
+    assertEquals("Test", cache.get("root").get().getRegistry().getTopLevelSensor().getName());
+
+    cache.invalidate("root");
+    assertFalse(cache.get("root").isPresent());
+
+    assertEquals(2, loads.get());
+  }
+
+  /**
+   * Test that hierarchies that do not exist are not cached, so that they are loaded on each request
+   * and do not occupy space in the cache.
+   */
+  @Test
+  public void testAbsentHierarchiesAreNotCached() {
+    final AtomicInteger loads = new AtomicInteger();
+    final SensorHierarchyCache cache = new SensorHierarchyCache(1_000_000, EXPIRE_AFTER_WRITE_MS,
+        identifier -> {
+          loads.incrementAndGet();
+          return Optional.empty();
+        });
+
+    assertFalse(cache.get("root").isPresent());
+    assertFalse(cache.get("root").isPresent());
+
+    assertEquals(2, loads.get());
+    assertEquals(0, cache.size());
+  }
+
+  /**
+   * Test that a written hierarchy does not replace a newer cached version.
+   */
+  @Test
+  public void testPutKeepsNewerVersion() {
+    final SensorHierarchyCache cache = new SensorHierarchyCache(
+        1_000_000, EXPIRE_AFTER_WRITE_MS, identifier -> Optional.empty());
+
+    cache.put(new MutableSensorRegistry("root", "Newer"), 2);
+    cache.put(new MutableSensorRegistry("root", "Older"), 1);
+    assertEquals(2, cache.get("root").get().getVersion());
+
+    cache.put(new MutableSensorRegistry("root", "Newest"), 3);
+    assertEquals("Newest", cache.get("root").get().getRegistry().getTopLevelSensor().getName());
+  }
+
+  /**
+   * Test that a write finishing after the hierarchy was removed does not resurrect it, while it is
+   * still loaded from the database.
+   */
+  @Test
+  public void testRemoveDropsLateWrites() {
+    final AtomicInteger loads = new AtomicInteger();
+    final SensorHierarchyCache cache = new SensorHierarchyCache(1_000_000, EXPIRE_AFTER_WRITE_MS,
+        identifier -> {
+          loads.incrementAndGet();
+          return Optional.empty();
+        });
+    cache.put(new MutableSensorRegistry("root", "Test"), 1);
+
+    cache.remove("root");
+    cache.put(new MutableSensorRegistry("root", "Test"), 2);
+
+    assertFalse(cache.get("root").isPresent());
+    assertEquals(1, loads.get());
+  }
+
+  /**
+   * Test that hierarchies are weighed by their serialization and their number of sensors.
+   */
+  @Test
+  public void testEstimateBytes() {
+    final MutableSensorRegistry hierarchy = new MutableSensorRegistry("root", "Root");
+    hierarchy.getTopLevelSensor().addChildMachineSensor("machine", "Machine");
+    final SerializedSensorHierarchy serialized = SerializedSensorHierarchy.of(hierarchy, 1);
+
+    assertEquals(
+        serialized.getJsonLength() + 2 * SensorHierarchyCache.ESTIMATED_SENSOR_BYTES,
+        SensorHierarchyCache.estimateBytes(serialized));
+  }
+
+  /**
+   * Test that cached hierarchies are loaded again once they expired.
+   */
+  @Test
+  public void testExpireAfterWrite() throws InterruptedException {
+    final AtomicInteger loads = new AtomicInteger();
+    final SensorHierarchyCache cache = new SensorHierarchyCache(1_000_000, 1, identifier -> {
+      loads.incrementAndGet();
+      return Optional.of(
+          SerializedSensorHierarchy.of(new MutableSensorRegistry(identifier, "Test"), 1));
+    });
+
+    assertTrue(cache.get("root").isPresent());
+    Thread.sleep(10);
+    assertTrue(cache.get("root").isPresent());
+
+    assertEquals(2, loads.get());
+  }
+
+}
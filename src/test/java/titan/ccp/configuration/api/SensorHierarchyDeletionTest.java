@@ -0,0 +1,202 @@
+package titan.ccp.configuration.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import com.google.gson.Gson;
+import com.mongodb.client.model.Filters;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.After;
+import org.junit.Test;
+import titan.ccp.configuration.MongoTestFixture;
+import titan.ccp.configuration.api.SensorHierarchyRepository.SensorHierarchyNotFoundException;
+import titan.ccp.configuration.changes.ConfigurationEvent;
+import titan.ccp.configuration.changes.SensorChanges;
+import titan.ccp.model.sensorregistry.MutableAggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Test deleting sensor hierarchies together with their sensors. Tests of the repository require a
+ * MongoDB replica set, whose connection URL is passed with the system property
+ * {@value MongoTestFixture#URL_PROPERTY}. Otherwise, they are skipped.
+ *
+ */
+public class SensorHierarchyDeletionTest {
+
+  private static final String DATABASE_NAME = "sensorManagementDeletionTest";
+  private static final String PREFIX = "deletion-test-";
+  private static final String FIRST = PREFIX + "first";
+  private static final String SECOND = PREFIX + "second";
+  private static final String MISSING = PREFIX + "missing";
+
+  private final MongoTestFixture mongo = new MongoTestFixture(DATABASE_NAME);
+  private SensorHierarchyRepository repository;
+  private RestApiServer server;
+  private String baseUrl;
+
+  /**
+   * Start a repository and webserver with two hierarchies sharing a machine sensor, if a MongoDB is
+   * available.
+   */
+  private void startServer() throws IOException {
+    this.mongo.connect();
+    this.startRepository();
+  }
+
+  /**
+   * Start a repository and webserver with two hierarchies sharing a machine sensor in the database
+   * of the connected fixture.
+   */
+  private void startRepository() throws IOException {
+    this.repository = new SensorHierarchyRepository(
+        this.mongo.getUrl(), DATABASE_NAME, new SimpleMeterRegistry());
+    assertTrue(this.repository.createSensorHierarchy(createHierarchy(FIRST)).isEmpty());
+    assertTrue(this.repository.createSensorHierarchy(createHierarchy(SECOND)).isEmpty());
+
+    final int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    this.baseUrl = "http://localhost:" + port;
+    this.server = new RestApiServer(port, false, this.repository, new SimpleMeterRegistry());
+    this.server.start();
+    this.server.awaitInitialization();
+  }
+
+  /**
+   * Stop the repository and webserver and drop the test database.
+   */
+  @After
+  public void tearDown() {
+    if (this.server != null) {
+      this.server.stop();
+    }
+    if (this.repository != null) {
+      this.repository.stop();
+    }
+    this.mongo.close();
+  }
+
+  /**
+   * Test that the event of a deleted hierarchy contains the parents of its sensors.
+   */
+  @Test
+  public void testDeletedEventContainsParents() {
+    final ConfigurationEvent event =
+        SensorHierarchyRepository.buildDeletedEvent(createHierarchy(FIRST));
+
+    final SensorChanges changes = new Gson().fromJson(event.getPayload(), SensorChanges.class);
+    final Map<String, String> parents = new HashMap<>();
+    changes.getChanges().forEach(change -> parents.put(change.getSensor(), change.getParent()));
+    assertEquals(FIRST, changes.getTopLevelSensor());
+    assertEquals(FIRST + "-group", parents.get(PREFIX + "machine"));
+    assertEquals(FIRST, parents.get(FIRST + "-group"));
+    assertTrue(parents.containsKey(FIRST));
+    assertNull(parents.get(FIRST));
+  }
+
+  /**
+   * Test that the bulk delete endpoint deletes existing hierarchies together with their sensors
+   * and reports the missing ones, leaving other hierarchies intact.
+   */
+  @Test
+  public void testBulkDeleteCascades() throws IOException {
+    this.startServer();
+    final HttpURLConnection connection =
+        (HttpURLConnection) new URL(this.baseUrl + "/sensor-hierarchy/delete").openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    try (OutputStream output = connection.getOutputStream()) {
+      output.write(("[\"" + FIRST + "\", \"" + MISSING + "\"]").getBytes(StandardCharsets.UTF_8));
+    }
+
+    assertEquals(200, connection.getResponseCode());
+    try (InputStream input = connection.getInputStream()) {
+      assertEquals("{\"deleted\":[\"" + FIRST + "\"],\"notFound\":[\"" + MISSING + "\"]}",
+          new String(input.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    assertNull(this.repository.getSensorHierarchy(FIRST));
+    assertEquals(0, this.countSensors("sensorGroups", Filters.eq("topLevelSensor", FIRST)));
+    assertEquals(0, this.countSensors("machineSensors", Filters.eq("topLevelSensor", FIRST)));
+    assertEquals(1, this.countSensors("sensorGroups", Filters.eq("topLevelSensor", SECOND)));
+    assertEquals(1,
+        this.countSensors("machineSensors", Filters.eq("identifier", PREFIX + "machine")));
+  }
+
+  /**
+   * Test that the bulk delete endpoint accepts a gzip-encoded body.
+   */
+  @Test
+  public void testBulkDeleteAcceptsGzipBody() throws IOException {
+    this.startServer();
+    final HttpURLConnection connection =
+        (HttpURLConnection) new URL(this.baseUrl + "/sensor-hierarchy/delete").openConnection();
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Content-Encoding", "gzip");
+    connection.setDoOutput(true);
+    try (OutputStream output = new GZIPOutputStream(connection.getOutputStream())) {
+      output.write(("[\"" + SECOND + "\"]").getBytes(StandardCharsets.UTF_8));
+    }
+
+    assertEquals(200, connection.getResponseCode());
+    assertNull(this.repository.getSensorHierarchy(SECOND));
+  }
+
+  /**
+   * Test that deleting a missing hierarchy is reported as not found.
+   */
+  @Test(expected = SensorHierarchyNotFoundException.class)
+  public void testDeleteMissing() throws IOException, SensorHierarchyNotFoundException {
+    this.startServer();
+    this.repository.deleteSensorHierarchy(MISSING);
+  }
+
+  /**
+   * Test that sensors whose hierarchy does not exist are deleted when the repository is started.
+   */
+  @Test
+  public void testStartDeletesOrphanedSensors() throws IOException {
+    this.mongo.connect();
+    this.mongo.getDatabase().getCollection("sensorGroups").insertOne(new Document()
+        .append("identifier", MISSING + "-group")
+        .append("topLevelSensor", MISSING)
+        .append("parent", MISSING));
+    this.mongo.getDatabase().getCollection("machineSensors").insertOne(new Document()
+        .append("identifier", PREFIX + "machine")
+        .append("topLevelSensor", MISSING)
+        .append("parent", MISSING + "-group"));
+
+    this.startRepository();
+
+    assertEquals(0, this.countSensors("sensorGroups", Filters.eq("topLevelSensor", MISSING)));
+    assertEquals(0, this.countSensors("machineSensors", Filters.eq("topLevelSensor", MISSING)));
+    assertEquals(1, this.countSensors("sensorGroups", Filters.eq("topLevelSensor", FIRST)));
+  }
+
+  private long countSensors(final String collection, final Bson filter) {
+    return this.mongo.getDatabase().getCollection(collection).countDocuments(filter);
+  }
+
+  private static SensorRegistry createHierarchy(final String identifier) {
+    final MutableSensorRegistry hierarchy = new MutableSensorRegistry(identifier, "Root");
+    final MutableAggregatedSensor group = hierarchy.getTopLevelSensor()
+        .addChildAggregatedSensor(identifier + "-group", "Group");
+    group.addChildMachineSensor(PREFIX + "machine", "Machine");
+    return hierarchy;
+  }
+
+}
@@ -0,0 +1,82 @@
+package titan.ccp.configuration.api;
+
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Test resolving the collisions of sensor hierarchies created at once.
+ *
+ */
+public class SensorHierarchyImportTest {
+
+  private final List<List<String>> sensorGroups = List.of(
+      List.of("a", "b"),
+      List.of("b", "c"),
+      List.of("d"),
+      List.of("a"),
+      List.of("e"));
+
+  /**
+   * Test that a sensor group used by multiple submitted hierarchies is only created with the first
+   * one and that hierarchies already rejected do not claim their sensor groups.
+   */
+  @Test
+  public void testFirstOccurrenceWins() {
+    final List<Optional<List<String>>> results = new ArrayList<>(List.of(
+        Optional.empty(),
+        Optional.empty(),
+        Optional.of(List.of("d")),
+        Optional.empty(),
+        Optional.empty()));
+
+    final Set<String> submitted =
+        SensorHierarchyRepository.resolveSubmittedCollisions(results, this.sensorGroups);
+
+    assertEquals(Set.of("a", "b", "e"), submitted);
+    assertEquals(List.of(
+        Optional.empty(),
+        Optional.of(List.of("b")),
+        Optional.of(List.of("d")),
+        Optional.of(List.of("a")),
+        Optional.empty()), results);
+  }
+
+  /**
+   * Test that each attempt resolves the collisions with existing hierarchies on a copy of the
+   * results, so that collisions found by a failed attempt are not kept by a retried one.
+   */
+  @Test
+  public void testAttemptsDoNotShareResults() {
+    final List<Optional<List<String>>> results = new ArrayList<>(List.of(
+        Optional.empty(),
+        Optional.of(List.of("b")),
+        Optional.empty(),
+        Optional.of(List.of("a")),
+        Optional.empty()));
+    final List<Optional<List<String>>> original = List.copyOf(results);
+
+    final List<Optional<List<String>>> firstAttempt = SensorHierarchyRepository
+        .resolveGlobalCollisions(results, this.sensorGroups, Set.of("a", "e"));
+    final List<Optional<List<String>>> secondAttempt = SensorHierarchyRepository
+        .resolveGlobalCollisions(results, this.sensorGroups, Set.of("d"));
+
+    assertEquals(original, results);
+    assertEquals(List.of(
+        Optional.of(List.of("a")),
+        Optional.of(List.of("b")),
+        Optional.empty(),
+        Optional.of(List.of("a")),
+        Optional.of(List.of("e"))), firstAttempt);
+    assertEquals(List.of(
+        Optional.empty(),
+        Optional.of(List.of("b")),
+        Optional.of(List.of("d")),
+        Optional.of(List.of("a")),
+        Optional.empty()), secondAttempt);
+  }
+
+}
@@ -0,0 +1,125 @@
+package titan.ccp.configuration.api;
+
+import static org.junit.Assert.assertTrue;
+import com.mongodb.client.MongoDatabase;
+import java.util.List;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import titan.ccp.configuration.MongoTestFixture;
+import titan.ccp.model.sensorregistry.Sensor;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Test that the queries of the repository are served by the reconciled indexes. The queries are
+ * explained with the filters built by the repository itself. Requires a MongoDB instance, whose
+ * connection URL is passed with the system property {@value MongoTestFixture#URL_PROPERTY}.
+ * Otherwise, the tests are skipped.
+ *
+ */
+public class SensorHierarchyIndexesTest {
+
+  private static final String HIERARCHIES = "sensorHierarchies";
+  private static final String SENSOR_GROUPS = "sensorGroups";
+  private static final String MACHINE_SENSORS = "machineSensors";
+
+  @Rule
+  public final MongoTestFixture mongo = new MongoTestFixture("sensorManagementIndexTest");
+
+  private MongoDatabase database;
+
+  /**
+   * Create the collections with their indexes and some documents.
+   */
+  @Before
+  public void setUp() {
+    this.database = this.mongo.getDatabase();
+
+    assertTrue(IndexReconciler.reconcile(this.database.getCollection(HIERARCHIES),
+        SensorHierarchyIndexes.forSensorHierarchies()));
+    assertTrue(IndexReconciler.reconcile(this.database.getCollection(SENSOR_GROUPS),
+        SensorHierarchyIndexes.forSensorGroups()));
+    assertTrue(IndexReconciler.reconcile(this.database.getCollection(MACHINE_SENSORS),
+        SensorHierarchyIndexes.forMachineSensors()));
+
+    for (int i = 0; i < 10; i++) {
+      this.database.getCollection(HIERARCHIES).insertOne(
+          new Document("identifier", "root" + i).append("name", "Root"));
+      this.database.getCollection(SENSOR_GROUPS).insertOne(
+          new Document("identifier", "group" + i).append("topLevelSensor", "root" + i)
+              .append("parent", "root" + i));
+      this.database.getCollection(MACHINE_SENSORS).insertOne(
+          new Document("identifier", "machine" + i).append("topLevelSensor", "root" + i)
+              .append("parent", "group" + i));
+    }
+  }
+
+  /**
+   * Test that reconciling the indexes again is a no-op.
+   */
+  @Test
+  public void testReconcileIsIdempotent() {
+    assertTrue(IndexReconciler.reconcile(this.database.getCollection(SENSOR_GROUPS),
+        SensorHierarchyIndexes.forSensorGroups()));
+  }
+
+  /**
+   * Test the queries of sensor hierarchies, including the pages of their listing.
+   */
+  @Test
+  public void testSensorHierarchyQueries() {
+    this.mongo.assertIndexed(HIERARCHIES,
+        SensorHierarchyRepository.buildIdentifiersFilter(List.of("root1", "root2")));
+    this.mongo.assertIndexed(HIERARCHIES, SensorHierarchyRepository.buildPageFilter(null),
+        SensorHierarchyRepository.buildPageSort());
+    this.mongo.assertIndexed(HIERARCHIES,
+        SensorHierarchyRepository.buildPageFilter(new ObjectId().toHexString()),
+        SensorHierarchyRepository.buildPageSort());
+  }
+
+  /**
+   * Test the queries of sensor groups.
+   */
+  @Test
+  public void testSensorGroupQueries() {
+    this.mongo.assertIndexed(SENSOR_GROUPS,
+        SensorHierarchyRepository.buildIdentifiersFilter(List.of("group1", "group2")));
+    this.mongo.assertIndexed(SENSOR_GROUPS,
+        SensorHierarchyRepository.buildCollisionFilter(List.of("group1", "group2"), null));
+    this.mongo.assertIndexed(SENSOR_GROUPS,
+        SensorHierarchyRepository.buildCollisionFilter(List.of("group1", "group2"), "root1"));
+    this.mongo.assertIndexed(SENSOR_GROUPS,
+        SensorHierarchyRepository.buildMovedSensorFilter("group1", "root1", true));
+    this.mongo.assertIndexed(SENSOR_GROUPS, this.buildDeletedSensorFilter("group"));
+    this.mongo.assertIndexed(SENSOR_GROUPS,
+        SensorHierarchyRepository.buildHierarchySensorsFilter(List.of("root1", "root2")));
+  }
+
+  /**
+   * Test the queries of machine sensors.
+   */
+  @Test
+  public void testMachineSensorQueries() {
+    this.mongo.assertIndexed(MACHINE_SENSORS,
+        SensorHierarchyRepository.buildMovedSensorFilter("machine1", "root1", false));
+    this.mongo.assertIndexed(MACHINE_SENSORS, this.buildDeletedSensorFilter("machine1"));
+    this.mongo.assertIndexed(MACHINE_SENSORS,
+        SensorHierarchyRepository.buildHierarchySensorsFilter(List.of("root1", "root2")));
+  }
+
+  /**
+   * Build the filter of a deleted sensor, which is its entire document.
+   */
+  private Bson buildDeletedSensorFilter(final String identifier) {
+    final SensorRegistry hierarchy = MongoTestFixture.createHierarchy();
+    final Sensor sensor = hierarchy.flatten().stream()
+        .filter(candidate -> candidate.getIdentifier().equals(identifier))
+        .findFirst()
+        .get();
+    return SensorHierarchyRepository.buildSensorDocument(sensor, hierarchy);
+  }
+
+}
@@ -0,0 +1,127 @@
+package titan.ccp.configuration.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import titan.ccp.configuration.api.SensorHierarchyPatch.InvalidPatchException;
+import titan.ccp.configuration.api.util.EventType;
+import titan.ccp.configuration.api.util.SensorChangedEvent;
+import titan.ccp.configuration.api.util.jsondeserialization.PatchOperationType;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Test the incremental modification of sensor hierarchies.
+ *
+ */
+public class SensorHierarchyPatchTest {
+
+  private final SerializedSensorHierarchy existing = SerializedSensorHierarchy.of(
+      SensorRegistry.fromJson("{\"identifier\": \"root\", \"name\": \"Root\", \"children\": ["
+          + "{\"identifier\": \"building1\", \"name\": \"Building 1\", \"children\": ["
+          + "{\"identifier\": \"floor\", \"name\": \"Floor\", \"children\": ["
+          + "{\"identifier\": \"machine1\", \"name\": \"Machine 1\"}]}]}, "
+          + "{\"identifier\": \"building2\", \"name\": \"Building 2\", \"children\": ["
+          + "{\"identifier\": \"machine2\", \"name\": \"Machine 2\"}]}]}"),
+      1);
+
+  /**
+   * Test that adding, moving and removing sensors results in the respective changes only.
+   */
+  @Test
+  public void testChanges() {
+    final SensorHierarchyPatch patch = new SensorHierarchyPatch(this.existing);
+    patch.apply(List.of(
+        new PatchOperationType("add", "machine3", "Machine 3", "building2", false),
+        new PatchOperationType("move", "floor", null, "building2", false),
+        new PatchOperationType("remove", "machine2", null, null, false)));
+
+    assertTrue(patch.getCollisions().isEmpty());
+    final SerializedSensorHierarchy patched = SerializedSensorHierarchy.of(patch.toHierarchy(), 2);
+    final Map<String, EventType> changes = patch.getChanges(patched).stream()
+        .collect(Collectors.toMap(
+            change -> change.getSensor().getIdentifier(),
+            SensorChangedEvent::getEventType));
+
+    assertEquals(3, changes.size());
+    assertEquals(EventType.SENSOR_ADDED, changes.get("machine3"));
+    assertEquals(EventType.SENSOR_MOVED, changes.get("floor"));
+    assertEquals(EventType.SENSOR_DELETED, changes.get("machine2"));
+    assertEquals("building2",
+        patched.getSensor("machine1").get().getParent().get().getParent().get().getIdentifier());
+    assertFalse(patched.getSensor("machine2").isPresent());
+  }
+
+  /**
+   * Test that removing an aggregated sensor deletes its entire subtree.
+   */
+  @Test
+  public void testRemoveSubtree() {
+    final SensorHierarchyPatch patch = new SensorHierarchyPatch(this.existing);
+    patch.apply(List.of(new PatchOperationType("remove", "building1", null, null, false)));
+
+    final List<SensorChangedEvent> changes =
+        patch.getChanges(SerializedSensorHierarchy.of(patch.toHierarchy(), 2));
+
+    assertEquals(3, changes.size());
+    assertTrue(changes.stream()
+        .allMatch(change -> change.getEventType() == EventType.SENSOR_DELETED));
+  }
+
+  /**
+   * Test that renaming a sensor results in a rename of the sensor only.
+   */
+  @Test
+  public void testRename() {
+    final SensorHierarchyPatch patch = new SensorHierarchyPatch(this.existing);
+    patch.apply(List.of(new PatchOperationType("rename", "machine1", "Renamed", null, false)));
+
+    assertTrue(patch.isModified());
+    final SerializedSensorHierarchy patched = SerializedSensorHierarchy.of(patch.toHierarchy(), 2);
+    final List<SensorChangedEvent> changes = patch.getChanges(patched);
+    assertEquals(1, changes.size());
+    assertEquals(EventType.SENSOR_RENAMED, changes.get(0).getEventType());
+    assertEquals("machine1", changes.get(0).getSensor().getIdentifier());
+    assertEquals("Renamed", patched.getSensor("machine1").get().getName());
+  }
+
+  /**
+   * Test that adding an existing identifier is reported as collision together with the paths of
+   * the existing sensor and the sensors that should have been added.
+   */
+  @Test
+  public void testCollision() {
+    final SensorHierarchyPatch patch = new SensorHierarchyPatch(this.existing);
+    patch.apply(List.of(
+        new PatchOperationType("add", "machine2", "Machine", "building1", false),
+        new PatchOperationType("add", "machine2", "Machine", "floor", false)));
+
+    assertEquals(List.of("machine2"), patch.getCollisions());
+    assertEquals(
+        Map.of("machine2", List.of(
+            "root/building2/machine2", "root/building1/machine2", "root/building1/floor/machine2")),
+        patch.getCollisionPaths());
+  }
+
+  /**
+   * Test that a sensor cannot be moved into its own subtree.
+   */
+  @Test(expected = InvalidPatchException.class)
+  public void testMoveIntoOwnSubtree() {
+    new SensorHierarchyPatch(this.existing)
+        .apply(List.of(new PatchOperationType("move", "building1", null, "floor", false)));
+  }
+
+  /**
+   * Test that operations referring to sensors that do not exist are rejected.
+   */
+  @Test(expected = InvalidPatchException.class)
+  public void testMissingSensor() {
+    new SensorHierarchyPatch(this.existing)
+        .apply(List.of(new PatchOperationType("add", "machine3", "Machine 3", "missing", false)));
+  }
+
+}
@@ -0,0 +1,140 @@
+package titan.ccp.configuration.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bson.Document;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import titan.ccp.configuration.MongoTestFixture;
+
+/**
+ * Test the retries of operations and commits of transactions. Requires a MongoDB replica set,
+ * whose connection URL is passed with the system property {@value MongoTestFixture#URL_PROPERTY}.
+ * Otherwise, the tests are skipped. Failing commits are injected with the {@code failCommand} fail
+ * point, which requires the MongoDB to be started with test commands enabled.
+ *
+ */
+public class TransactionUtilsTest {
+
+  private static final String COLLECTION = "attempts";
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long DELAY_MS = 1;
+  private static final String RETRY_COUNTER = "mongodb.transaction.retries";
+
+  @Rule
+  public final MongoTestFixture mongo = new MongoTestFixture("sensorManagementTransactionTest");
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private MongoCollection<Document> collection;
+
+  /**
+   * Create the collection written within transactions.
+   */
+  @Before
+  public void setUp() {
+    this.mongo.getDatabase().createCollection(COLLECTION);
+    this.collection = this.mongo.getDatabase().getCollection(COLLECTION);
+  }
+
+  /**
+   * Test that an operation failing with a transient error is retried and only the writes of the
+   * successful attempt are committed.
+   */
+  @Test
+  public void testRetriesTransientErrors() {
+    final AtomicInteger attempts = new AtomicInteger();
+
+    final int result = TransactionUtils.runInTransaction(this.mongo.getClient(), MAX_ATTEMPTS,
+        DELAY_MS, this.meterRegistry, session -> {
+          final int attempt = attempts.incrementAndGet();
+          this.collection.insertOne(session, new Document("attempt", attempt));
+          if (attempt == 1) {
+            throw createException(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+          }
+          return attempt;
+        });
+
+    assertEquals(2, result);
+    assertEquals(List.of(2),
+        this.collection.distinct("attempt", Integer.class).into(new ArrayList<>()));
+    assertEquals(1, this.countRetries("transient.error"), 0);
+  }
+
+  /**
+   * Test that an operation is given up after the maximum number of attempts.
+   */
+  @Test
+  public void testGivesUpAfterMaxAttempts() {
+    final AtomicInteger attempts = new AtomicInteger();
+
+    try {
+      TransactionUtils.runInTransaction(this.mongo.getClient(), MAX_ATTEMPTS, DELAY_MS,
+          this.meterRegistry, session -> {
+            attempts.incrementAndGet();
+            this.collection.insertOne(session, new Document());
+            throw createException(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+          });
+      fail("Transient errors of the last attempt must be rethrown.");
+    } catch (final MongoException e) {
+      assertEquals(MAX_ATTEMPTS, attempts.get());
+    }
+
+    assertEquals(0, this.collection.countDocuments());
+    assertEquals(MAX_ATTEMPTS - 1, this.countRetries("transient.error"), 0);
+  }
+
+  /**
+   * Test that a commit with an unknown result is retried without executing the operation again.
+   */
+  @Test
+  public void testRetriesUnknownCommitResult() {
+    final MongoDatabase admin = this.mongo.getClient().getDatabase("admin");
+    try {
+      admin.runCommand(new Document("configureFailPoint", "failCommand")
+          .append("mode", new Document("times", 1))
+          .append("data", new Document("failCommands", List.of("commitTransaction"))
+              .append("errorCode", 50) // MaxTimeMSExpired, which is not retried by the driver
+              .append("errorLabels",
+                  List.of(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL))));
+    } catch (final MongoCommandException e) {
+      Assume.assumeNoException("The failCommand fail point is not available.", e);
+    }
+    final AtomicInteger attempts = new AtomicInteger();
+
+    try {
+      TransactionUtils.runInTransaction(this.mongo.getClient(), MAX_ATTEMPTS, DELAY_MS,
+          this.meterRegistry, session -> {
+            this.collection.insertOne(session, new Document("attempt", attempts.incrementAndGet()));
+            return null;
+          });
+    } finally {
+      admin.runCommand(new Document("configureFailPoint", "failCommand").append("mode", "off"));
+    }
+
+    assertEquals(1, attempts.get());
+    assertEquals(1, this.collection.countDocuments());
+    assertEquals(1, this.countRetries("unknown.commit.result"), 0);
+  }
+
+  private double countRetries(final String reason) {
+    return this.meterRegistry.counter(RETRY_COUNTER, "reason", reason).count();
+  }
+
+  private static MongoException createException(final String label) {
+    final MongoException exception = new MongoException("Injected error");
+    exception.addLabel(label);
+    return exception;
+  }
+
+}
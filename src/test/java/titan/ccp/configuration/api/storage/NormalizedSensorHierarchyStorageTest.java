@@ -0,0 +1,173 @@
+package titan.ccp.configuration.api.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import titan.ccp.configuration.MongoTestFixture;
+import titan.ccp.configuration.api.IndexReconciler;
+import titan.ccp.configuration.api.SensorHierarchyIndexes;
+import titan.ccp.configuration.api.SerializedSensorHierarchy;
+import titan.ccp.model.sensorregistry.MutableAggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Test storing sensor hierarchies in the normalized format and migrating them from the document
+ * format. Requires a MongoDB instance, whose connection URL is passed with the system property
+ * {@value MongoTestFixture#URL_PROPERTY}. Otherwise, the tests are skipped.
+ *
+ */
+public class NormalizedSensorHierarchyStorageTest {
+
+  private static final String HIERARCHIES = "sensorHierarchies";
+  private static final String NODES = "sensorHierarchyNodes";
+  private static final int BATCH_SIZE = 2;
+
+  @Rule
+  public final MongoTestFixture mongo = new MongoTestFixture("sensorManagementStorageTest");
+
+  private MongoClient client;
+  private MongoDatabase database;
+  private MongoCollection<Document> nodes;
+  private NormalizedSensorHierarchyStorage storage;
+
+  /**
+   * Create the storage in the empty database.
+   */
+  @Before
+  public void setUp() {
+    this.client = this.mongo.getClient();
+    this.database = this.mongo.getDatabase();
+    this.nodes = this.database.getCollection(NODES);
+    this.storage = new NormalizedSensorHierarchyStorage(
+        this.database.getCollection(HIERARCHIES), this.nodes, BATCH_SIZE);
+    this.storage.createIndexes();
+  }
+
+  /**
+   * Test that a stored hierarchy is loaded and exported as it was stored.
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    final SensorRegistry hierarchy = MongoTestFixture.createHierarchy();
+    try (ClientSession session = this.client.startSession()) {
+      this.storage.insert(session, hierarchy, 1);
+    }
+
+    final SerializedSensorHierarchy loaded = this.storage.load("root").get();
+    assertEquals(hierarchy.toJson(), loaded.getRegistry().toJson());
+    assertEquals(1, loaded.getVersion());
+    assertEquals(6, this.nodes.countDocuments(Filters.eq("topLevelSensor", "root")));
+
+    final StringWriter writer = new StringWriter();
+    this.storage.export(writer);
+    assertEquals(hierarchy.toJson(),
+        SensorRegistry.fromJson(writer.toString().trim()).toJson());
+  }
+
+  /**
+   * Test that replacing a hierarchy only writes the nodes that changed.
+   */
+  @Test
+  public void testReplaceUpdatesChangedNodes() {
+    final SensorRegistry hierarchy = MongoTestFixture.createHierarchy();
+    try (ClientSession session = this.client.startSession()) {
+      this.storage.insert(session, hierarchy, 1);
+    }
+    final Document unchangedNode = this.findNode("machine1");
+
+    final MutableSensorRegistry modified = new MutableSensorRegistry("root", "Root");
+    final MutableAggregatedSensor group = modified.getTopLevelSensor()
+        .addChildAggregatedSensor("group", "Group");
+    group.addChildMachineSensor("machine1", "Machine 1");
+    group.addChildMachineSensor("machine2", "Renamed Machine 2");
+    modified.getTopLevelSensor().addChildMachineSensor("machine4", "Machine 4");
+    final SerializedSensorHierarchy existing = this.storage.load("root").get();
+    try (ClientSession session = this.client.startSession()) {
+      assertTrue(this.storage.replace(session, existing, modified, 2));
+      assertFalse(this.storage.replace(session, existing, modified, 3));
+    }
+
+    assertEquals(unchangedNode, this.findNode("machine1"));
+    assertEquals("Renamed Machine 2", this.findNode("machine2").getString("name"));
+    assertNull(this.findNode("machine3"));
+    assertNull(this.findNode("subgroup"));
+    assertNull(this.findNode("empty"));
+    assertEquals("root", this.findNode("machine4").getString("parent"));
+    assertEquals(4, this.nodes.countDocuments());
+    final SerializedSensorHierarchy loaded = this.storage.load("root").get();
+    assertEquals(modified.toJson(), loaded.getRegistry().toJson());
+    assertEquals(2, loaded.getVersion());
+  }
+
+  /**
+   * Test that a hierarchy stored in the document format is migrated to the normalized format,
+   * retaining its version.
+   */
+  @Test
+  public void testMigrateFromDocumentFormat() {
+    final SensorRegistry hierarchy = MongoTestFixture.createHierarchy();
+    final DocumentSensorHierarchyStorage documentStorage = new DocumentSensorHierarchyStorage(
+        this.database.getCollection(HIERARCHIES), this.nodes, BATCH_SIZE);
+    try (ClientSession session = this.client.startSession()) {
+      documentStorage.insert(session, hierarchy, 3);
+    }
+    assertEquals(List.of("root"), this.storage.getIdentifiersToMigrate());
+
+    try (ClientSession session = this.client.startSession()) {
+      assertTrue(this.storage.migrate(session, "root"));
+      assertFalse(this.storage.migrate(session, "root"));
+    }
+
+    assertEquals(List.of(), this.storage.getIdentifiersToMigrate());
+    assertEquals(6, this.nodes.countDocuments());
+    final SerializedSensorHierarchy loaded = this.storage.load("root").get();
+    assertEquals(hierarchy.toJson(), loaded.getRegistry().toJson());
+    assertEquals(3, loaded.getVersion());
+  }
+
+  /**
+   * Test that the queries of the storage are served by indexes, except for the query of the
+   * hierarchies to migrate, which scans all hierarchies once at startup.
+   */
+  @Test
+  public void testQueriesAreIndexed() {
+    IndexReconciler.reconcile(this.database.getCollection(HIERARCHIES),
+        SensorHierarchyIndexes.forSensorHierarchies());
+    try (ClientSession session = this.client.startSession()) {
+      this.storage.insert(session, MongoTestFixture.createHierarchy(), 1);
+    }
+    final Document document =
+        this.database.getCollection(HIERARCHIES).find(Filters.eq("identifier", "root")).first();
+
+    this.mongo.assertIndexed(HIERARCHIES, SensorHierarchyStorage.buildHierarchyFilter("root"));
+    this.mongo.assertIndexed(HIERARCHIES,
+        SensorHierarchyStorage.buildHierarchiesFilter(List.of("root", "other")));
+    this.mongo.assertIndexed(HIERARCHIES, SensorHierarchyStorage.buildVersionFilter("root", 1));
+    this.mongo.assertIndexed(HIERARCHIES, SensorHierarchyStorage.buildVersionFilter("root", 0));
+    this.mongo.assertIndexed(HIERARCHIES, SensorHierarchyStorage.buildUnchangedFilter(document));
+    this.mongo.assertIndexed(NODES, SensorHierarchyStorage.buildNodesFilter("root"));
+    this.mongo.assertIndexed(NODES,
+        SensorHierarchyStorage.buildNodesFilter(List.of("root", "other")));
+    this.mongo.assertIndexed(NODES,
+        NormalizedSensorHierarchyStorage.buildNodeFilter("root", "machine1"));
+  }
+
+  private Document findNode(final String identifier) {
+    return this.nodes.find(Filters.eq("identifier", identifier)).first();
+  }
+
+}
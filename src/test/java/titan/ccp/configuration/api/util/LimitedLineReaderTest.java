@@ -0,0 +1,58 @@
+package titan.ccp.configuration.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import titan.ccp.configuration.api.util.SensorHierarchyParser.SensorHierarchyTooLargeException;
+
+/**
+ * Test reading lines of a limited size.
+ *
+ */
+public class LimitedLineReaderTest {
+
+  @Test
+  public void testReadLines() throws IOException {
+    final LimitedLineReader reader = newReader("first\nsecond\r\n\nlast", 6);
+
+    assertEquals("first", reader.readLine());
+    assertEquals("second", reader.readLine());
+    assertEquals("", reader.readLine());
+    assertEquals("last", reader.readLine());
+    assertNull(reader.readLine());
+  }
+
+  @Test
+  public void testMultiByteCharacters() throws IOException {
+    assertEquals("\u00fc\u00df", newReader("\u00fc\u00df\n", 4).readLine());
+  }
+
+  @Test
+  public void testSkipTooLongLine() throws IOException {
+    final LimitedLineReader reader = newReader("short\n" + "x".repeat(1000) + "\nnext", 5);
+
+    assertEquals("short", reader.readLine());
+    try {
+      reader.readLine();
+      throw new AssertionError("Too long line was not rejected.");
+    } catch (final SensorHierarchyTooLargeException e) {
+      // expected
+    }
+    assertEquals("next", reader.readLine());
+    assertNull(reader.readLine());
+  }
+
+  @Test(expected = SensorHierarchyTooLargeException.class)
+  public void testTooManyBytes() throws IOException {
+    newReader("\u00fc\u00df\u00fc\n", 5).readLine();
+  }
+
+  private static LimitedLineReader newReader(final String lines, final long maxBytes) {
+    return new LimitedLineReader(
+        new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)), maxBytes);
+  }
+
+}
@@ -0,0 +1,94 @@
+package titan.ccp.configuration.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+import titan.ccp.configuration.MongoTestFixture;
+import titan.ccp.configuration.api.util.SensorHierarchyParser.InvalidSensorHierarchyException;
+import titan.ccp.model.sensorregistry.MutableAggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Test the binary encoding of sensor hierarchies.
+ *
+ */
+public class SensorHierarchyBinaryFormatTest {
+
+  private final SensorRegistry hierarchy = createHierarchy();
+
+  /**
+   * Test that decoding an encoded hierarchy yields the same hierarchy, including empty aggregated
+   * sensors and non-ASCII names.
+   */
+  @Test
+  public void testRoundTrip() {
+    final SensorRegistry decoded =
+        SensorHierarchyBinaryFormat.decode(SensorHierarchyBinaryFormat.encode(this.hierarchy));
+
+    assertEquals(this.hierarchy.toJson(), decoded.toJson());
+  }
+
+  /**
+   * Test that the binary encoding is smaller than the JSON representation.
+   */
+  @Test
+  public void testSmallerThanJson() {
+    assertTrue(SensorHierarchyBinaryFormat.encode(this.hierarchy).length
+        < this.hierarchy.toJson().getBytes(StandardCharsets.UTF_8).length);
+  }
+
+  /**
+   * Test that the parser decodes binary hierarchies within its limits.
+   */
+  @Test
+  public void testParseBinary() throws IOException {
+    final SensorRegistry decoded = new SensorHierarchyParser(10_000, 3, 208)
+        .parseBinary(new ByteArrayInputStream(SensorHierarchyBinaryFormat.encode(this.hierarchy)));
+
+    assertEquals(this.hierarchy.toJson(), decoded.toJson());
+  }
+
+  @Test(expected = InvalidSensorHierarchyException.class)
+  public void testTooManySensors() throws IOException {
+    new SensorHierarchyParser(10_000, 3, 207)
+        .parseBinary(new ByteArrayInputStream(SensorHierarchyBinaryFormat.encode(this.hierarchy)));
+  }
+
+  @Test(expected = InvalidSensorHierarchyException.class)
+  public void testTooDeep() throws IOException {
+    new SensorHierarchyParser(10_000, 2, 208)
+        .parseBinary(new ByteArrayInputStream(SensorHierarchyBinaryFormat.encode(this.hierarchy)));
+  }
+
+  @Test(expected = InvalidSensorHierarchyException.class)
+  public void testTruncated() {
+    final byte[] encoded = SensorHierarchyBinaryFormat.encode(this.hierarchy);
+    SensorHierarchyBinaryFormat.decode(Arrays.copyOf(encoded, encoded.length - 1));
+  }
+
+  @Test(expected = InvalidSensorHierarchyException.class)
+  public void testInvalidMagicNumber() {
+    SensorHierarchyBinaryFormat.decode("{\"identifier\": \"root\"}"
+        .getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Create the hierarchy of the {@link MongoTestFixture} with 201 additional sensors, so that the
+   * encoding contains multi-byte integers and dominates the fixed size of the header.
+   */
+  private static SensorRegistry createHierarchy() {
+    final MutableSensorRegistry hierarchy = MongoTestFixture.createHierarchy();
+    final MutableAggregatedSensor group =
+        hierarchy.getTopLevelSensor().addChildAggregatedSensor("many", "Many");
+    for (int i = 0; i < 200; i++) {
+      group.addChildMachineSensor("machine-" + i, "machine-" + i);
+    }
+    return hierarchy;
+  }
+
+}
@@ -0,0 +1,44 @@
+package titan.ccp.configuration.api.util;
+
+import static org.junit.Assert.assertEquals;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import titan.ccp.configuration.MongoTestFixture;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Test the incremental serialization of sensor hierarchies to JSON.
+ *
+ */
+public class SensorHierarchyJsonWriterTest {
+
+  private static final JsonParser JSON_PARSER = new JsonParser();
+
+  private final SensorRegistry hierarchy = MongoTestFixture.createHierarchy();
+
+  /**
+   * Test that the written JSON equals the JSON representation of the sensor registry.
+   */
+  @Test
+  public void testToBytes() {
+    final String json =
+        new String(SensorHierarchyJsonWriter.toBytes(this.hierarchy), StandardCharsets.UTF_8);
+
+    assertEquals(JSON_PARSER.parse(this.hierarchy.toJson()), JSON_PARSER.parse(json));
+  }
+
+  /**
+   * Test that the written JSON can be parsed into an equal sensor hierarchy.
+   */
+  @Test
+  public void testWriteAndParse() throws IOException {
+    final StringWriter writer = new StringWriter();
+    SensorHierarchyJsonWriter.write(this.hierarchy, writer);
+
+    assertEquals(this.hierarchy.toJson(), SensorRegistry.fromJson(writer.toString()).toJson());
+  }
+
+}
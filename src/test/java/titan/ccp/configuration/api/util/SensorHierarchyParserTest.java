@@ -0,0 +1,107 @@
+package titan.ccp.configuration.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.Test;
+import titan.ccp.configuration.api.util.SensorHierarchyParser.InvalidSensorHierarchyException;
+import titan.ccp.configuration.api.util.SensorHierarchyParser.SensorHierarchyTooLargeException;
+import titan.ccp.model.sensorregistry.AggregatedSensor;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Test the incremental parsing of sensor hierarchies.
+ *
+ */
+public class SensorHierarchyParserTest {
+
+  private static final String HIERARCHY = "{\"identifier\": \"root\", \"name\": \"Root\", "
+      + "\"children\": [{\"children\": [{\"identifier\": \"machine\", \"name\": \"Machine\"}], "
+      + "\"identifier\": \"building\", \"name\": \"Building\", \"unknown\": [1, 2]}, "
+      + "{\"identifier\": \"empty\", \"name\": \"Empty\", \"children\": []}]}";
+
+  private final SensorHierarchyParser parser = new SensorHierarchyParser(1000, 2, 4);
+
+  /**
+   * Test that aggregated and machine sensors are parsed regardless of the order of their fields.
+   */
+  @Test
+  public void testParse() throws IOException {
+    final SensorRegistry hierarchy = this.parser.parse(toStream(HIERARCHY));
+
+    assertEquals("root", hierarchy.getTopLevelSensor().getIdentifier());
+    assertEquals("Root", hierarchy.getTopLevelSensor().getName());
+    assertEquals(4, hierarchy.flatten().size());
+    assertEquals("building",
+        hierarchy.getSensorForIdentifier("machine").get().getParent().get().getIdentifier());
+    assertTrue(hierarchy.flatten().stream()
+        .filter(sensor -> "empty".equals(sensor.getIdentifier()))
+        .allMatch(sensor -> sensor instanceof AggregatedSensor));
+  }
+
+  /**
+   * Test that an array of hierarchies is parsed in order.
+   */
+  @Test
+  public void testParseArray() throws IOException {
+    final List<SensorRegistry> hierarchies = this.parser.parseArray(toStream(
+        "[" + HIERARCHY + ", {\"identifier\": \"other\", \"name\": \"Other\", \"children\": []}]"));
+
+    assertEquals(2, hierarchies.size());
+    assertEquals("root", hierarchies.get(0).getTopLevelSensor().getIdentifier());
+    assertEquals("other", hierarchies.get(1).getTopLevelSensor().getIdentifier());
+  }
+
+  @Test(expected = SensorHierarchyTooLargeException.class)
+  public void testTooManyBytes() throws IOException {
+    new SensorHierarchyParser(HIERARCHY.length() - 1, 2, 4).parse(toStream(HIERARCHY));
+  }
+
+  @Test(expected = SensorHierarchyTooLargeException.class)
+  public void testTooManyUtf8Bytes() {
+    final String hierarchy = HIERARCHY.replace("Root", "\u00dcberblick \ud83c\udfed");
+    new SensorHierarchyParser(hierarchy.length() + 1, 2, 4).parse(hierarchy);
+  }
+
+  @Test
+  public void testUtf8BytesWithinLimit() {
+    final String hierarchy = HIERARCHY.replace("Root", "\u00dcberblick \ud83c\udfed");
+    final int bytes = hierarchy.getBytes(StandardCharsets.UTF_8).length;
+    assertEquals("\u00dcberblick \ud83c\udfed",
+        new SensorHierarchyParser(bytes, 2, 4).parse(hierarchy).getTopLevelSensor().getName());
+  }
+
+  @Test(expected = InvalidSensorHierarchyException.class)
+  public void testTooDeep() throws IOException {
+    new SensorHierarchyParser(1000, 1, 4).parse(toStream(HIERARCHY));
+  }
+
+  @Test(expected = InvalidSensorHierarchyException.class)
+  public void testTooManySensors() throws IOException {
+    new SensorHierarchyParser(1000, 2, 3).parse(toStream(HIERARCHY));
+  }
+
+  @Test(expected = InvalidSensorHierarchyException.class)
+  public void testMissingIdentifier() {
+    this.parser.parse("{\"name\": \"Root\", \"children\": []}");
+  }
+
+  @Test(expected = InvalidSensorHierarchyException.class)
+  public void testMalformed() {
+    this.parser.parse("{\"identifier\": \"root\", \"name\": \"Root\", \"children\": [");
+  }
+
+  @Test(expected = InvalidSensorHierarchyException.class)
+  public void testTrailingContent() {
+    this.parser.parse("{\"identifier\": \"root\", \"name\": \"Root\"} []");
+  }
+
+  private static InputStream toStream(final String json) {
+    return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
@@ -9,7 +9,11 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.junit.Test;
+import titan.ccp.model.sensorregistry.MutableAggregatedSensor;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
 import titan.ccp.model.sensorregistry.SensorRegistry;
 
 /**
@@ -51,4 +55,57 @@ public class SensorHierarchyRepositoryTest {
     });
   }
 
+  /**
+   * Test that the comparison using structural hashes yields the same events as the full comparison.
+   */
+  @Test
+  public void testCompareSensorHierarchiesWithHashes() throws IOException {
+    final SensorRegistry oldHierarchy = SensorRegistry.fromJson(Resources.toString(
+        Resources.getResource("test-registry-old.json"), StandardCharsets.UTF_8));
+    final SensorRegistry newHierarchy = SensorRegistry.fromJson(Resources.toString(
+        Resources.getResource("test-registry-new.json"), StandardCharsets.UTF_8));
+
+    final Set<String> expected = toStrings(
+        SensorHierarchyComparatorUtils.compareSensorHierarchies(oldHierarchy, newHierarchy));
+    final Set<String> result = toStrings(SensorHierarchyComparatorUtils.compareSensorHierarchies(
+        oldHierarchy, SensorHierarchyHashes.of(oldHierarchy),
+        newHierarchy, SensorHierarchyHashes.of(newHierarchy)));
+
+    assertEquals(expected, result);
+    assertEquals(0, SensorHierarchyComparatorUtils.compareSensorHierarchies(
+        oldHierarchy, SensorHierarchyHashes.of(oldHierarchy),
+        oldHierarchy, SensorHierarchyHashes.of(oldHierarchy)).size());
+  }
+
+  /**
+   * Test that renamed sensors are reported, also if they are moved at the same time.
+   */
+  @Test
+  public void testCompareRenamedSensors() {
+    final MutableSensorRegistry oldHierarchy = new MutableSensorRegistry("root", "Root");
+    final MutableAggregatedSensor oldGroup =
+        oldHierarchy.getTopLevelSensor().addChildAggregatedSensor("group", "Group");
+    oldGroup.addChildMachineSensor("machine-1", "Machine 1");
+    oldGroup.addChildMachineSensor("machine-2", "Machine 2");
+    final MutableSensorRegistry newHierarchy = new MutableSensorRegistry("root", "Root");
+    final MutableAggregatedSensor newGroup =
+        newHierarchy.getTopLevelSensor().addChildAggregatedSensor("group", "Renamed Group");
+    newGroup.addChildMachineSensor("machine-1", "Machine 1");
+    newHierarchy.getTopLevelSensor().addChildMachineSensor("machine-2", "Renamed Machine 2");
+
+    final Set<String> expected =
+        Set.of("SENSOR_RENAMED:group", "SENSOR_MOVED:machine-2", "SENSOR_RENAMED:machine-2");
+    assertEquals(expected, toStrings(
+        SensorHierarchyComparatorUtils.compareSensorHierarchies(oldHierarchy, newHierarchy)));
+    assertEquals(expected, toStrings(SensorHierarchyComparatorUtils.compareSensorHierarchies(
+        oldHierarchy, SensorHierarchyHashes.of(oldHierarchy),
+        newHierarchy, SensorHierarchyHashes.of(newHierarchy))));
+  }
+
+  private static Set<String> toStrings(final List<SensorChangedEvent> events) {
+    return events.stream()
+        .map(event -> event.getEventType() + ":" + event.getSensor().getIdentifier())
+        .collect(Collectors.toSet());
+  }
+
 }
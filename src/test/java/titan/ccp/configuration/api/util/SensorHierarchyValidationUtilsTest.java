@@ -0,0 +1,67 @@
+package titan.ccp.configuration.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Test the validation of sensor hierarchies.
+ *
+ */
+public class SensorHierarchyValidationUtilsTest {
+
+  /**
+   * Test that each duplicate identifier is reported once with the paths of all its occurrences.
+   */
+  @Test
+  public void testFindDuplicateIdentifiers() {
+    final SensorRegistry hierarchy = SensorRegistry.fromJson("{\"identifier\": \"root\", "
+        + "\"name\": \"root\", \"children\": ["
+        + "{\"identifier\": \"group\", \"name\": \"group\", \"children\": ["
+        + "{\"identifier\": \"duplicate\", \"name\": \"duplicate\", \"children\": []}]}, "
+        + "{\"identifier\": \"duplicate\", \"name\": \"duplicate\", \"children\": []}]}");
+
+    final Map<String, List<String>> duplicates =
+        SensorHierarchyValidationUtils.findDuplicateIdentifiers(hierarchy);
+
+    assertEquals(1, duplicates.size());
+    final List<String> paths = duplicates.get("duplicate");
+    assertEquals(2, paths.size());
+    assertTrue(paths.contains("root/group/duplicate"));
+    assertTrue(paths.contains("root/duplicate"));
+  }
+
+  /**
+   * Test that the paths of requested identifiers are found, including those not used.
+   */
+  @Test
+  public void testFindPaths() {
+    final SensorRegistry hierarchy = SensorRegistry.fromJson("{\"identifier\": \"root\", "
+        + "\"name\": \"root\", \"children\": ["
+        + "{\"identifier\": \"group\", \"name\": \"group\", \"children\": ["
+        + "{\"identifier\": \"machine\", \"name\": \"machine\"}]}]}");
+
+    final Map<String, List<String>> paths =
+        SensorHierarchyValidationUtils.findPaths(hierarchy, List.of("machine", "missing"));
+
+    assertEquals(List.of("machine", "missing"), List.copyOf(paths.keySet()));
+    assertEquals(List.of("root/group/machine"), paths.get("machine"));
+    assertEquals(List.of(), paths.get("missing"));
+  }
+
+  /**
+   * Test that a hierarchy with unique identifiers has no duplicates.
+   */
+  @Test
+  public void testFindNoDuplicateIdentifiers() {
+    final SensorRegistry hierarchy = SensorRegistry.fromJson("{\"identifier\": \"root\", "
+        + "\"name\": \"root\", \"children\": ["
+        + "{\"identifier\": \"machine\", \"name\": \"machine\"}]}");
+
+    assertTrue(SensorHierarchyValidationUtils.findDuplicateIdentifiers(hierarchy).isEmpty());
+  }
+
+}
@@ -0,0 +1,93 @@
+package titan.ccp.configuration.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.Test;
+import titan.ccp.configuration.api.SerializedSensorHierarchy;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Test the extraction of subtrees from sensor hierarchies.
+ *
+ */
+public class SensorSubtreeUtilsTest {
+
+  private static final Gson GSON = new Gson();
+
+  private final SerializedSensorHierarchy hierarchy = SerializedSensorHierarchy.of(
+      SensorRegistry.fromJson("{\"identifier\": \"root\", \"name\": \"Root\", \"children\": ["
+          + "{\"identifier\": \"building\", \"name\": \"Building\", \"children\": ["
+          + "{\"identifier\": \"floor\", \"name\": \"Floor\", \"children\": ["
+          + "{\"identifier\": \"machine\", \"name\": \"Machine\"}]}, "
+          + "{\"identifier\": \"empty\", \"name\": \"Empty\", \"children\": []}]}]}"),
+      1);
+
+  /**
+   * Test that the entire subtree and the ancestor path are returned for an unlimited depth.
+   */
+  @Test
+  public void testSubtreeWithUnlimitedDepth() {
+    final JsonObject subtree = this.getSubtree("building", SensorSubtreeUtils.UNLIMITED_DEPTH);
+
+    final JsonArray path = subtree.getAsJsonArray("path");
+    assertEquals(1, path.size());
+    assertEquals("root", path.get(0).getAsJsonObject().get("identifier").getAsString());
+    assertFalse(path.get(0).getAsJsonObject().has("children"));
+
+    final JsonObject building = subtree.getAsJsonObject("sensor");
+    assertEquals("Building", building.get("name").getAsString());
+    final JsonObject floor = building.getAsJsonArray("children").get(0).getAsJsonObject();
+    final JsonObject machine = floor.getAsJsonArray("children").get(0).getAsJsonObject();
+    assertEquals("machine", machine.get("identifier").getAsString());
+    assertFalse(machine.has("children"));
+    assertFalse(machine.has("truncated"));
+  }
+
+  /**
+   * Test that aggregated sensors below the requested depth are truncated.
+   */
+  @Test
+  public void testSubtreeWithLimitedDepth() {
+    final JsonObject building = this.getSubtree("building", 1).getAsJsonObject("sensor");
+
+    final JsonArray children = building.getAsJsonArray("children");
+    assertEquals(2, children.size());
+    final JsonObject floor = children.get(0).getAsJsonObject();
+    assertFalse(floor.has("children"));
+    assertTrue(floor.get("truncated").getAsBoolean());
+    final JsonObject empty = children.get(1).getAsJsonObject();
+    assertEquals(0, empty.getAsJsonArray("children").size());
+    assertFalse(empty.has("truncated"));
+  }
+
+  /**
+   * Test that a machine sensor is returned together with all its ancestors.
+   */
+  @Test
+  public void testSubtreeOfMachineSensor() {
+    final JsonObject subtree = this.getSubtree("machine", 0);
+
+    final JsonArray path = subtree.getAsJsonArray("path");
+    assertEquals(3, path.size());
+    assertEquals("floor", path.get(2).getAsJsonObject().get("identifier").getAsString());
+    assertEquals("Machine", subtree.getAsJsonObject("sensor").get("name").getAsString());
+  }
+
+  /**
+   * Test that unknown sensors are not found.
+   */
+  @Test
+  public void testUnknownSensor() {
+    assertFalse(this.hierarchy.getSensor("unknown").isPresent());
+  }
+
+  private JsonObject getSubtree(final String identifier, final int depth) {
+    return GSON.toJsonTree(SensorSubtreeUtils.toSubtree(
+        this.hierarchy.getSensor(identifier).get(), depth)).getAsJsonObject();
+  }
+
+}
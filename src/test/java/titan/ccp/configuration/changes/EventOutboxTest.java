@@ -0,0 +1,281 @@
+package titan.ccp.configuration.changes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Sorts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import titan.ccp.configuration.MongoTestFixture;
+import titan.ccp.configuration.api.IndexReconciler;
+import titan.ccp.configuration.events.Event;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+
+/**
+ * Test that the relay of the {@link EventOutbox} only removes acknowledged events. Requires a
+ * MongoDB instance, whose connection URL is passed with the system property
+ * {@value MongoTestFixture#URL_PROPERTY}. Otherwise, the tests are skipped.
+ *
+ */
+public class EventOutboxTest {
+
+  private static final String OUTBOX = "eventOutbox";
+  private static final String LEASES = "eventOutboxLeases";
+  private static final String SEQUENCES = "eventOutboxSequences";
+  private static final long LEASE_MS = 30_000;
+
+  @Rule
+  public final MongoTestFixture mongo = new MongoTestFixture("sensorManagementOutboxTest");
+
+  private MongoDatabase database;
+  private RecordingPublisher publisher;
+  private RecordingRegistryPublisher registryPublisher;
+
+  /**
+   * Create a publisher recording the published events.
+   */
+  @Before
+  public void setUp() {
+    this.database = this.mongo.getDatabase();
+    this.publisher = new RecordingPublisher();
+    this.registryPublisher = new RecordingRegistryPublisher();
+  }
+
+  /**
+   * Test that acknowledged events are removed from the outbox.
+   */
+  @Test
+  public void testRelayRemovesAcknowledgedEvents() {
+    final EventOutbox outbox = this.createOutbox();
+    this.addEvents(outbox, "a", "b", "c");
+
+    outbox.relay();
+
+    assertEquals(List.of("a", "b", "c"), this.publisher.published);
+    assertEquals(0, this.database.getCollection(OUTBOX).countDocuments());
+    assertEquals(3, outbox.getPublishedEvents());
+  }
+
+  /**
+   * Test that a failed event and all succeeding events are kept and published again in order.
+   */
+  @Test
+  public void testRelayKeepsEventsOnFailure() {
+    final EventOutbox outbox = this.createOutbox();
+    this.addEvents(outbox, "a", "b", "c");
+    this.publisher.failing.add("b");
+
+    outbox.relay();
+
+    assertEquals(2, this.database.getCollection(OUTBOX).countDocuments());
+    assertEquals(1, outbox.getPublishedEvents());
+
+    this.publisher.failing.clear();
+    this.publisher.published.clear();
+    outbox.relay();
+
+    assertEquals(List.of("b", "c"), this.publisher.published);
+    assertEquals(0, this.database.getCollection(OUTBOX).countDocuments());
+  }
+
+  /**
+   * Test that only the relay holding the lease publishes events.
+   */
+  @Test
+  public void testRelayRequiresLease() {
+    final EventOutbox outbox = this.createOutbox();
+    final EventOutbox otherOutbox = this.createOutbox();
+    outbox.relay();
+    this.addEvents(otherOutbox, "a");
+
+    otherOutbox.relay();
+
+    assertEquals(List.of(), this.publisher.published);
+    assertEquals(1, this.database.getCollection(OUTBOX).countDocuments());
+
+    outbox.relay();
+
+    assertEquals(List.of("a"), this.publisher.published);
+  }
+
+  /**
+   * Test that events are stamped with consecutive sequence numbers per key.
+   */
+  @Test
+  public void testAddAllocatesSequencesPerKey() {
+    final EventOutbox outbox = this.createOutbox();
+    this.addEvents(outbox, "a", "b", "a");
+    this.addEvents(outbox, "a");
+
+    final List<String> sequences = this.database.getCollection(OUTBOX)
+        .find()
+        .sort(Sorts.ascending("key", "sequence"))
+        .map(document -> document.getString("key") + document.get("sequence"))
+        .into(new ArrayList<>());
+    assertEquals(List.of("a1", "a2", "a3", "b1"), sequences);
+  }
+
+  /**
+   * Test that events of a key are published in the order of their sequence numbers, even if their
+   * identifiers are in another order, e.g., as they were generated by different instances.
+   */
+  @Test
+  public void testRelayPublishesInSequenceOrder() {
+    final EventOutbox outbox = this.createOutbox();
+    final ObjectId earlier = new ObjectId();
+    final ObjectId later = new ObjectId();
+    this.database.getCollection(OUTBOX).insertMany(List.of(
+        this.buildEventDocument(later, 1, "first"),
+        this.buildEventDocument(earlier, 2, "second")));
+
+    outbox.relay();
+
+    assertEquals(List.of("first", "second"), this.publisher.payloads);
+  }
+
+  /**
+   * Test that binary payloads are stored and published as they are.
+   */
+  @Test
+  public void testRelayKeepsBinaryPayloads() {
+    final EventOutbox outbox = this.createOutbox();
+    final ConfigurationEvent event = ConfigurationEvent.ofRegistry(
+        ConfigurationEventType.SENSOR_REGISTRY_CHANGED,
+        new MutableSensorRegistry("root", "Root"),
+        true);
+    try (ClientSession session = this.mongo.getClient().startSession()) {
+      outbox.add(session, List.of(event));
+    }
+
+    assertNull(this.database.getCollection(OUTBOX).find().first().get("payload"));
+
+    outbox.relay();
+
+    assertEquals(1, this.registryPublisher.published.size());
+    final ConfigurationEvent published = this.registryPublisher.published.get(0);
+    assertEquals("root", published.getKey());
+    assertNull(published.getPayload());
+    assertArrayEquals(
+        event.getBinaryPayload().orElseThrow(), published.getBinaryPayload().orElseThrow());
+  }
+
+  /**
+   * Test that the queries of the outbox and relay are served by indexes.
+   */
+  @Test
+  public void testQueriesAreIndexed() {
+    IndexReconciler.reconcile(this.database.getCollection(OUTBOX), EventOutbox.getIndexes());
+    final EventOutbox outbox = this.createOutbox();
+    this.addEvents(outbox, "a", "b", "a");
+    outbox.relay();
+    this.addEvents(outbox, "c");
+
+    this.mongo.assertIndexed(OUTBOX, new Document(), EventOutbox.buildRelaySort());
+    this.mongo.assertIndexed(OUTBOX, new Document(), EventOutbox.buildLagSort());
+    this.mongo.assertIndexed(OUTBOX, EventOutbox.buildEventsFilter(List.of(new ObjectId())));
+    this.mongo.assertIndexed(SEQUENCES, EventOutbox.buildSequencesFilter(List.of("a", "b")));
+    this.mongo.assertIndexed(LEASES,
+        EventOutbox.buildAcquirableLeaseFilter("owner", new Date()));
+  }
+
+  private Document buildEventDocument(final ObjectId identifier, final long sequence,
+      final String payload) {
+    return new Document()
+        .append("_id", identifier)
+        .append("type", ConfigurationEventType.SENSOR_CHANGES.name())
+        .append("key", "a")
+        .append("sequence", sequence)
+        .append("payload", payload)
+        .append("created", new Date());
+  }
+
+  private EventOutbox createOutbox() {
+    return new EventOutbox(
+        this.database.getCollection(OUTBOX),
+        this.database.getCollection(LEASES),
+        this.database.getCollection(SEQUENCES),
+        new EventDispatcher(
+            this.registryPublisher, this.publisher, new SimpleMeterRegistry()),
+        10,
+        100,
+        LEASE_MS);
+  }
+
+  private void addEvents(final EventOutbox outbox, final String... keys) {
+    final List<ConfigurationEvent> events = new ArrayList<>();
+    for (final String key : keys) {
+      events.add(new ConfigurationEvent(ConfigurationEventType.SENSOR_CHANGES, key, "{}"));
+    }
+    try (ClientSession session = this.mongo.getClient().startSession()) {
+      outbox.add(session, events);
+    }
+  }
+
+  /**
+   * Publisher recording the keys of published batches and failing for some keys.
+   */
+  private static class RecordingPublisher implements SensorChangesPublisher {
+
+    private final List<String> published = new ArrayList<>();
+    private final List<String> payloads = new ArrayList<>();
+    private final Set<String> failing = new HashSet<>();
+
+    @Override
+    public CompletableFuture<Void> publish(final String topLevelSensor, final String changes) {
+      this.published.add(topLevelSensor);
+      this.payloads.add(changes);
+      return this.failing.contains(topLevelSensor)
+          ? CompletableFuture.failedFuture(new IllegalStateException("Publishing failed"))
+          : CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void flush() {
+      // Nothing to flush
+    }
+
+    @Override
+    public void close() {
+      // Nothing to close
+    }
+
+  }
+
+  /**
+   * Publisher recording the published events containing entire hierarchies.
+   */
+  private static class RecordingRegistryPublisher implements RegistryEventPublisher {
+
+    private final List<ConfigurationEvent> published = new ArrayList<>();
+
+    @Override
+    public CompletableFuture<Void> publish(final Event event, final ConfigurationEvent hierarchy) {
+      this.published.add(hierarchy);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void flush() {
+      // Nothing to flush
+    }
+
+    @Override
+    public void close() {
+      // Nothing to close
+    }
+
+  }
+
+}
@@ -0,0 +1,34 @@
+package titan.ccp.configuration.changes;
+
+import static org.junit.Assert.assertEquals;
+import com.google.gson.Gson;
+import java.util.List;
+import org.junit.Test;
+import titan.ccp.configuration.api.util.EventType;
+
+/**
+ * Test the serialization of sensor changes.
+ *
+ */
+public class SensorChangesTest {
+
+  /**
+   * Test that a batch of sensor changes survives a JSON round trip.
+   */
+  @Test
+  public void testJsonRoundTrip() {
+    final SensorChanges changes = new SensorChanges("root", List.of(
+        new SensorChange("group", EventType.SENSOR_ADDED, "Group", "root"),
+        new SensorChange("machine", EventType.SENSOR_RENAMED, "Machine", "group")));
+
+    final SensorChanges result = new Gson().fromJson(changes.toJson(), SensorChanges.class);
+
+    assertEquals("root", result.getTopLevelSensor());
+    assertEquals(2, result.getChanges().size());
+    assertEquals("machine", result.getChanges().get(1).getSensor());
+    assertEquals(EventType.SENSOR_RENAMED, result.getChanges().get(1).getType());
+    assertEquals("Machine", result.getChanges().get(1).getName());
+    assertEquals("group", result.getChanges().get(1).getParent());
+  }
+
+}
@@ -0,0 +1,84 @@
+package titan.ccp.configuration.changes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import titan.ccp.configuration.api.util.SensorHierarchyBinaryFormat;
+import titan.ccp.model.sensorregistry.MutableSensorRegistry;
+import titan.ccp.model.sensorregistry.SensorRegistry;
+
+/**
+ * Test the serialization of sensor hierarchies published to Kafka as JSON or in the binary format.
+ *
+ */
+public class SensorHierarchySerializerTest {
+
+  private static final String TOPIC = "configuration";
+
+  private final MutableSensorRegistry hierarchy = createHierarchy();
+
+  /**
+   * Test that the binary payload of an event is written as it is, without encoding the hierarchy
+   * again.
+   */
+  @Test
+  public void testSerializeBinaryPayload() {
+    final ConfigurationEvent event = ConfigurationEvent
+        .ofRegistry(ConfigurationEventType.SENSOR_REGISTRY_CHANGED, this.hierarchy, true);
+
+    final byte[] result = new SensorHierarchySerializer(true).serialize(TOPIC, event);
+
+    assertNull(event.getPayload());
+    assertSame(event.getBinaryPayload().orElseThrow(), result);
+    assertEquals(this.hierarchy.toJson(), SensorHierarchyBinaryFormat.decode(result).toJson());
+  }
+
+  /**
+   * Test that the JSON payload of an event, e.g., stored before the format was changed, is
+   * converted to the binary format.
+   */
+  @Test
+  public void testSerializeJsonPayloadToBinary() {
+    final ConfigurationEvent event = ConfigurationEvent
+        .ofRegistry(ConfigurationEventType.SENSOR_REGISTRY_CHANGED, this.hierarchy);
+
+    final SensorRegistry result = SensorHierarchyBinaryFormat.decode(
+        new SensorHierarchySerializer(true).serialize(TOPIC, event));
+
+    assertEquals(this.hierarchy.toJson(), result.toJson());
+  }
+
+  /**
+   * Test that hierarchies are written as JSON, regardless of the format of the payload.
+   */
+  @Test
+  public void testSerializeJson() {
+    final SensorHierarchySerializer serializer = new SensorHierarchySerializer(false);
+    final byte[] expected = this.hierarchy.toJson().getBytes(StandardCharsets.UTF_8);
+
+    assertArrayEquals(expected, serializer.serialize(TOPIC, ConfigurationEvent
+        .ofRegistry(ConfigurationEventType.SENSOR_REGISTRY_CHANGED, this.hierarchy)));
+    assertArrayEquals(expected, serializer.serialize(TOPIC, ConfigurationEvent
+        .ofRegistry(ConfigurationEventType.SENSOR_REGISTRY_CHANGED, this.hierarchy, true)));
+  }
+
+  /**
+   * Test that null is serialized as null.
+   */
+  @Test
+  public void testSerializeNull() {
+    assertNull(new SensorHierarchySerializer(true).serialize(TOPIC, null));
+    assertNull(new SensorHierarchySerializer(false).serialize(TOPIC, null));
+  }
+
+  private static MutableSensorRegistry createHierarchy() {
+    final MutableSensorRegistry hierarchy = new MutableSensorRegistry("root", "Root");
+    hierarchy.getTopLevelSensor().addChildAggregatedSensor("group", "Group")
+        .addChildMachineSensor("machine", "Machine");
+    return hierarchy;
+  }
+
+}